@@ -16,24 +16,23 @@
  */
 package org.n52.iceland.binding;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
 import java.util.Enumeration;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 import org.n52.iceland.coding.OperationKey;
-import org.n52.iceland.coding.decode.Decoder;
 import org.n52.iceland.coding.decode.DecoderKey;
+import org.n52.iceland.coding.decode.StreamingDecoder;
 import org.n52.iceland.coding.decode.XmlNamespaceOperationDecoderKey;
 import org.n52.iceland.coding.decode.XmlStringOperationDecoderKey;
 import org.n52.iceland.exception.CodedException;
@@ -45,11 +44,15 @@ import org.n52.iceland.request.AbstractServiceRequest;
 import org.n52.iceland.request.Request;
 import org.n52.iceland.util.Constants;
 import org.n52.iceland.util.StringHelper;
+import org.n52.iceland.util.XmlRootElementSniffer;
+import org.n52.iceland.util.XmlRootElementSniffer.RootElement;
 import org.n52.iceland.util.http.HttpUtils;
-import org.n52.iceland.w3c.W3CConstants;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
 import java.util.Optional;
 import org.n52.iceland.exception.ows.InvalidParameterValueException;
 import org.n52.iceland.exception.ows.MissingParameterValueException;
@@ -65,13 +68,34 @@ public abstract class AbstractXmlBinding extends SimpleBinding {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractXmlBinding.class);
 
+    /**
+     * Requests up to this size (in bytes) are buffered in memory, larger
+     * requests are buffered in a temporary file.
+     */
+    @VisibleForTesting
+    static final int REQUEST_BUFFER_THRESHOLD = 1024 * 1024;
+
     protected Request decode(HttpServletRequest request) throws OwsExceptionReport {
         String characterEncoding = getCharacterEncoding(request);
-        String xmlString = xmlToString(request, characterEncoding);
-        LOGGER.debug("XML-REQUEST: {}", xmlString);
-        DecoderKey key = getDecoderKey(xmlString, characterEncoding);
+        FileBackedOutputStream buffer = new FileBackedOutputStream(REQUEST_BUFFER_THRESHOLD);
+        try {
+            return decode(xmlToByteSource(request, characterEncoding, buffer), getCharset(characterEncoding));
+        } finally {
+            try {
+                buffer.reset();
+            } catch (IOException ioe) {
+                LOGGER.warn("Error while releasing request buffer", ioe);
+            }
+        }
+    }
+
+    protected Request decode(ByteSource body, Charset charset) throws OwsExceptionReport {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("XML-REQUEST: {}", read(body, charset));
+        }
+        DecoderKey key = getDecoderKey(body, charset);
         LOGGER.trace("Found decoder key: {}", key);
-        Decoder<AbstractServiceRequest<?>, String> decoder = getDecoder(key);
+        StreamingDecoder<AbstractServiceRequest<?>> decoder = StreamingDecoder.adapt(getDecoder(key));
         if (decoder == null) {
             // if this a GetCapabilities request, then the service is not supported
             String opOrType = null;
@@ -94,61 +118,57 @@ public abstract class AbstractXmlBinding extends SimpleBinding {
                 }
             } else {
                 throw new InvalidParameterValueException().withMessage(
-                        "No decoder found for incoming message based on derived decoder key: %s\nMessage: %s", key, xmlString);
+                        "No decoder found for incoming message based on derived decoder key: %s\nMessage: %s", key,
+                        read(body, charset));
             }
         } else {
             LOGGER.trace("Using decoder: {}", decoder);
         }
-        return decoder.decode(xmlString);
+        return decoder.decode(body, charset);
+    }
+
+    protected DecoderKey getDecoderKey(ByteSource body, Charset charset) throws CodedException {
+        try (InputStream in = body.openStream()) {
+            return getDecoderKey(XmlRootElementSniffer.sniff(in, charset.name()));
+        } catch (XMLStreamException | IOException e) {
+            throw new NoApplicableCodeException().causedBy(e).withMessage(
+                    "An error occured when parsing the request! Message: %s", e.getMessage());
+        }
     }
 
     @VisibleForTesting
     protected DecoderKey getDecoderKey(String xmlContent, String characterEncoding) throws CodedException {
-        try (ByteArrayInputStream stream = new ByteArrayInputStream(xmlContent.getBytes(characterEncoding))) {
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
-            Element element = document.getDocumentElement();
-            element.normalize();
-            if (element.hasAttributes() && element.hasAttribute(OWSConstants.RequestParams.service.name())) {
-                OperationKey operationKey = getOperationKey(element);
-                XmlStringOperationDecoderKey decoderKey = new XmlStringOperationDecoderKey(operationKey, getDefaultContentType());
-                return decoderKey;
-            } else {
-                return getNamespaceOperationDecoderKey(element);
-            }
-
-        } catch (SAXException | IOException | ParserConfigurationException e) {
+        try (StringReader reader = new StringReader(xmlContent)) {
+            return getDecoderKey(XmlRootElementSniffer.sniff(reader));
+        } catch (XMLStreamException e) {
             throw new NoApplicableCodeException().causedBy(e).withMessage(
                     "An error occured when parsing the request! Message: %s", e.getMessage());
         }
     }
 
-    private XmlNamespaceOperationDecoderKey getNamespaceOperationDecoderKey(Element element) {
-        String nodeName = element.getNodeName();
-        if (Strings.isNullOrEmpty(element.getNamespaceURI())) {
-            String[] splittedNodeName = nodeName.split(Constants.COLON_STRING);
-            String elementName;
-            String namespace;
-            String name;
-            String prefix = null;
-            if (splittedNodeName.length == 2) {
-                prefix = splittedNodeName[0];
-                elementName = splittedNodeName[1];
-            } else {
-                elementName = splittedNodeName[0];
-            }
-            // TODO get namespace for prefix
-            if (Strings.isNullOrEmpty(prefix)) {
-                name = W3CConstants.AN_XMLNS;
-            } else {
-                name = W3CConstants.PREFIX_XMLNS + prefix;
-            }
-            namespace = element.getAttribute(name);
-            return new XmlNamespaceOperationDecoderKey(namespace, elementName);
+    protected DecoderKey getDecoderKey(RootElement element) {
+        if (element.hasAttribute(OWSConstants.RequestParams.service.name())) {
+            return new XmlStringOperationDecoderKey(getOperationKey(element), getDefaultContentType());
         } else {
-            return new XmlNamespaceOperationDecoderKey(element.getNamespaceURI(), nodeName.substring(nodeName.indexOf(Constants.COLON_STRING) + 1));
+            return new XmlNamespaceOperationDecoderKey(element.getNamespace(), element.getLocalName());
         }
     }
 
+    protected OperationKey getOperationKey(RootElement element) {
+        String service = Strings.emptyToNull(element.getAttribute(OWSConstants.RequestParams.service.name()));
+        String version = Strings.emptyToNull(element.getAttribute(OWSConstants.RequestParams.version.name()));
+        String operation = null;
+        if (!Strings.isNullOrEmpty(service)) {
+            operation = element.getLocalName();
+        }
+        return new OperationKey(service, version, operation);
+    }
+
+    /**
+     * @deprecated the root element is no longer parsed into a DOM, use
+     * {@link #getOperationKey(RootElement)}
+     */
+    @Deprecated
     protected OperationKey getOperationKey(Element element) {
         String service = null;
         String version = null;
@@ -177,6 +197,56 @@ public abstract class AbstractXmlBinding extends SimpleBinding {
         }
     }
 
+    /**
+     * Gets the body of the request as a replayable source. The body is copied
+     * once into the supplied buffer, which keeps small requests in memory and
+     * transparently spills larger requests to a temporary file.
+     *
+     * @param request           the request
+     * @param characterEncoding the character encoding of the request
+     * @param buffer            the buffer to use, it is the responsibility of
+     *                          the caller to reset it
+     *
+     * @return the body
+     *
+     * @throws OwsExceptionReport if the request can not be read
+     */
+    protected ByteSource xmlToByteSource(HttpServletRequest request, String characterEncoding,
+                                         FileBackedOutputStream buffer) throws OwsExceptionReport {
+        try {
+            if (request.getParameterMap().isEmpty()) {
+                try (InputStream in = HttpUtils.getInputStream(request)) {
+                    ByteStreams.copy(in, buffer);
+                }
+                return buffer.asByteSource();
+            } else {
+                String body = parseHttpPostBodyWithParameter(request.getParameterNames(), request.getParameterMap());
+                return ByteSource.wrap(body.getBytes(getCharset(characterEncoding)));
+            }
+        } catch (final IOException ioe) {
+            throw new NoApplicableCodeException().causedBy(ioe).withMessage(
+                    "Error while reading request! Message: %s", ioe.getMessage());
+        }
+    }
+
+    private String read(ByteSource body, Charset charset) throws OwsExceptionReport {
+        try {
+            return body.asCharSource(charset).read();
+        } catch (IOException ioe) {
+            throw new NoApplicableCodeException().causedBy(ioe).withMessage(
+                    "Error while reading request! Message: %s", ioe.getMessage());
+        }
+    }
+
+    private Charset getCharset(String characterEncoding) throws OwsExceptionReport {
+        try {
+            return Charset.forName(characterEncoding);
+        } catch (IllegalArgumentException e) {
+            throw new NoApplicableCodeException().causedBy(e).withMessage(
+                    "Unsupported character encoding: %s", characterEncoding);
+        }
+    }
+
     private String getCharacterEncoding(HttpServletRequest request) {
         return !Strings.isNullOrEmpty(request.getCharacterEncoding()) ? request.getCharacterEncoding() : "UTF-8";
     }
@@ -21,7 +21,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +39,8 @@ import org.n52.iceland.util.activation.ActivationListener;
 import org.n52.iceland.util.activation.ActivationListeners;
 import org.n52.iceland.util.activation.ActivationManager;
 import org.n52.iceland.util.activation.ActivationSource;
+import org.n52.iceland.util.activation.FunctionalActivationListener;
+import org.n52.iceland.util.collections.PrefixTree;
 import org.n52.iceland.util.http.MediaType;
 
 import com.google.common.collect.Maps;
@@ -59,9 +64,15 @@ public class BindingRepository extends AbstractComponentRepository<BindingKey, B
     private final Map<MediaTypeBindingKey, Producer<Binding>> byMediaType = Maps.newHashMap();
     private final Map<BindingKey, Producer<Binding>> bindings = Maps.newHashMap();
 
+    private volatile Routes routes = new Routes();
+
     private Collection<Binding> components;
     private Collection<BindingFactory> componentFactories;
 
+    public BindingRepository() {
+        this.activation.registerListener((FunctionalActivationListener<BindingKey>) (key, active) -> updateRoutes());
+    }
+
     @Autowired(required = false)
     public void setComponentFactories(Collection<BindingFactory> componentFactories) {
         this.componentFactories = componentFactories;
@@ -125,6 +136,7 @@ public class BindingRepository extends AbstractComponentRepository<BindingKey, B
                 byPath.put((PathBindingKey) key, binding);
             }
         }
+        updateRoutes();
         if (this.bindings.isEmpty()) {
             final StringBuilder exceptionText = new StringBuilder();
             exceptionText.append("No Binding implementation could be loaded! ");
@@ -147,6 +159,44 @@ public class BindingRepository extends AbstractComponentRepository<BindingKey, B
         return binding == null ? null : binding.get();
     }
 
+    /**
+     * Gets the active binding whose path is the longest prefix of the supplied
+     * request path.
+     *
+     * @param path the request path
+     *
+     * @return the binding or {@code null} if no active binding matches
+     */
+    public Binding getBindingForPath(String path) {
+        Producer<Binding> binding = this.routes.byPath.getLongestPrefixMatch(path);
+        return binding == null ? null : binding.get();
+    }
+
+    /**
+     * Gets the active binding for the supplied {@code Content-Type} header.
+     * Parameters of the media type are ignored.
+     *
+     * @param contentType the value of the {@code Content-Type} header
+     *
+     * @return the binding or {@code null} if no active binding matches
+     *
+     * @throws IllegalArgumentException if the content type can not be parsed
+     */
+    public Binding getBindingForContentType(String contentType) {
+        Producer<Binding> binding = this.routes.getByContentType(contentType);
+        return binding == null ? null : binding.get();
+    }
+
+    private synchronized void updateRoutes() {
+        PrefixTree.Builder<Producer<Binding>> byPathBuilder = PrefixTree.builder();
+        this.byPath.entrySet().stream().filter(e -> isActive(e.getKey()))
+                .forEach(e -> byPathBuilder.put(e.getKey().getPath(), e.getValue()));
+        Map<MediaType, Producer<Binding>> byMediaTypeMap = new HashMap<>(this.byMediaType.size());
+        this.byMediaType.entrySet().stream().filter(e -> isActive(e.getKey()))
+                .forEach(e -> byMediaTypeMap.put(e.getKey().getMediaType(), e.getValue()));
+        this.routes = new Routes(byPathBuilder.build(), byMediaTypeMap);
+    }
+
     public boolean isBindingSupported(String urlPattern) {
         return isActive(new PathBindingKey(urlPattern));
     }
@@ -222,4 +272,42 @@ public class BindingRepository extends AbstractComponentRepository<BindingKey, B
     public static BindingRepository getInstance() {
         return BindingRepository.instance;
     }
+
+    /**
+     * Immutable snapshot of the active bindings, replaced as a whole on
+     * initialization and activation changes.
+     */
+    private static class Routes {
+        /**
+         * The {@code Content-Type} header is client controlled, so the number
+         * of cached raw values is limited.
+         */
+        private static final int MAX_CACHED_CONTENT_TYPES = 256;
+        private final PrefixTree<Producer<Binding>> byPath;
+        private final Map<MediaType, Producer<Binding>> byMediaType;
+        private final ConcurrentMap<String, Optional<Producer<Binding>>> byContentType
+                = new ConcurrentHashMap<>();
+
+        Routes() {
+            this(PrefixTree.empty(), Collections.emptyMap());
+        }
+
+        Routes(PrefixTree<Producer<Binding>> byPath, Map<MediaType, Producer<Binding>> byMediaType) {
+            this.byPath = byPath;
+            this.byMediaType = byMediaType;
+        }
+
+        Producer<Binding> getByContentType(String contentType) {
+            Optional<Producer<Binding>> binding = this.byContentType.get(contentType);
+            if (binding == null) {
+                // strip of the parameters to get rid of things like encoding
+                MediaType mediaType = MediaType.parse(contentType).withoutParameters();
+                binding = Optional.ofNullable(this.byMediaType.get(mediaType));
+                if (this.byContentType.size() < MAX_CACHED_CONTENT_TYPES) {
+                    this.byContentType.put(contentType, binding);
+                }
+            }
+            return binding.orElse(null);
+        }
+    }
 }
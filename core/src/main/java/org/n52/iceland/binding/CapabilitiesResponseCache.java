@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.binding;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.n52.iceland.event.ServiceEvent;
+import org.n52.iceland.event.ServiceEventListener;
+import org.n52.iceland.event.events.ContentCacheChangedEvent;
+import org.n52.iceland.event.events.ContentCacheUpdateEvent;
+import org.n52.iceland.event.events.SettingsChangeEvent;
+import org.n52.iceland.exception.HTTPException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+import org.n52.iceland.request.AbstractServiceRequest;
+import org.n52.iceland.request.GetCapabilitiesRequest;
+import org.n52.iceland.util.activation.ActivationListenable;
+import org.n52.iceland.util.activation.FunctionalActivationListener;
+import org.n52.iceland.util.http.BufferedWritable;
+import org.n52.iceland.util.http.HTTPHeaders;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Cache of encoded GetCapabilities responses. The capabilities only change if
+ * the content cache is updated or a setting is changed, so repeated requests
+ * can be answered with the already encoded (and compressed) bytes without
+ * invoking the operator or the encoders.
+ * <p>
+ * Complete updates are tracked by their {@link ContentCacheChangedEvent}, so
+ * a complete update that did not change the cache keeps the responses.
+ * Activating or deactivating components that contribute to the capabilities
+ * (e.g. request operators) invalidates the cache as well, if the cache
+ * {@linkplain #invalidateOnActivation(ActivationListenable) listens} to
+ * their activation.
+ *
+ * @since 1.3.0
+ */
+public class CapabilitiesResponseCache implements ServiceEventListener {
+    private static final int MAX_ENTRIES = 64;
+    private static final Set<Class<? extends ServiceEvent>> EVENT_TYPES
+            = ImmutableSet.of(ContentCacheUpdateEvent.class, ContentCacheChangedEvent.class, SettingsChangeEvent.class);
+
+    private final Cache<Key, BufferedWritable> responses = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+
+    /**
+     * Creates the cache key for the supplied request.
+     *
+     * @param request     the service request
+     * @param httpRequest the HTTP request
+     *
+     * @return the key, or nothing if the response of the request can not be
+     *         cached, e.g. because the request carries extensions
+     */
+    public Optional<Key> getKey(AbstractServiceRequest<?> request, HttpServletRequest httpRequest) {
+        if (!(request instanceof GetCapabilitiesRequest)) {
+            return Optional.empty();
+        }
+        if (request.getExtensions() != null && !request.getExtensions().isEmpty()) {
+            // extensions are not comparable, so they can not be part of the key
+            return Optional.empty();
+        }
+        return Optional.of(new Key((GetCapabilitiesRequest) request, httpRequest.getHeader(HTTPHeaders.ACCEPT)));
+    }
+
+    /**
+     * Gets the cached response or encodes it using {@code loader}. A response
+     * that was encoded while the cache was invalidated is not cached.
+     *
+     * @param key    the key
+     * @param loader the loader
+     *
+     * @return the encoded response
+     *
+     * @throws OwsExceptionReport if the request can not be processed
+     * @throws HTTPException      if the response can not be encoded
+     * @throws IOException        if the response can not be encoded
+     */
+    public BufferedWritable get(Key key, Loader loader) throws OwsExceptionReport, HTTPException, IOException {
+        BufferedWritable response = this.responses.getIfPresent(key);
+        if (response == null) {
+            long current = this.generation.get();
+            response = loader.load();
+            if (current == this.generation.get()) {
+                this.responses.put(key, response);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return the time of the last invalidation, i.e. the earliest time the
+     *         cached capabilities may have changed
+     */
+    public long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Invalidates the cache whenever a component of {@code activation} is
+     * activated or deactivated.
+     *
+     * @param <K>        the key type
+     * @param activation the activation of the components
+     */
+    public <K> void invalidateOnActivation(ActivationListenable<K> activation) {
+        activation.registerListener((FunctionalActivationListener<K>) (key, active) -> invalidate());
+    }
+
+    public void invalidate() {
+        this.lastModified = System.currentTimeMillis();
+        this.generation.incrementAndGet();
+        this.responses.invalidateAll();
+    }
+
+    @Override
+    public Set<Class<? extends ServiceEvent>> getTypes() {
+        return EVENT_TYPES;
+    }
+
+    @Override
+    public void handle(ServiceEvent event) {
+        if (event instanceof ContentCacheUpdateEvent) {
+            if (!((ContentCacheUpdateEvent) event).isCompleteUpdate()) {
+                invalidate();
+            }
+        } else if (event instanceof ContentCacheChangedEvent) {
+            if (((ContentCacheChangedEvent) event).isChanged()) {
+                invalidate();
+            }
+        } else {
+            invalidate();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        BufferedWritable load() throws OwsExceptionReport, HTTPException, IOException;
+    }
+
+    /**
+     * The request parameters that influence the encoded capabilities.
+     */
+    public static final class Key {
+        private final String service;
+        private final String version;
+        private final List<String> acceptVersions;
+        private final List<String> sections;
+        private final List<String> acceptFormats;
+        private final String updateSequence;
+        private final String capabilitiesId;
+        private final Locale locale;
+        private final String accept;
+
+        Key(GetCapabilitiesRequest request, String accept) {
+            this.service = request.getService();
+            this.version = request.getVersion();
+            this.acceptVersions = ImmutableList.copyOf(request.getAcceptVersions());
+            this.sections = ImmutableList.copyOf(request.getSections());
+            this.acceptFormats = ImmutableList.copyOf(request.getAcceptFormats());
+            this.updateSequence = request.getUpdateSequence();
+            this.capabilitiesId = request.getCapabilitiesId();
+            this.locale = request.getRequestedLocale();
+            this.accept = accept;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(service, version, acceptVersions, sections, acceptFormats,
+                                updateSequence, capabilitiesId, locale, accept);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(this.service, other.service) &&
+                   Objects.equals(this.version, other.version) &&
+                   Objects.equals(this.acceptVersions, other.acceptVersions) &&
+                   Objects.equals(this.sections, other.sections) &&
+                   Objects.equals(this.acceptFormats, other.acceptFormats) &&
+                   Objects.equals(this.updateSequence, other.updateSequence) &&
+                   Objects.equals(this.capabilitiesId, other.capabilitiesId) &&
+                   Objects.equals(this.locale, other.locale) &&
+                   Objects.equals(this.accept, other.accept);
+        }
+    }
+}
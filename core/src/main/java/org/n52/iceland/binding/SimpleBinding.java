@@ -19,6 +19,7 @@ package org.n52.iceland.binding;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -46,18 +47,27 @@ import org.n52.iceland.exception.ows.concrete.MissingServiceParameterException;
 import org.n52.iceland.exception.ows.concrete.MissingVersionParameterException;
 import org.n52.iceland.exception.ows.concrete.NoEncoderForKeyException;
 import org.n52.iceland.exception.ows.concrete.VersionNotSupportedException;
+import org.n52.iceland.ogc.ows.OwsExtendedCapabilitiesProviderRepository;
+import org.n52.iceland.ogc.swes.OfferingExtensionRepository;
 import org.n52.iceland.request.AbstractServiceRequest;
 import org.n52.iceland.request.GetCapabilitiesRequest;
 import org.n52.iceland.request.RequestContext;
+import org.n52.iceland.request.operator.RequestOperatorRepository;
 import org.n52.iceland.response.AbstractServiceResponse;
 import org.n52.iceland.service.operator.ServiceOperator;
 import org.n52.iceland.service.operator.ServiceOperatorKey;
 import org.n52.iceland.service.operator.ServiceOperatorRepository;
+import org.n52.iceland.util.http.BufferedWritable;
+import org.n52.iceland.util.http.HTTPHeaders;
 import org.n52.iceland.util.http.HTTPStatus;
 import org.n52.iceland.util.http.HttpUtils;
 import org.n52.iceland.util.http.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * TODO JavaDoc
@@ -69,12 +79,21 @@ import org.slf4j.LoggerFactory;
 public abstract class SimpleBinding extends Binding {
     private static final Logger LOG = LoggerFactory.getLogger(SimpleBinding.class);
     public static final String HTTP_MEDIA_TYPE_QUALITY_PARAM = "q";
+    private static final int CONTENT_NEGOTIATION_CACHE_SIZE = 1024;
 
     private ServiceEventBus eventBus;
     private ServiceOperatorRepository serviceOperatorRepository;
     private EncoderRepository encoderRepository;
     private DecoderRepository decoderRepository;
     private HttpUtils httpUtils;
+    private final CapabilitiesResponseCache capabilitiesResponseCache = new CapabilitiesResponseCache();
+
+    /**
+     * Outcomes of the content negotiation for responses. An absent value
+     * denotes that no acceptable content type exists.
+     */
+    private final Cache<ContentNegotiationKey, Optional<MediaType>> contentNegotiationCache
+            = CacheBuilder.newBuilder().maximumSize(CONTENT_NEGOTIATION_CACHE_SIZE).build();
 
     public HttpUtils getHttpUtils() {
         return httpUtils;
@@ -88,6 +107,22 @@ public abstract class SimpleBinding extends Binding {
     @Inject
     public void setEventBus(ServiceEventBus eventBus) {
         this.eventBus = eventBus;
+        this.eventBus.register(this.capabilitiesResponseCache);
+    }
+
+    @Autowired(required = false)
+    public void setRequestOperatorRepository(RequestOperatorRepository repository) {
+        this.capabilitiesResponseCache.invalidateOnActivation(repository);
+    }
+
+    @Autowired(required = false)
+    public void setOwsExtendedCapabilitiesProviderRepository(OwsExtendedCapabilitiesProviderRepository repository) {
+        this.capabilitiesResponseCache.invalidateOnActivation(repository);
+    }
+
+    @Autowired(required = false)
+    public void setOfferingExtensionRepository(OfferingExtensionRepository repository) {
+        this.capabilitiesResponseCache.invalidateOnActivation(repository);
     }
 
     public ServiceEventBus getEventBus() {
@@ -185,16 +220,62 @@ public abstract class SimpleBinding extends Binding {
         return hasEncoder(response.getOperationKey(), mediaType);
     }
 
+    /**
+     * Chooses the content type of the response based on the {@code Accept}
+     * header of the request. The outcome is cached per {@code Accept} header,
+     * operation, response content type, default content type and generation
+     * of the encoders, so outcomes of previous generations are never returned
+     * and eventually evicted.
+     *
+     * @param request            the request
+     * @param response           the response
+     * @param defaultContentType the default content type of this binding
+     *
+     * @return the content type
+     *
+     * @throws HTTPException if the {@code Accept} header is invalid or no
+     *                       acceptable content type exists
+     */
+    protected MediaType chooseResponseContentType(HttpServletRequest request,
+            AbstractServiceResponse response,
+            MediaType defaultContentType) throws HTTPException {
+        if (response.getOperationKey() == null || this.encoderRepository == null) {
+            return chooseResponseContentType(response, HttpUtils.getAcceptHeader(request), defaultContentType);
+        }
+        // read before the negotiation, so an outcome computed against a
+        // changing repository is stored for the outdated generation
+        ContentNegotiationKey key = new ContentNegotiationKey(this.encoderRepository.getGeneration(),
+                request.getHeader(HTTPHeaders.ACCEPT), response.getOperationKey(),
+                response.isSetContentType() ? response.getContentType() : null, defaultContentType);
+        Optional<MediaType> contentType = this.contentNegotiationCache.getIfPresent(key);
+        if (contentType == null) {
+            try {
+                contentType = Optional.of(
+                        chooseResponseContentType(response, HttpUtils.getAcceptHeader(request), defaultContentType));
+            } catch (HTTPException e) {
+                if (e.getStatus() != HTTPStatus.NOT_ACCEPTABLE) {
+                    throw e;
+                }
+                contentType = Optional.empty();
+            }
+            this.contentNegotiationCache.put(key, contentType);
+        }
+        return contentType.orElseThrow(() -> new HTTPException(HTTPStatus.NOT_ACCEPTABLE));
+    }
+
     protected MediaType chooseResponseContentType(AbstractServiceResponse response,
             List<MediaType> acceptHeader,
             MediaType defaultContentType) throws HTTPException {
         /*
          * TODO get a list of response content types and check against
-         * wildcards/qualities
+         * wildcards
          */
         if (!acceptHeader.isEmpty()) {
             if (!response.isSetContentType()) {
                 for (MediaType mt : acceptHeader) {
+                    if (!isAcceptable(mt)) {
+                        continue;
+                    }
                     MediaType mediaType = mt.withoutParameter(HTTP_MEDIA_TYPE_QUALITY_PARAM);
                     if (defaultContentType.isCompatible(mediaType)) {
                         return defaultContentType;
@@ -206,6 +287,9 @@ public abstract class SimpleBinding extends Binding {
                 throw new HTTPException(HTTPStatus.NOT_ACCEPTABLE);
             } else {
                 for (MediaType mt : acceptHeader) {
+                    if (!isAcceptable(mt)) {
+                        continue;
+                    }
                     MediaType mediaType = mt.withoutParameter(HTTP_MEDIA_TYPE_QUALITY_PARAM);
                     if (response.getContentType().isCompatible(mediaType)) {
                         return response.getContentType();
@@ -232,12 +316,15 @@ public abstract class SimpleBinding extends Binding {
             MediaType defaultContentType) throws HTTPException {
         /*
          * TODO get a list of response content types and check against
-         * wildcards/qualities
+         * wildcards
          */
         if (acceptHeader.isEmpty()) {
             return defaultContentType;
         }
         for (MediaType mt : acceptHeader) {
+            if (!isAcceptable(mt)) {
+                continue;
+            }
             MediaType mediaType = mt.withoutParameter(HTTP_MEDIA_TYPE_QUALITY_PARAM);
             if (defaultContentType.isCompatible(mediaType)) {
                 return defaultContentType;
@@ -248,6 +335,14 @@ public abstract class SimpleBinding extends Binding {
         throw new HTTPException(HTTPStatus.NOT_ACCEPTABLE);
     }
 
+    /**
+     * Checks if the media type of an {@code Accept} header is not excluded by
+     * a quality of zero.
+     */
+    private static boolean isAcceptable(MediaType mediaType) {
+        return mediaType.getQuality() > 0;
+    }
+
     protected ServiceOperator getServiceOperator(ServiceOperatorKey sokt) {
         return getServiceOperatorRepository().getServiceOperator(sokt);
     }
@@ -303,10 +398,67 @@ public abstract class SimpleBinding extends Binding {
         exceptions.throwIfNotEmpty();
     }
 
+    /**
+     * Passes the request to its service operator and writes the response.
+     * Responses to GetCapabilities requests are served from the
+     * {@link CapabilitiesResponseCache} if possible and carry validators, so
+     * that conditional requests of polling clients are answered with
+     * {@code 304 Not Modified} without invoking the operator. Cached responses
+     * are written with the status and headers of the encoded response, but
+     * not through {@link #writeResponse(HttpServletRequest,
+     * HttpServletResponse, AbstractServiceResponse)}, so subclasses that
+     * override it have to override this method as well to apply their
+     * changes to GetCapabilities responses.
+     *
+     * @param request        the HTTP request
+     * @param response       the HTTP response
+     * @param serviceRequest the decoded request
+     *
+     * @throws OwsExceptionReport if the request can not be processed
+     * @throws HTTPException      if the response can not be written
+     * @throws IOException        if the response can not be written
+     */
+    protected void handleRequest(HttpServletRequest request,
+            HttpServletResponse response,
+            AbstractServiceRequest<?> serviceRequest) throws OwsExceptionReport, HTTPException, IOException {
+        Optional<CapabilitiesResponseCache.Key> key = this.capabilitiesResponseCache.getKey(serviceRequest, request);
+        if (key.isPresent()) {
+            BufferedWritable writable = this.capabilitiesResponseCache.get(key.get(), () -> {
+                AbstractServiceResponse serviceResponse = getServiceOperator(serviceRequest)
+                        .receiveRequest(serviceRequest);
+                MediaType contentType = chooseResponseContentType(request, serviceResponse, getDefaultContentType());
+                if (!serviceResponse.isSetContentType()) {
+                    serviceResponse.setContentType(contentType);
+                }
+                return httpUtils.buffer(serviceResponse, contentType);
+            });
+            long lastModified = this.capabilitiesResponseCache.getLastModified();
+            if (HttpUtils.isNotModified(request, writable.getETag(), lastModified)) {
+                HttpUtils.writeNotModified(response, writable.getETag(), lastModified);
+            } else {
+                HttpUtils.setValidators(response, writable.getETag(), lastModified);
+                httpUtils.writeObject(request, response, writable, this);
+            }
+        } else {
+            writeResponse(request, response, getServiceOperator(serviceRequest).receiveRequest(serviceRequest));
+        }
+    }
+
+    /**
+     * Writes the response of a service operator. Not used for responses
+     * served from the {@link CapabilitiesResponseCache}.
+     *
+     * @param request         the HTTP request
+     * @param response        the HTTP response
+     * @param serviceResponse the response of the service operator
+     *
+     * @throws HTTPException if the response can not be written
+     * @throws IOException   if the response can not be written
+     */
     protected void writeResponse(HttpServletRequest request,
             HttpServletResponse response,
             AbstractServiceResponse serviceResponse) throws HTTPException, IOException {
-        MediaType contentType = chooseResponseContentType(serviceResponse, HttpUtils.getAcceptHeader(request), getDefaultContentType());
+        MediaType contentType = chooseResponseContentType(request, serviceResponse, getDefaultContentType());
         if (!serviceResponse.isSetContentType()) {
             serviceResponse.setContentType(contentType);
         }
@@ -351,4 +503,40 @@ public abstract class SimpleBinding extends Binding {
         return encoder.encode(oer);
     }
 
+    private static class ContentNegotiationKey {
+        private final long generation;
+        private final String accept;
+        private final OperationKey operationKey;
+        private final MediaType responseContentType;
+        private final MediaType defaultContentType;
+
+        ContentNegotiationKey(long generation, String accept, OperationKey operationKey,
+                              MediaType responseContentType, MediaType defaultContentType) {
+            this.generation = generation;
+            this.accept = accept;
+            this.operationKey = operationKey;
+            this.responseContentType = responseContentType;
+            this.defaultContentType = defaultContentType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.generation, this.accept, this.operationKey, this.responseContentType,
+                                this.defaultContentType);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final ContentNegotiationKey other = (ContentNegotiationKey) obj;
+            return this.generation == other.generation &&
+                   Objects.equals(this.accept, other.accept) &&
+                   Objects.equals(this.operationKey, other.operationKey) &&
+                   Objects.equals(this.responseContentType, other.responseContentType) &&
+                   Objects.equals(this.defaultContentType, other.defaultContentType);
+        }
+    }
+
 }
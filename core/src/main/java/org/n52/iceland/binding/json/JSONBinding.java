@@ -35,7 +35,6 @@ import org.n52.iceland.exception.ows.concrete.NoDecoderForKeyException;
 import org.n52.iceland.ogc.sos.Sos2Constants;
 import org.n52.iceland.ogc.sos.SosConstants;
 import org.n52.iceland.request.AbstractServiceRequest;
-import org.n52.iceland.response.AbstractServiceResponse;
 import org.n52.iceland.util.JSONUtils;
 import org.n52.iceland.util.http.MediaType;
 import org.n52.iceland.util.http.MediaTypes;
@@ -107,8 +106,7 @@ public class JSONBinding extends SimpleBinding {
         try {
             request = parseRequest(req);
             checkServiceOperatorKeyTypes(request);
-            AbstractServiceResponse response = getServiceOperator(request).receiveRequest(request);
-            writeResponse(req, res, response);
+            handleRequest(req, res, request);
         } catch (OwsExceptionReport oer) {
             oer.setVersion(request != null ? request.getVersion() : null);
             writeOwsExceptionReport(req, res, oer);
@@ -51,7 +51,6 @@ import org.n52.iceland.ogc.sos.ConformanceClasses;
 import org.n52.iceland.ogc.sos.Sos2Constants;
 import org.n52.iceland.ogc.sos.SosConstants;
 import org.n52.iceland.request.AbstractServiceRequest;
-import org.n52.iceland.response.AbstractServiceResponse;
 import org.n52.iceland.service.MiscSettings;
 import org.n52.iceland.util.KvpHelper;
 import org.n52.iceland.util.http.MediaType;
@@ -126,8 +125,7 @@ public class KvpBinding extends SimpleBinding {
             serviceRequest = parseRequest(req);
             // add request context information
             serviceRequest.setRequestContext(getRequestContext(req));
-            AbstractServiceResponse response = getServiceOperator(serviceRequest).receiveRequest(serviceRequest);
-            writeResponse(req, res, response);
+            handleRequest(req, res, serviceRequest);
         } catch (OwsExceptionReport oer) {
             oer.setVersion(serviceRequest != null ? serviceRequest.getVersion() : null);
             writeOwsExceptionReport(req, res, oer);
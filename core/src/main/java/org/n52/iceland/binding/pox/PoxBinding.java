@@ -38,7 +38,6 @@ import org.n52.iceland.ogc.sos.ConformanceClasses;
 import org.n52.iceland.ogc.sos.Sos2Constants;
 import org.n52.iceland.ogc.sos.SosConstants;
 import org.n52.iceland.request.AbstractServiceRequest;
-import org.n52.iceland.response.AbstractServiceResponse;
 import org.n52.iceland.service.MiscSettings;
 import org.n52.iceland.util.http.MediaType;
 import org.n52.iceland.util.http.MediaTypes;
@@ -88,9 +87,7 @@ public class PoxBinding extends AbstractXmlBinding {
         AbstractServiceRequest<?> sosRequest = null;
         try {
             sosRequest = parseRequest(req);
-            AbstractServiceResponse sosResponse = getServiceOperator(sosRequest)
-                    .receiveRequest(sosRequest);
-            writeResponse(req, res, sosResponse);
+            handleRequest(req, res, sosRequest);
         } catch (OwsExceptionReport oer) {
             oer.setVersion(sosRequest != null ? sosRequest.getVersion() : null);
             writeOwsExceptionReport(req, res, oer);
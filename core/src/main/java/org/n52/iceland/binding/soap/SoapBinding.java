@@ -219,10 +219,8 @@ public class SoapBinding extends AbstractXmlBinding {
     }
 
     private void writeResponse(SoapChain chain) throws IOException, HTTPException {
-        HttpUtils.getAcceptHeader(chain.getHttpRequest());
         MediaType contentType =
-                chooseResponseContentType(chain.getBodyResponse(), HttpUtils.getAcceptHeader(chain.getHttpRequest()),
-                        getDefaultContentType());
+                chooseResponseContentType(chain.getHttpRequest(), chain.getBodyResponse(), getDefaultContentType());
         // TODO allow other bindings to encode response as soap messages
         if (contentType.isCompatible(getDefaultContentType())) {
             checkSoapInjection(chain);
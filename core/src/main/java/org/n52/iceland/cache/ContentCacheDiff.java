@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The differences between two content cache generations, grouped by
+ * category, e.g. the field of the cache. Categories without changes are
+ * omitted.
+ *
+ * @since 1.3.0
+ */
+public final class ContentCacheDiff {
+    private static final ContentCacheDiff EMPTY = new ContentCacheDiff(ImmutableMap.of());
+    private final Map<String, Category> categories;
+
+    private ContentCacheDiff(Map<String, Category> categories) {
+        this.categories = categories;
+    }
+
+    /**
+     * @return the changed categories by name
+     */
+    public Map<String, Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @param name the name of the category
+     *
+     * @return if the category changed
+     */
+    public boolean isChanged(String name) {
+        return this.categories.containsKey(name);
+    }
+
+    public boolean isEmpty() {
+        return this.categories.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).add("categories", categories.values()).toString();
+    }
+
+    public static ContentCacheDiff empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The changes of a single category. Categories that are not keyed by
+     * identifiers are only reported as changed.
+     */
+    public static final class Category {
+        private final String name;
+        private final Set<String> added;
+        private final Set<String> removed;
+        private final Set<String> modified;
+
+        Category(String name, Collection<String> added, Collection<String> removed, Collection<String> modified) {
+            this.name = name;
+            this.added = ImmutableSet.copyOf(added);
+            this.removed = ImmutableSet.copyOf(removed);
+            this.modified = ImmutableSet.copyOf(modified);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the identifiers that were added
+         */
+        public Set<String> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return the identifiers that were removed
+         */
+        public Set<String> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return the identifiers whose values changed
+         */
+        public Set<String> getModified() {
+            return modified;
+        }
+
+        /**
+         * @return if the changes are known by identifier
+         */
+        public boolean isKeyed() {
+            return !added.isEmpty() || !removed.isEmpty() || !modified.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("name", name)
+                    .add("added", added.size())
+                    .add("removed", removed.size())
+                    .add("modified", modified.size())
+                    .toString();
+        }
+    }
+
+    public static final class Builder {
+        private final ImmutableMap.Builder<String, Category> categories = ImmutableMap.builder();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the changes of a keyed category. Categories without changes
+         * are ignored.
+         *
+         * @param name     the name of the category
+         * @param added    the added identifiers
+         * @param removed  the removed identifiers
+         * @param modified the modified identifiers
+         *
+         * @return this
+         */
+        public Builder add(String name, Collection<String> added, Collection<String> removed,
+                           Collection<String> modified) {
+            if (!added.isEmpty() || !removed.isEmpty() || !modified.isEmpty()) {
+                this.categories.put(name, new Category(name, added, removed, modified));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a category that changed without identifying the changes.
+         *
+         * @param name the name of the category
+         *
+         * @return this
+         */
+        public Builder changed(String name) {
+            this.categories.put(name, new Category(name, ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of()));
+            return this;
+        }
+
+        public ContentCacheDiff build() {
+            return new ContentCacheDiff(this.categories.build());
+        }
+    }
+}
@@ -38,6 +38,19 @@ public interface ContentCachePersistenceStrategy {
      */
     void persistOnPartialUpdate(ContentCache cache);
 
+    /**
+     * Persist the specified cache in the event of a partial content update.
+     * Strategies that record changes instead of the complete cache can use
+     * the update. The default implementation delegates to
+     * {@link #persistOnPartialUpdate(ContentCache)}.
+     *
+     * @param cache  the cache
+     * @param update the partial update that was applied to the cache
+     */
+    default void persistOnPartialUpdate(ContentCache cache, ContentCacheUpdate update) {
+        persistOnPartialUpdate(cache);
+    }
+
     /**
      * Persist the specified cache in the event of a complete content update.
      *
@@ -29,6 +29,8 @@ public abstract class ContentCacheUpdate implements Action {
 
     private OwsExceptionReport exceptionReport;
 
+    private volatile boolean cancelled;
+
     /**
      * @return the cause of failure or {@code null}
      */
@@ -84,6 +86,22 @@ public abstract class ContentCacheUpdate implements Action {
         return this;
     }
 
+    /**
+     * Requests the cancellation of this update, e.g. because a newer complete
+     * update supersedes it. Implementations check {@link #isCancelled()} to
+     * stop early; a cancelled update is not applied.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return if the cancellation of this update was requested
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
     /**
      * @return if this a complete update that will replace the cache.
      */
@@ -23,8 +23,18 @@ import org.joda.time.DateTime;
  *
  * @author Christian Autermann
  */
+@SuppressWarnings("serial")
 public interface WritableContentCache extends ContentCache {
 
     void setLastUpdateTime(DateTime now);
 
+    /**
+     * @return the time of the last update or {@code null} if it is not known
+     *
+     * @since 1.3.0
+     */
+    default DateTime getLastUpdateTime() {
+        return null;
+    }
+
 }
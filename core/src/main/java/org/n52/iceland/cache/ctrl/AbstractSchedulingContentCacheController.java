@@ -16,8 +16,12 @@
  */
 package org.n52.iceland.cache.ctrl;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -29,11 +33,13 @@ import org.n52.iceland.config.annotation.Setting;
 import org.n52.iceland.exception.ConfigurationError;
 import org.n52.iceland.exception.ows.OwsExceptionReport;
 import org.n52.iceland.lifecycle.Destroyable;
-import org.n52.iceland.util.Validation;
+import org.n52.iceland.util.GroupedAndNamedThreadFactory;
 
 /**
  * Abstract class for capabilities cache controller implementations that
- * schedules a complete cache update at a configured interval.
+ * schedules complete cache updates according to a
+ * {@link ContentCacheUpdateSchedule}. Failed updates are retried with an
+ * exponential backoff instead of ending the schedule.
  *
  * @since 1.0.0
  */
@@ -41,73 +47,139 @@ import org.n52.iceland.util.Validation;
 public abstract class AbstractSchedulingContentCacheController implements ContentCacheController, Destroyable {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractSchedulingContentCacheController.class);
 
-    private boolean initialized = false;
-    private long updateInterval;
-    private final Timer timer = new Timer("52n-iceland-capabilities-cache-controller", true);
-    private TimerTask current = null;
+    private volatile boolean initialized = false;
+    private final ContentCacheUpdateSchedule schedule = new ContentCacheUpdateSchedule();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            daemon(new GroupedAndNamedThreadFactory("52n-iceland-capabilities-cache-controller")));
+    private ScheduledFuture<?> current = null;
+    private boolean startupUpdatePending;
+    private int updateInterval;
+    private String cronExpression;
+    private String quietHours;
+    private int failures;
+    private int unchanged;
 
     /**
-     * Starts a new timer task
+     * Schedules the next update.
      */
-    private void schedule() {
-        /*
-         * Timers can not be rescheduled. To make the interval changeable
-         * reschedule a new timer.
-         */
-        current = new UpdateTimerTask();
-        long delay = getUpdateInterval();
+    private synchronized void schedule() {
+        if (this.executor.isShutdown()) {
+            return;
+        }
+        long delay;
         if (!isInitialized()) {
             delay = 1;
             setInitialized(true);
+            this.startupUpdatePending = true;
+        } else {
+            DateTime next = this.schedule.next(DateTime.now(), this.failures, this.unchanged);
+            if (next == null) {
+                return;
+            }
+            delay = Math.max(1, next.getMillis() - System.currentTimeMillis());
         }
-        if (delay > 0) {
-            LOGGER.info("Next CapabilitiesCacheUpdate in {}m: {}", delay / 60000,
-                    new DateTime(System.currentTimeMillis() + delay));
-            timer.schedule(current, delay);
-        }
+        LOGGER.info("Next CapabilitiesCacheUpdate in {}m: {}", delay / 60000,
+                new DateTime(System.currentTimeMillis() + delay));
+        current = executor.schedule(this::runScheduledUpdate, delay, TimeUnit.MILLISECONDS);
     }
 
     @Setting(ScheduledContentCacheControllerSettings.CAPABILITIES_CACHE_UPDATE_INTERVAL)
-    public void setUpdateInterval(int interval) throws ConfigurationError {
-        Validation.greaterEqualZero("Cache update interval", interval);
+    public synchronized void setUpdateInterval(int interval) throws ConfigurationError {
         if (this.updateInterval != interval) {
+            this.schedule.setInterval(interval);
             this.updateInterval = interval;
             reschedule();
         }
     }
 
-    private long getUpdateInterval() {
-        return this.updateInterval * 60000;
+    /**
+     * @param expression a cron expression that replaces the update interval
+     *                   or {@code null}
+     */
+    public synchronized void setUpdateCronExpression(String expression) {
+        if (!Objects.equals(this.cronExpression, expression)) {
+            this.schedule.setCronExpression(expression);
+            this.cronExpression = expression;
+            reschedule();
+        }
+    }
+
+    /**
+     * @param seconds the maximal random delay added to every update
+     */
+    public void setUpdateJitter(int seconds) {
+        this.schedule.setJitter(seconds);
+    }
+
+    /**
+     * @param minutes the maximal delay between retries of failed updates
+     */
+    public void setUpdateMaxBackoff(int minutes) {
+        this.schedule.setMaxBackoff(minutes);
+    }
+
+    /**
+     * @param adaptive if the interval should be stretched while updates do
+     *                 not change the cache
+     */
+    public void setAdaptiveUpdates(boolean adaptive) {
+        this.schedule.setAdaptive(adaptive);
+    }
+
+    /**
+     * @param factor the maximal factor the interval is stretched by
+     */
+    public void setMaxAdaptiveFactor(int factor) {
+        this.schedule.setMaxAdaptiveFactor(factor);
     }
 
     /**
-     * Stops the current task, if available and starts a new {@link TimerTask}.
+     * @param quietHours the time span in which no scheduled updates are
+     *                   started, e.g. {@code 07:00-19:00}
+     */
+    public synchronized void setUpdateQuietHours(String quietHours) {
+        if (!Objects.equals(this.quietHours, quietHours)) {
+            this.schedule.setQuietHours(quietHours);
+            this.quietHours = quietHours;
+            reschedule();
+        }
+    }
+
+    /**
+     * Cancels the current task, if available, and schedules a new one.
      *
      * @see #schedule()
      */
-    private void reschedule() {
+    private synchronized void reschedule() {
+        if (this.startupUpdatePending) {
+            // the update at startup takes the new schedule into account
+            return;
+        }
         cancelCurrent();
         schedule();
     }
 
-    private void cancelCurrent() {
+    private synchronized void cancelCurrent() {
         if (this.current != null) {
-            this.current.cancel();
-            LOGGER.debug("Current {} canceled", UpdateTimerTask.class.getSimpleName());
-        }
-    }
-
-    private void cancelTimer() {
-        if (this.timer != null) {
-            this.timer.cancel();
-            LOGGER.debug("Cache Update timer canceled.");
+            this.current.cancel(false);
+            LOGGER.debug("Current cache update task canceled");
         }
     }
 
     @Override
     public void destroy() {
         cancelCurrent();
-        cancelTimer();
+        this.executor.shutdownNow();
+        LOGGER.debug("Cache Update executor shut down.");
+    }
+
+    /**
+     * @return if the last complete update changed the cache; used by the
+     *         adaptive schedule. The default implementation always returns
+     *         {@code true}.
+     */
+    protected boolean isLastUpdateChanged() {
+        return true;
     }
 
     /**
@@ -125,17 +197,33 @@ public abstract class AbstractSchedulingContentCacheController implements Conten
         this.initialized = initialized;
     }
 
-    private class UpdateTimerTask extends TimerTask {
-        @Override
-        public void run() {
-            try {
-                update();
-                LOGGER.info("Timertask: capabilities cache update successful!");
-                schedule();
-            } catch (OwsExceptionReport e) {
-                LOGGER.error("Fatal error: Timertask couldn't update capabilities cache! Switch log level to DEBUG to get more details.");
-                LOGGER.debug("Exception thrown", e);
+    private void runScheduledUpdate() {
+        synchronized (this) {
+            this.startupUpdatePending = false;
+        }
+        try {
+            update();
+            LOGGER.info("Scheduled capabilities cache update successful!");
+            synchronized (this) {
+                this.failures = 0;
+                this.unchanged = isLastUpdateChanged() ? 0 : this.unchanged + 1;
+            }
+        } catch (OwsExceptionReport | RuntimeException e) {
+            synchronized (this) {
+                ++this.failures;
             }
+            LOGGER.error("Scheduled capabilities cache update failed ({} consecutive failures)! Switch log level to DEBUG to get more details.",
+                         this.failures);
+            LOGGER.debug("Exception thrown", e);
         }
+        schedule();
+    }
+
+    private static ThreadFactory daemon(ThreadFactory factory) {
+        return r -> {
+            Thread thread = factory.newThread(r);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 }
@@ -16,38 +16,100 @@
  */
 package org.n52.iceland.cache.ctrl;
 
+import java.io.IOException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.joda.time.DateTime;
+import org.n52.iceland.cache.ContentCacheDiff;
 import org.n52.iceland.cache.ContentCachePersistenceStrategy;
 import org.n52.iceland.cache.ContentCacheUpdate;
 import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.cache.snapshot.ContentCacheSchema;
+import org.n52.iceland.cache.snapshot.MappedContentCache;
+import org.n52.iceland.event.ServiceEventBus;
+import org.n52.iceland.event.events.ContentCacheChangedEvent;
+import org.n52.iceland.event.events.ContentCacheUpdateEvent;
 import org.n52.iceland.exception.ows.OwsExceptionReport;
 import org.n52.iceland.lifecycle.Constructable;
-
-
+import org.n52.iceland.util.BackgroundExecutors;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Content cache controller that manages the cache in generations. Readers
+ * get the current generation through {@link #getCache()}, a single volatile
+ * read that never blocks.
+ * <p>
+ * A complete update builds a new generation from a cache of the
+ * {@link ContentCacheFactory} while the current generation keeps serving.
+ * Partial updates are applied to the current generation and recorded while a
+ * complete update is running; the recorded updates are replayed on the new
+ * generation before it replaces the current one with a single volatile
+ * write. Writers are serialized by a lock that readers never acquire. The new
+ * generation is persisted while holding the lock; the recorded partial
+ * updates are persisted only if the complete update failed or was cancelled.
+ * <p>
+ * Only one complete update runs at a time. A complete update requested while
+ * another one is running is queued and cancels the running one (see
+ * {@link ContentCacheUpdate#cancel()}); further requests wait for the queued
+ * update instead of queuing their own. Callers of a cancelled update wait for
+ * the update that superseded it. {@link PartitionedCompleteCacheUpdate}s
+ * without an executor of their own load their partitions on a pool that is
+ * owned by the controller and shut down on {@link #destroy()}.
+ * <p>
+ * Every swap publishes a {@link ContentCacheChangedEvent}. If a
+ * {@link ContentCacheSchema} is available, the event carries the differences
+ * between the generations.
+ */
 public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheController implements Constructable {
     private static final Logger LOGGER = LoggerFactory.getLogger(ContentCacheControllerImpl.class);
 
-    private static final AtomicInteger COMPLETE_UPDATE_COUNT = new AtomicInteger(0);
-    private static final AtomicInteger PARTIAL_UPDATE_COUNT = new AtomicInteger(0);
-    private CompleteUpdate current = null;
-    private CompleteUpdate next = null;
     private volatile WritableContentCache cache;
-    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Serializes the modifications of the current generation and the swap of
+     * generations.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * Guards {@link #running}, {@link #runningUpdate} and {@link #queued}.
+     */
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+    private CompletableFuture<Void> running;
+    private ContentCacheUpdate runningUpdate;
+    private CompletableFuture<Void> queued;
+    /**
+     * The partial updates to replay on the generation under construction or
+     * to persist if the complete update does not finish, guarded by
+     * {@link #writeLock}.
+     */
+    private Queue<ContentCacheUpdate> deltas;
+    private volatile boolean lastUpdateChanged = true;
+    private final AtomicLong generations = new AtomicLong();
+    /**
+     * The pool shared by the {@link PartitionedCompleteCacheUpdate}s, bounded
+     * by the number of processors.
+     */
+    private final ExecutorService partitionExecutor
+            = BackgroundExecutors.newExecutor("cache-update", Runtime.getRuntime().availableProcessors());
 
     private ContentCachePersistenceStrategy persistenceStrategy;
     private ContentCacheFactory cacheFactory;
     private CompleteCacheUpdateFactory completeCacheUpdateFactory;
+    private ServiceEventBus serviceEventBus;
+    private ContentCacheSchema<? extends WritableContentCache> schema;
 
     @Inject
     public void setCacheFactory(ContentCacheFactory cacheFactory) {
@@ -64,6 +126,16 @@ public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheCo
         this.completeCacheUpdateFactory = factory;
     }
 
+    @Inject
+    public void setServiceEventBus(ServiceEventBus serviceEventBus) {
+        this.serviceEventBus = serviceEventBus;
+    }
+
+    @Autowired(required = false)
+    public void setContentCacheSchema(ContentCacheSchema<? extends WritableContentCache> schema) {
+        this.schema = schema;
+    }
+
     @Override
     public void init() {
         loadOrCreateCache();
@@ -72,7 +144,16 @@ public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheCo
     private void loadOrCreateCache() {
         Optional<WritableContentCache> optionalCache = persistenceStrategy.load();
         if (optionalCache.isPresent()) {
-            setCache(optionalCache.get());
+            // a snapshot view is served until the update scheduled at startup
+            // replaces it, which may even have finished already
+            writeLock.lock();
+            try {
+                if (getCache() == null) {
+                    setCache(optionalCache.get());
+                }
+            } finally {
+                writeLock.unlock();
+            }
         } else {
             // cache file doesn't exist, try to load cache from datasource
             setCache(this.cacheFactory.get());
@@ -85,6 +166,9 @@ public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheCo
         setInitialized(true);
     }
 
+    private static boolean isView(WritableContentCache cache) {
+        return cache instanceof MappedContentCache;
+    }
 
     @Override
     public WritableContentCache getCache() {
@@ -98,11 +182,12 @@ public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheCo
     @Override
     public void destroy() {
         super.destroy();
-        lock();
+        this.partitionExecutor.shutdownNow();
+        writeLock.lock();
         try {
             persistenceStrategy.persistOnShutdown(getCache());
         } finally {
-            unlock();
+            writeLock.unlock();
         }
     }
 
@@ -110,284 +195,282 @@ public class ContentCacheControllerImpl extends AbstractSchedulingContentCacheCo
     public void update(ContentCacheUpdate update) throws OwsExceptionReport {
         if (update != null) {
             if (update.isCompleteUpdate()) {
-                executeComplete(new CompleteUpdate(update));
+                executeComplete(update);
             } else {
-                executePartial(new PartialUpdate(update));
+                executePartial(update);
             }
-            cache.setLastUpdateTime(DateTime.now());
+            this.serviceEventBus.submit(new ContentCacheUpdateEvent(update));
         } else {
             throw new IllegalArgumentException("update may not be null");
         }
     }
 
-    private void runCurrent() throws OwsExceptionReport {
-        LOGGER.trace("Starting update {}", this.current);
-        this.current.execute();
-        LOGGER.trace("Finished update {}", this.current);
-        lock();
+    private void executePartial(ContentCacheUpdate update) throws OwsExceptionReport {
+        awaitReplacementOfView();
+        writeLock.lock();
         try {
-            persistenceStrategy.persistOnCompleteUpdate(getCache());
-            CompleteUpdate u = this.current;
-            this.current = null;
-            u.signalWaiting();
+            WritableContentCache current = getCache();
+            execute(update, current);
+            current.setLastUpdateTime(DateTime.now());
+            if (this.deltas != null) {
+                this.deltas.add(update);
+            } else {
+                persistenceStrategy.persistOnPartialUpdate(current, update);
+            }
         } finally {
-            unlock();
+            writeLock.unlock();
         }
     }
 
-    private void executePartial(PartialUpdate update) throws OwsExceptionReport {
-        update.execute(getCache());
-        lock();
-        try {
-            if (this.current != null) {
-                this.current.addUpdate(update);
+    /**
+     * Views are read-only, so partial updates wait for the complete update
+     * that replaces the view. An update is only started if none is pending,
+     * e.g. because the update at startup failed.
+     */
+    private void awaitReplacementOfView() throws OwsExceptionReport {
+        while (isView(getCache())) {
+            CompletableFuture<Void> pending;
+            scheduleLock.lock();
+            try {
+                pending = this.queued != null ? this.queued : this.running;
+            } finally {
+                scheduleLock.unlock();
+            }
+            if (pending != null) {
+                await(pending);
             } else {
-                persistenceStrategy.persistOnPartialUpdate(getCache());
+                update();
             }
-        } finally {
-            unlock();
         }
     }
 
-    private void executeComplete(CompleteUpdate update) throws OwsExceptionReport {
-        boolean isCurrent = false;
-        boolean isNext = false;
-        CompleteUpdate waitFor = null;
-        lock();
+    private void executeComplete(ContentCacheUpdate update) throws OwsExceptionReport {
+        CompletableFuture<Void> own = null;
+        CompletableFuture<Void> waitFor;
+        scheduleLock.lock();
         try {
-            if (current == null || current.isFinished()) {
-                current = update;
-                isCurrent = true;
-            } else if (current.isNotYetStarted()) {
-                waitFor = current;
-            } else if (next == null || next.isFinished()) {
-                next = update;
-                waitFor = current;
-                isNext = true;
+            if (this.queued != null) {
+                waitFor = this.queued;
             } else {
-                waitFor = next;
+                own = new CompletableFuture<>();
+                waitFor = this.running;
+                if (waitFor == null) {
+                    this.running = own;
+                    this.runningUpdate = update;
+                } else {
+                    this.queued = own;
+                    LOGGER.debug("{} supersedes {}", update, this.runningUpdate);
+                    this.runningUpdate.cancel();
+                }
             }
         } finally {
-            unlock();
+            scheduleLock.unlock();
         }
 
-        if (isCurrent) {
-            runCurrent();
-        } else if (isNext) {
-            if (waitFor != null) {
-                LOGGER.trace("{} waiting for {}", update, waitFor);
-                waitFor.waitForCompletion();
-                LOGGER.trace("{} stopped waiting for {}", update, waitFor);
+        if (own == null) {
+            LOGGER.trace("{} waiting for queued update", update);
+            await(waitFor);
+            return;
+        }
+        if (waitFor != null) {
+            LOGGER.trace("{} waiting for running update", update);
+            try {
+                await(waitFor);
+            } catch (OwsExceptionReport e) {
+                LOGGER.debug("Previous update failed", e);
             }
-            lock();
+            scheduleLock.lock();
             try {
-                current = next;
-                next = null;
+                this.running = own;
+                this.runningUpdate = update;
+                this.queued = null;
             } finally {
-                unlock();
+                scheduleLock.unlock();
             }
-            runCurrent();
-        } else if (waitFor != null) {
-            LOGGER.trace("{} waiting for {}", update, waitFor);
-            waitFor.waitForCompletion();
-            LOGGER.trace("{} stopped waiting for {}", update, waitFor);
-        }
-    }
-
-    private void lock() {
-        lock.lock();
-    }
-
-    private void unlock() {
-        lock.unlock();
-    }
-
-    @Override
-    public boolean isUpdateInProgress() {
-        return current != null;
-    }
-
-    @Override
-    public void update() throws OwsExceptionReport {
-        update(this.completeCacheUpdateFactory.get());
-    }
-
-    @Override
-    public ContentCachePersistenceStrategy getContentCachePersistenceStrategy() {
-        return this.persistenceStrategy;
-    }
-
-    private enum State {
-        WAITING, RUNNING, APPLYING_UPDATES, FINISHED, FAILED
-    }
-
-    private abstract class Update {
-        private final ContentCacheUpdate update;
-
-        Update(ContentCacheUpdate update) {
-            this.update = update;
-        }
-
-        ContentCacheUpdate getUpdate() {
-            return update;
-        }
-    }
-
-    private class PartialUpdate extends Update {
-        private final int nr = PARTIAL_UPDATE_COUNT.getAndIncrement();
-
-        PartialUpdate(ContentCacheUpdate update) {
-            super(update);
         }
-
-        synchronized void execute(WritableContentCache cache) throws OwsExceptionReport {
-            LOGGER.trace("Starting Update {}", getUpdate());
-            getUpdate().reset();
-            getUpdate().setCache(cache);
-            getUpdate().execute();
-            LOGGER.trace("Finished Update {}", getUpdate());
-            if (getUpdate().failed()) {
-                LOGGER.warn("Update failed!", getUpdate().getFailureCause());
-                throw getUpdate().getFailureCause();
+        CompletableFuture<Void> superseding = null;
+        try {
+            runComplete(update);
+            own.complete(null);
+        } catch (OwsExceptionReport | RuntimeException e) {
+            if (!update.isCancelled()) {
+                own.completeExceptionally(e);
+                throw e;
+            }
+            LOGGER.debug("Cancelled update {} failed", update, e);
+            own.complete(null);
+        } finally {
+            scheduleLock.lock();
+            try {
+                if (this.running == own) {
+                    this.running = null;
+                    this.runningUpdate = null;
+                }
+                if (update.isCancelled()) {
+                    superseding = this.queued;
+                }
+            } finally {
+                scheduleLock.unlock();
             }
         }
-
-        @Override
-        public String toString() {
-            return String.format("PartialUpdate[#%d]", nr);
+        if (superseding != null) {
+            LOGGER.trace("{} waiting for superseding update", update);
+            await(superseding);
         }
     }
 
-    private class CompleteUpdate extends Update {
-        private final ConcurrentLinkedQueue<PartialUpdate> updates
-                = new ConcurrentLinkedQueue<>();
-
-        private final Lock lock = new ReentrantLock();
-        private final Condition finished = lock.newCondition();
-        private State state = State.WAITING;
-        private final int nr = COMPLETE_UPDATE_COUNT.getAndIncrement();
-
-        CompleteUpdate(ContentCacheUpdate update) {
-            super(update);
+    private void runComplete(ContentCacheUpdate update) throws OwsExceptionReport {
+        if (update.isCancelled()) {
+            return;
         }
-
-        void addUpdate(PartialUpdate update) {
-            updates.offer(update);
+        Queue<ContentCacheUpdate> recorded = new ConcurrentLinkedQueue<>();
+        writeLock.lock();
+        try {
+            this.deltas = recorded;
+        } finally {
+            writeLock.unlock();
         }
-
-        State getState() {
-            lock();
-            try {
-                return state;
-            } finally {
-                unlock();
+        try {
+            LOGGER.trace("Starting update {}", update);
+            WritableContentCache generation = execute(update, this.cacheFactory.get());
+            LOGGER.trace("Finished update {}", update);
+            if (update.isCancelled()) {
+                LOGGER.debug("Discarding cancelled update {}", update);
+                return;
             }
-        }
-
-        void setState(State state) {
-            ContentCacheControllerImpl.this.lock();
+            ContentCacheChangedEvent event;
+            writeLock.lock();
             try {
-                lock();
-                try {
-                    LOGGER.debug("State change: {} -> {}", this.state, state);
-                    this.state = state;
-                } finally {
-                    unlock();
+                ContentCacheUpdate delta;
+                while ((delta = recorded.poll()) != null) {
+                    try {
+                        execute(delta, generation);
+                    } catch (OwsExceptionReport e) {
+                        LOGGER.warn("Replaying partial update on new cache failed", e);
+                    }
+                }
+                WritableContentCache previous = getCache();
+                if (previous != null) {
+                    // the update time does not count as a change
+                    generation.setLastUpdateTime(previous.getLastUpdateTime());
+                }
+                Optional<ContentCacheDiff> diff = diff(previous, generation);
+                if (diff.isPresent()) {
+                    this.lastUpdateChanged = !diff.get().isEmpty();
+                } else {
+                    this.lastUpdateChanged = !Objects.equals(previous, generation);
                 }
+                generation.setLastUpdateTime(DateTime.now());
+                setCache(generation);
+                event = new ContentCacheChangedEvent(this.generations.incrementAndGet(), diff);
+                // persisted while holding the lock, as partial updates would
+                // otherwise be part of the generation and of the delta log
+                this.deltas = null;
+                persistenceStrategy.persistOnCompleteUpdate(generation);
             } finally {
-                ContentCacheControllerImpl.this.unlock();
+                writeLock.unlock();
             }
-        }
-
-        boolean isFinished() {
-            lock();
+            LOGGER.debug("Content cache changed: {}", event);
+            this.serviceEventBus.submit(event);
+        } finally {
+            writeLock.lock();
             try {
-                return getState() == State.FINISHED || getState() == State.FAILED;
+                this.deltas = null;
+                // the recorded updates of a failed or cancelled update were
+                // applied to the current generation but were not persisted
+                ContentCacheUpdate delta;
+                while ((delta = recorded.poll()) != null) {
+                    persistenceStrategy.persistOnPartialUpdate(getCache(), delta);
+                }
             } finally {
-                unlock();
+                writeLock.unlock();
             }
         }
+    }
 
-        boolean isNotYetStarted() {
-            lock();
-            try {
-                return getState() == State.WAITING;
-            } finally {
-                unlock();
-            }
+    /**
+     * Computes the differences between the generations. This is done while
+     * holding the write lock, as partial updates may otherwise modify the
+     * new generation concurrently.
+     *
+     * @return the differences or an empty optional if they can not be
+     *         determined
+     */
+    @SuppressWarnings("unchecked")
+    private Optional<ContentCacheDiff> diff(WritableContentCache previous, WritableContentCache next) {
+        if (this.schema == null || previous == null || isView(previous)) {
+            return Optional.empty();
         }
-
-        void execute() throws OwsExceptionReport {
-            setCache(execute(getCache()));
+        try {
+            return Optional.of(((ContentCacheSchema<WritableContentCache>) this.schema).diff(previous, next));
+        } catch (IOException | ClassCastException e) {
+            LOGGER.warn("Could not compute the differences of the cache generations", e);
+            return Optional.empty();
         }
+    }
 
-        WritableContentCache execute(WritableContentCache cache) throws OwsExceptionReport {
-            if (isFinished()) {
-                throw new IllegalStateException("already finished");
-            }
-            setState(State.RUNNING);
-            getUpdate().setCache(cache);
-            LOGGER.trace("Starting update {}", getUpdate());
-            getUpdate().execute();
-            LOGGER.trace("Finished update {}", getUpdate());
-            lock();
-            try {
-                if (getUpdate().failed()) {
-                    setState(State.FAILED);
-                    LOGGER.warn("Update failed!", getUpdate().getFailureCause());
-                    throw getUpdate().getFailureCause();
-                } else {
-                    setState(State.APPLYING_UPDATES);
-                    PartialUpdate pu;
-                    WritableContentCache cc = getUpdate().getCache();
-                    while ((pu = updates.poll()) != null) {
-                        pu.execute(cc);
-                    }
-                    setState(State.FINISHED);
-                    return cc;
-                }
-            } finally {
-                unlock();
+    /**
+     * Executes the update on the cache.
+     *
+     * @return the cache of the update after execution
+     */
+    private WritableContentCache execute(ContentCacheUpdate update, WritableContentCache cache)
+            throws OwsExceptionReport {
+        update.reset();
+        update.setCache(cache);
+        if (update instanceof PartitionedCompleteCacheUpdate) {
+            PartitionedCompleteCacheUpdate<?> partitioned = (PartitionedCompleteCacheUpdate<?>) update;
+            if (partitioned.getExecutor() == null) {
+                partitioned.setExecutor(this.partitionExecutor);
             }
         }
-
-        void waitForCompletion() throws OwsExceptionReport {
-            lock();
-            try {
-                while (!isFinished()) {
-                    try {
-                        finished.await();
-                    } catch (InterruptedException ex) {
-                    }
-                }
-                if (getState() == State.FAILED) {
-                    throw getUpdate().getFailureCause();
-                }
-            } finally {
-                unlock();
-            }
+        update.execute();
+        if (update.failed()) {
+            LOGGER.warn("Update failed!", update.getFailureCause());
+            throw update.getFailureCause();
         }
+        return update.getCache();
+    }
 
-        void signalWaiting() {
-            lock();
-            try {
-                finished.signalAll();
-            } finally {
-                unlock();
+    private static void await(CompletableFuture<Void> future) throws OwsExceptionReport {
+        try {
+            Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OwsExceptionReport) {
+                throw (OwsExceptionReport) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        @Override
-        public String toString() {
-            return String.format("CompleteUpdate[#%d]", nr);
-        }
+    /**
+     * Compares the new generation with the previous one, so caches have to
+     * implement {@link Object#equals(Object)} for adaptive scheduling.
+     */
+    @Override
+    protected boolean isLastUpdateChanged() {
+        return this.lastUpdateChanged;
+    }
 
-        protected void unlock() {
-            lock.unlock();
+    @Override
+    public boolean isUpdateInProgress() {
+        scheduleLock.lock();
+        try {
+            return this.running != null;
+        } finally {
+            scheduleLock.unlock();
         }
+    }
 
-        protected void lock() {
-            lock.lock();
-        }
+    @Override
+    public void update() throws OwsExceptionReport {
+        update(this.completeCacheUpdateFactory.get());
+    }
+
+    @Override
+    public ContentCachePersistenceStrategy getContentCachePersistenceStrategy() {
+        return this.persistenceStrategy;
     }
 }
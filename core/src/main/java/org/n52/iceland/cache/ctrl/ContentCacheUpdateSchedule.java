@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalTime;
+import org.springframework.scheduling.support.CronSequenceGenerator;
+
+import org.n52.iceland.exception.ConfigurationError;
+import org.n52.iceland.util.Validation;
+
+import com.google.common.base.Strings;
+
+/**
+ * Computes the time of the next scheduled complete cache update.
+ * <ul>
+ * <li>Updates run at a fixed interval or at the times of a cron expression
+ * (see {@link CronSequenceGenerator} for the syntax).</li>
+ * <li>After a failed update the interval is doubled for every consecutive
+ * failure, up to the maximum backoff.</li>
+ * <li>In adaptive mode the interval is doubled for every consecutive update
+ * that did not change the cache, up to the maximum factor.</li>
+ * <li>A random jitter is added to spread the load of several instances.</li>
+ * <li>Updates that would fall into the quiet hours are postponed to their
+ * end.</li>
+ * </ul>
+ *
+ * @since 1.3.0
+ */
+public class ContentCacheUpdateSchedule {
+    private static final long MINUTE = 60000;
+    public static final int DEFAULT_MAX_BACKOFF = 24 * 60;
+    public static final int DEFAULT_MAX_ADAPTIVE_FACTOR = 8;
+
+    private final Random random;
+    private long interval;
+    private CronSequenceGenerator cron;
+    private long jitter;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF * MINUTE;
+    private boolean adaptive;
+    private int maxAdaptiveFactor = DEFAULT_MAX_ADAPTIVE_FACTOR;
+    private LocalTime quietStart;
+    private LocalTime quietEnd;
+
+    public ContentCacheUpdateSchedule() {
+        this(new Random());
+    }
+
+    ContentCacheUpdateSchedule(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * @param minutes the update interval in minutes, {@code 0} to disable
+     *                interval based updates
+     */
+    public void setInterval(int minutes) {
+        Validation.greaterEqualZero("Cache update interval", minutes);
+        this.interval = minutes * MINUTE;
+    }
+
+    /**
+     * @param expression the cron expression or {@code null} to use the
+     *                   interval
+     */
+    public void setCronExpression(String expression) {
+        if (Strings.isNullOrEmpty(expression)) {
+            this.cron = null;
+        } else {
+            try {
+                this.cron = new CronSequenceGenerator(expression, TimeZone.getDefault());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationError("Invalid cron expression: " + expression, e);
+            }
+        }
+    }
+
+    /**
+     * @param seconds the maximal random delay added to every update
+     */
+    public void setJitter(int seconds) {
+        Validation.greaterEqualZero("Cache update jitter", seconds);
+        this.jitter = seconds * 1000L;
+    }
+
+    /**
+     * @param minutes the maximal delay after failed updates
+     */
+    public void setMaxBackoff(int minutes) {
+        Validation.greaterZero("Cache update backoff", minutes);
+        this.maxBackoff = minutes * MINUTE;
+    }
+
+    /**
+     * @param adaptive if the interval should be stretched while updates do
+     *                 not change the cache
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * @param factor the maximal factor the interval is stretched by
+     */
+    public void setMaxAdaptiveFactor(int factor) {
+        Validation.greaterZero("Adaptive cache update factor", factor);
+        this.maxAdaptiveFactor = factor;
+    }
+
+    /**
+     * @param quietHours the time span in which no updates are started, e.g.
+     *                   {@code 07:00-19:00}, or {@code null} to update at any
+     *                   time
+     */
+    public void setQuietHours(String quietHours) {
+        if (Strings.isNullOrEmpty(quietHours)) {
+            this.quietStart = null;
+            this.quietEnd = null;
+            return;
+        }
+        String[] split = quietHours.split("-");
+        if (split.length != 2) {
+            throw new ConfigurationError("Invalid quiet hours: " + quietHours);
+        }
+        try {
+            this.quietStart = LocalTime.parse(split[0].trim());
+            this.quietEnd = LocalTime.parse(split[1].trim());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationError("Invalid quiet hours: " + quietHours, e);
+        }
+    }
+
+    /**
+     * @return if updates are scheduled at all
+     */
+    public boolean isEnabled() {
+        return this.interval > 0 || this.cron != null;
+    }
+
+    /**
+     * Computes the time of the next update.
+     *
+     * @param now       the current time
+     * @param failures  the number of consecutive failed updates
+     * @param unchanged the number of consecutive updates that did not change
+     *                  the cache
+     *
+     * @return the time of the next update or {@code null} if no update is
+     *         scheduled
+     */
+    public DateTime next(DateTime now, int failures, int unchanged) {
+        if (!isEnabled()) {
+            return null;
+        }
+        DateTime next;
+        if (failures > 0) {
+            long base = this.interval > 0 ? this.interval : MINUTE;
+            next = now.plus(multiply(base, failures, this.maxBackoff));
+        } else if (this.cron != null) {
+            // stretch by skipping firings, e.g. every fourth firing is used
+            // for a factor of four
+            next = new DateTime(this.cron.next(now.toDate()));
+            for (long i = 1; i < adaptiveFactor(unchanged); ++i) {
+                next = new DateTime(this.cron.next(next.toDate()));
+            }
+        } else {
+            next = now.plus(this.interval * adaptiveFactor(unchanged));
+        }
+        if (this.jitter > 0) {
+            next = next.plus((long) (this.random.nextDouble() * this.jitter));
+        }
+        return postponeQuietHours(next);
+    }
+
+    private DateTime postponeQuietHours(DateTime time) {
+        if (this.quietStart == null || this.quietStart.equals(this.quietEnd)) {
+            return time;
+        }
+        LocalTime local = time.toLocalTime();
+        boolean quiet;
+        if (this.quietStart.isBefore(this.quietEnd)) {
+            quiet = !local.isBefore(this.quietStart) && local.isBefore(this.quietEnd);
+        } else {
+            // the quiet hours span midnight
+            quiet = !local.isBefore(this.quietStart) || local.isBefore(this.quietEnd);
+        }
+        if (!quiet) {
+            return time;
+        }
+        DateTime end = time.withTime(this.quietEnd);
+        return end.isAfter(time) ? end : end.plusDays(1);
+    }
+
+    private static long multiply(long base, int exponent, long max) {
+        long value = base;
+        for (int i = 1; i < exponent && value < max; ++i) {
+            value *= 2;
+        }
+        return Math.min(value, max);
+    }
+
+    private long adaptiveFactor(int unchanged) {
+        return this.adaptive ? Math.min(1L << Math.min(unchanged, 30), this.maxAdaptiveFactor) : 1;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.exception.ows.NoApplicableCodeException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Base class for complete cache updates that split the work into partitions,
+ * e.g. batches of offerings or procedures. Every partition is loaded into a
+ * cache of its own on the {@linkplain #setExecutor(ExecutorService) supplied
+ * executor}, usually the shared pool of the {@link ContentCacheControllerImpl},
+ * or, if there is none, sequentially on the calling thread; the partition
+ * caches are then merged into the cache of this update in the order of
+ * {@link #getPartitions()}, independent of the order in which the partitions
+ * finish.
+ * <p>
+ * The first partition to fail fails the update and cancels the remaining
+ * ones, regardless of its position. If the update is
+ * {@linkplain #cancel() cancelled}, partitions that have not started yet are
+ * skipped and the update ends without merging; long running partitions
+ * should check {@link #isCancelled()}.
+ *
+ * @param <P> the partition type
+ *
+ * @since 1.3.0
+ */
+public abstract class PartitionedCompleteCacheUpdate<P> extends ContentCacheUpdate {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedCompleteCacheUpdate.class);
+
+    private ExecutorService executor;
+    private List<PartitionTiming<P>> timings = Collections.emptyList();
+
+    /**
+     * @param executor the executor to run the partitions on; it is not shut
+     *                 down by this update
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    protected ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    @Override
+    public boolean isCompleteUpdate() {
+        return true;
+    }
+
+    /**
+     * @return the partitions of the update
+     *
+     * @throws OwsExceptionReport if the partitions can not be determined
+     */
+    protected abstract List<P> getPartitions() throws OwsExceptionReport;
+
+    /**
+     * @return a new, empty cache for a partition
+     */
+    protected abstract WritableContentCache createPartitionCache();
+
+    /**
+     * Loads the partition into the supplied cache. Called concurrently for
+     * different partitions.
+     *
+     * @param partition the partition
+     * @param cache     the cache of the partition
+     *
+     * @throws OwsExceptionReport if the partition can not be loaded
+     */
+    protected abstract void update(P partition, WritableContentCache cache) throws OwsExceptionReport;
+
+    /**
+     * Merges the cache of a partition into the cache of this update. Called
+     * sequentially in partition order.
+     *
+     * @param cache     the cache of this update
+     * @param partition the cache of the partition
+     */
+    protected abstract void merge(WritableContentCache cache, WritableContentCache partition);
+
+    /**
+     * @return the timings of the partitions of the last execution, in
+     *         partition order
+     */
+    public List<PartitionTiming<P>> getTimings() {
+        return timings;
+    }
+
+    @Override
+    public void execute() {
+        long start = System.nanoTime();
+        List<P> partitions;
+        try {
+            partitions = getPartitions();
+        } catch (OwsExceptionReport e) {
+            fail(e);
+            return;
+        }
+        ExecutorService partitionExecutor = getExecutor();
+        if (partitionExecutor == null) {
+            partitionExecutor = MoreExecutors.newDirectExecutorService();
+        }
+        execute(partitions, partitionExecutor, start);
+    }
+
+    private void execute(List<P> partitions, ExecutorService partitionExecutor, long start) {
+        // partitions are taken in completion order, so a failure is noticed
+        // as soon as it occurs
+        BlockingQueue<Future<LoadedPartition>> completed = new LinkedBlockingQueue<>();
+        CompletionService<LoadedPartition> completion
+                = new ExecutorCompletionService<>(partitionExecutor, completed);
+        List<Future<LoadedPartition>> futures = new ArrayList<>(partitions.size());
+        List<PartitionTiming<P>> partitionTimings = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); ++i) {
+            int index = i;
+            PartitionTiming<P> timing = new PartitionTiming<>(partitions.get(i));
+            partitionTimings.add(timing);
+            futures.add(completion.submit(() -> run(index, partitions.get(index), timing)));
+        }
+        this.timings = Collections.unmodifiableList(partitionTimings);
+        WritableContentCache[] caches = new WritableContentCache[partitions.size()];
+        for (int i = 0; i < futures.size(); ++i) {
+            try {
+                LoadedPartition loaded = Uninterruptibles.getUninterruptibly(
+                        Uninterruptibles.takeUninterruptibly(completed));
+                caches[loaded.index] = loaded.cache;
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(false));
+                if (!isCancelled()) {
+                    fail(toOwsExceptionReport(e.getCause()));
+                }
+                return;
+            }
+        }
+        if (isCancelled()) {
+            LOGGER.debug("{} cancelled after loading {} partitions", this, caches.length);
+            return;
+        }
+        WritableContentCache cache = getCache();
+        for (WritableContentCache partition : caches) {
+            merge(cache, partition);
+        }
+        log(partitionTimings, System.nanoTime() - start);
+    }
+
+    private LoadedPartition run(int index, P partition, PartitionTiming<P> timing) throws OwsExceptionReport {
+        WritableContentCache cache = createPartitionCache();
+        if (isCancelled()) {
+            return new LoadedPartition(index, cache);
+        }
+        long start = System.nanoTime();
+        try {
+            update(partition, cache);
+        } catch (RuntimeException e) {
+            throw new NoApplicableCodeException().causedBy(e)
+                    .withMessage("Error loading cache partition %s", partition);
+        } finally {
+            timing.setNanos(System.nanoTime() - start);
+        }
+        return new LoadedPartition(index, cache);
+    }
+
+    private void log(List<PartitionTiming<P>> partitionTimings, long nanos) {
+        if (LOGGER.isDebugEnabled()) {
+            partitionTimings.forEach(timing -> LOGGER.debug("{}", timing));
+        }
+        PartitionTiming<P> slowest = partitionTimings.stream()
+                .max((a, b) -> Long.compare(a.getNanos(), b.getNanos())).orElse(null);
+        LOGGER.info("{} loaded {} partitions in {} ms, slowest: {}", this, partitionTimings.size(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), slowest);
+    }
+
+    private static OwsExceptionReport toOwsExceptionReport(Throwable cause) {
+        if (cause instanceof OwsExceptionReport) {
+            return (OwsExceptionReport) cause;
+        }
+        return new NoApplicableCodeException().causedBy(cause).withMessage("Error loading cache partition");
+    }
+
+    /**
+     * Splits the values into batches of the supplied size.
+     *
+     * @param <T>    the value type
+     * @param values the values
+     * @param size   the maximal size of a batch
+     *
+     * @return the batches
+     */
+    public static <T> List<List<T>> batches(Collection<T> values, int size) {
+        return Lists.partition(new ArrayList<>(values), size);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * The time a partition took to load.
+     *
+     * @param <P> the partition type
+     */
+    public static class PartitionTiming<P> {
+        private final P partition;
+        private volatile long nanos = -1;
+
+        PartitionTiming(P partition) {
+            this.partition = partition;
+        }
+
+        public P getPartition() {
+            return partition;
+        }
+
+        /**
+         * @return the duration in nanoseconds or {@code -1} if the partition
+         *         did not finish
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        void setNanos(long nanos) {
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("PartitionTiming[partition=%s, millis=%d]", partition,
+                                 TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    private static final class LoadedPartition {
+        private final int index;
+        private final WritableContentCache cache;
+
+        LoadedPartition(int index, WritableContentCache cache) {
+            this.index = index;
+            this.cache = cache;
+        }
+    }
+}
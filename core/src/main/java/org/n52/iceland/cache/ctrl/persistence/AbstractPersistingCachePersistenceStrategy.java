@@ -16,13 +16,29 @@
  */
 package org.n52.iceland.cache.ctrl.persistence;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 import javax.inject.Inject;
 
@@ -34,13 +50,35 @@ import org.n52.iceland.cache.ContentCachePersistenceStrategy;
 import org.n52.iceland.cache.WritableContentCache;
 import org.n52.iceland.lifecycle.Constructable;
 import org.n52.iceland.service.ConfigLocationProvider;
+import org.n52.iceland.util.Validation;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Base class for strategies that persist the cache to a file in the
+ * configuration directory.
+ * <p>
+ * Caches are written to a temporary sibling file, forced to disk and renamed
+ * to the cache file, so a crash while writing never damages the last
+ * persisted cache. Every file ends with a trailer containing the length and
+ * the CRC32 of the content. The previous generations of the cache file are
+ * kept as {@code <file>.1}, {@code <file>.2}, ...; if the current generation
+ * is missing, truncated or fails to load, {@link #load()} falls back to the
+ * next older one.
+ */
 public abstract class AbstractPersistingCachePersistenceStrategy
         implements ContentCachePersistenceStrategy, Constructable {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(AbstractPersistingCachePersistenceStrategy.class);
     public static final String CACHE_FILE = "cache.tmp";
+    public static final int DEFAULT_PREVIOUS_GENERATIONS = 1;
+    private static final String TEMP_FILE_SUFFIX = ".part";
+    private static final byte[] TRAILER_MAGIC = { 'I', 'C', 'C', 'K' };
+    private static final int TRAILER_LENGTH = TRAILER_MAGIC.length + 8 + 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
     private String cacheFile;
+    private int previousGenerations = DEFAULT_PREVIOUS_GENERATIONS;
 
     private ConfigLocationProvider configLocationProvider;
 
@@ -50,69 +88,350 @@ public abstract class AbstractPersistingCachePersistenceStrategy
         this.configLocationProvider = configLocationProvider;
     }
 
+    /**
+     * @param previousGenerations the number of previous cache files to keep
+     *                            as fallback
+     */
+    public void setPreviousGenerations(int previousGenerations) {
+        Validation.greaterEqualZero("Previous cache generations", previousGenerations);
+        this.previousGenerations = previousGenerations;
+    }
+
     @Override
     public void init() {
-        this.cacheFile = new File(configLocationProvider.get(), CACHE_FILE)
+        this.cacheFile = new File(configLocationProvider.get(), getCacheFileName())
                 .getAbsolutePath();
+        deleteTemporaryFiles();
     }
 
     protected File getCacheFile() {
         return new File(this.cacheFile);
     }
 
+    /**
+     * @param generation the generation, {@code 0} being the current one
+     *
+     * @return the cache file of the generation
+     */
+    protected File getCacheFile(int generation) {
+        return generation == 0 ? getCacheFile() : new File(this.cacheFile + "." + generation);
+    }
+
+    /**
+     * @return the name of the cache file in the configuration directory
+     */
+    protected String getCacheFileName() {
+        return CACHE_FILE;
+    }
+
+    /**
+     * Reads the cache from the persisted representation. The default
+     * implementation uses Java serialization.
+     *
+     * @param in the stream to read from
+     *
+     * @return the cache
+     *
+     * @throws IOException if the cache can not be read
+     */
+    protected WritableContentCache readCache(InputStream in) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(in)) {
+            return (WritableContentCache) ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Reads the cache from the persisted file. The default implementation
+     * delegates to {@link #readCache(InputStream)}.
+     *
+     * @param file   the file
+     * @param length the length of the content, excluding the checksum trailer
+     *
+     * @return the cache
+     *
+     * @throws IOException if the cache can not be read
+     */
+    protected WritableContentCache readCache(Path file, long length) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readCache(ByteStreams.limit(new BufferedInputStream(in, BUFFER_SIZE), length));
+        }
+    }
+
+    /**
+     * Writes the persisted representation of the cache. The default
+     * implementation uses Java serialization.
+     *
+     * @param cache the cache
+     * @param out   the stream to write to
+     *
+     * @throws IOException if the cache can not be written
+     */
+    protected void writeCache(ContentCache cache, OutputStream out) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(cache);
+        }
+    }
+
     @Override
     public Optional<WritableContentCache> load() {
-        File file = getCacheFile();
-        if (file.exists() && file.canRead()) {
-            LOGGER.debug("Reading cache from temp file '{}'",
-                         file.getAbsolutePath());
-
-            try (FileInputStream fis = new FileInputStream(file);
-                 ObjectInputStream ois = new ObjectInputStream(fis)) {
-                return Optional.of((WritableContentCache) ois.readObject());
-            } catch (IOException | ClassNotFoundException ex) {
-                LOGGER.error(String.format("Error reading cache file '%s'", file
-                                           .getAbsolutePath()), ex);
+        for (int generation = 0; generation <= this.previousGenerations; ++generation) {
+            File file = getCacheFile(generation);
+            if (!file.exists() || !file.canRead()) {
+                LOGGER.debug("No cache file found at '{}'", file.getAbsolutePath());
+                continue;
+            }
+            LOGGER.debug("Reading cache from file '{}'", file.getAbsolutePath());
+            try {
+                Path path = file.toPath();
+                Optional<CacheFileChecksum> checksum = verify(path);
+                long length = checksum.isPresent() ? checksum.get().getLength() : Files.size(path);
+                return Optional.of(afterLoad(readCache(path, length), checksum));
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.error(String.format("Error reading cache file '%s'", file.getAbsolutePath()), ex);
             }
-            file.delete();
-        } else {
-            LOGGER.debug("No cache temp file found at '{}'",
-                         file.getAbsolutePath());
         }
         return Optional.empty();
     }
 
-    protected void persistCache(ContentCache cache) {
-        File file = getCacheFile();
-        if (!file.exists() || file.delete()) {
-            if (cache == null) {
-                return;
+    protected synchronized void persistCache(ContentCache cache) {
+        if (cache == null) {
+            return;
+        }
+        Path file = getCacheFile().toPath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(file.getParent(), file.getFileName().toString() + ".", TEMP_FILE_SUFFIX);
+            LOGGER.debug("Serializing cache to {}", temp);
+            CacheFileChecksum checksum = write(cache, temp);
+            rotate();
+            move(temp, file);
+            syncDirectory(file.getParent());
+            afterPersist(checksum);
+        } catch (IOException | RuntimeException t) {
+            LOGGER.error(String.format("Error serializing cache to '%s'", file), t);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ex) {
+                    LOGGER.warn(String.format("Can not delete '%s'", temp), ex);
+                }
             }
+        }
+    }
 
-            try {
-                if (!file.createNewFile()) {
-                    LOGGER.error("Can not create writable file {}", file.getAbsolutePath());
-                    return;
+    /**
+     * Called after a cache file was read successfully.
+     *
+     * @param cache    the cache read from the file
+     * @param checksum the checksum of the file or an empty optional if the
+     *                 file was written without checksum
+     *
+     * @return the cache to use
+     *
+     * @throws IOException if the cache can not be used
+     */
+    protected WritableContentCache afterLoad(WritableContentCache cache, Optional<CacheFileChecksum> checksum)
+            throws IOException {
+        return cache;
+    }
+
+    /**
+     * Called after a cache file was written successfully and replaced the
+     * current generation.
+     *
+     * @param checksum the checksum of the new cache file
+     *
+     * @throws IOException if the subsequent actions fail
+     */
+    protected void afterPersist(CacheFileChecksum checksum) throws IOException {
+    }
+
+    private CacheFileChecksum write(ContentCache cache, Path temp) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            CountingOutputStream counter = new CountingOutputStream(Channels.newOutputStream(channel));
+            OutputStream out = new BufferedOutputStream(new CheckedOutputStream(counter, crc), BUFFER_SIZE);
+            writeCache(cache, new NonClosingOutputStream(out));
+            out.flush();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+            trailer.put(TRAILER_MAGIC).putLong(counter.getCount()).putInt((int) crc.getValue()).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+            return new CacheFileChecksum(counter.getCount(), (int) crc.getValue());
+        }
+    }
+
+    /**
+     * Checks the trailer of the file. Files written before checksums were
+     * introduced have no trailer and are accepted as they are.
+     *
+     * @return the checksum or an empty optional if the file has no trailer
+     *
+     * @throws IOException if the file is truncated or the checksum does not
+     *                     match
+     */
+    private static Optional<CacheFileChecksum> verify(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size < TRAILER_LENGTH) {
+            return Optional.empty();
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(size - TRAILER_LENGTH);
+            while (trailer.hasRemaining() && channel.read(trailer) >= 0) {
+                continue;
+            }
+            trailer.flip();
+            byte[] magic = new byte[TRAILER_MAGIC.length];
+            trailer.get(magic);
+            if (!Arrays.equals(magic, TRAILER_MAGIC)) {
+                LOGGER.debug("Cache file {} has no checksum", file);
+                return Optional.empty();
+            }
+            long length = trailer.getLong();
+            int checksum = trailer.getInt();
+            if (length != size - TRAILER_LENGTH) {
+                throw new IOException("Cache file is truncated");
+            }
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            channel.position(0);
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new IOException("Cache file is truncated");
                 }
-            } catch (IOException ex) {
-                LOGGER.error(String.format("Error serializing cache to '%s'", file.getAbsolutePath()), ex);
+                crc.update(buffer.array(), 0, read);
+                remaining -= read;
             }
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Checksum of cache file does not match");
+            }
+            return Optional.of(new CacheFileChecksum(length, checksum));
+        }
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(file);
-                 ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-                LOGGER.debug("Serializing cache to {}", file.getAbsolutePath());
-                oos.writeObject(cache);
-            } catch (IOException t) {
-                LOGGER.error(String.format("Error serializing cache to '%s'", file.getAbsolutePath()), t);
+    /**
+     * Shifts the existing generations by one, dropping the oldest.
+     */
+    private void rotate() throws IOException {
+        if (this.previousGenerations == 0) {
+            return;
+        }
+        Files.deleteIfExists(getCacheFile(this.previousGenerations).toPath());
+        for (int generation = this.previousGenerations - 1; generation >= 0; --generation) {
+            Path source = getCacheFile(generation).toPath();
+            if (Files.exists(source)) {
+                move(source, getCacheFile(generation + 1).toPath());
             }
         }
     }
 
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            LOGGER.debug("Atomic move not supported", ex);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void syncDirectory(Path directory) {
+        // not supported on every platform, the rename is durable sooner or later anyway
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            LOGGER.trace("Can not sync directory {}", directory, ex);
+        }
+    }
+
+    private void deleteTemporaryFiles() {
+        File file = getCacheFile();
+        Path directory = file.getParentFile().toPath();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        String glob = file.getName() + ".*" + TEMP_FILE_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path temp : files) {
+                LOGGER.debug("Deleting incomplete cache file {}", temp);
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Can not delete incomplete cache files", ex);
+        }
+    }
+
     @Override
     public void remove() {
-        File f = getCacheFile();
-        if (f != null && f.exists()) {
-            f.delete();
+        for (int generation = 0; generation <= this.previousGenerations; ++generation) {
+            File f = getCacheFile(generation);
+            if (f.exists()) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * The length and CRC32 of the content of a cache file. Identifies a
+     * persisted cache, e.g. as base of subsequently logged changes.
+     */
+    protected static final class CacheFileChecksum {
+        private final long length;
+        private final int crc;
+
+        CacheFileChecksum(long length, int crc) {
+            this.length = length;
+            this.crc = crc;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public int getCrc() {
+            return crc;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(length, crc);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheFileChecksum)) {
+                return false;
+            }
+            CacheFileChecksum other = (CacheFileChecksum) obj;
+            return this.length == other.length && this.crc == other.crc;
+        }
+    }
+
+    /**
+     * Keeps {@link #writeCache(ContentCache, OutputStream)} from closing the
+     * file before the trailer is written.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
         }
     }
 }
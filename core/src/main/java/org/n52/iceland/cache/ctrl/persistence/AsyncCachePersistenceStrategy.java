@@ -28,7 +28,7 @@ import org.n52.iceland.cache.ContentCache;
 import org.n52.iceland.config.annotation.Configurable;
 import org.n52.iceland.config.annotation.Setting;
 import org.n52.iceland.exception.ConfigurationError;
-import org.n52.iceland.util.GroupedAndNamedThreadFactory;
+import org.n52.iceland.util.BackgroundExecutors;
 
 /**
  * @author Christian Autermann
@@ -41,7 +41,7 @@ public class AsyncCachePersistenceStrategy
 
     private static final TimeUnit WRITE_DELAY_UNITS = TimeUnit.SECONDS;
     private long writeDelay = 30;
-    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new GroupedAndNamedThreadFactory("cache-persister"));
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(BackgroundExecutors.newThreadFactory("cache-persister"));
     private final AtomicReference<ContentCache> cacheReference = new AtomicReference<>();
     private Updater updater;
 
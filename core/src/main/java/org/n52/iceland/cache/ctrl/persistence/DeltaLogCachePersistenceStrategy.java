@@ -0,0 +1,297 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.exception.ConfigurationError;
+import org.n52.iceland.lifecycle.Destroyable;
+
+/**
+ * Persistence strategy that appends partial updates to a write-ahead log
+ * instead of rewriting the complete cache. Partial updates that are
+ * {@link Serializable} are logged using Java serialization; on
+ * {@link #load()} they are replayed on the last persisted cache. Complete
+ * updates, updates that are not serializable and a log that exceeds the
+ * configured size compact the log into a new cache file.
+ * <p>
+ * The log names the cache file it is based on by the length and checksum of
+ * its content. A log that does not belong to the loaded cache file, e.g.
+ * because the process died between writing a new cache file and resetting
+ * the log, is discarded. Every record carries its own checksum, so a torn
+ * record at the end of the log is cut off.
+ *
+ * @since 1.3.0
+ */
+public class DeltaLogCachePersistenceStrategy extends AbstractPersistingCachePersistenceStrategy
+        implements Destroyable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeltaLogCachePersistenceStrategy.class);
+    public static final String LOG_FILE_SUFFIX = ".log";
+    public static final long DEFAULT_MAX_LOG_SIZE = 16 * 1024 * 1024;
+    private static final byte[] MAGIC = { 'I', 'C', 'C', 'L' };
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = MAGIC.length + 4 + 8 + 4;
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private long maxLogSize = DEFAULT_MAX_LOG_SIZE;
+    private boolean sync = true;
+    private FileChannel log;
+    private int records;
+
+    /**
+     * @param maxLogSize the size in bytes after which the log is compacted
+     */
+    public void setMaxLogSize(long maxLogSize) {
+        if (maxLogSize <= 0) {
+            throw new ConfigurationError("The maximum log size has to be greater than 0.");
+        }
+        this.maxLogSize = maxLogSize;
+    }
+
+    /**
+     * @param sync if every record should be forced to disk before the update
+     *             returns
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    protected File getLogFile() {
+        return new File(getCacheFile().getPath() + LOG_FILE_SUFFIX);
+    }
+
+    @Override
+    public void persistOnPartialUpdate(ContentCache cache) {
+        persistCache(cache);
+    }
+
+    @Override
+    public synchronized void persistOnPartialUpdate(ContentCache cache, ContentCacheUpdate update) {
+        if (this.log == null || !(update instanceof Serializable)) {
+            persistCache(cache);
+            return;
+        }
+        try {
+            append(serialize(update));
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Can not log cache update, persisting the complete cache", ex);
+            persistCache(cache);
+        }
+    }
+
+    @Override
+    public void persistOnCompleteUpdate(ContentCache cache) {
+        persistCache(cache);
+    }
+
+    @Override
+    public void persistOnShutdown(ContentCache cache) {
+        persistCache(cache);
+        destroy();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        closeLog();
+    }
+
+    @Override
+    public synchronized void remove() {
+        closeLog();
+        super.remove();
+        getLogFile().delete();
+    }
+
+    @Override
+    protected synchronized WritableContentCache afterLoad(WritableContentCache cache,
+                                                          Optional<CacheFileChecksum> checksum)
+            throws IOException {
+        closeLog();
+        Path file = getLogFile().toPath();
+        if (!checksum.isPresent() || !Files.exists(file)) {
+            return cache;
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (!readHeader(channel, checksum.get())) {
+                LOGGER.info("Discarding cache log {} of another cache file", file);
+                channel.close();
+                return cache;
+            }
+            replay(channel, cache);
+            this.log = channel;
+            channel = null;
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        return cache;
+    }
+
+    @Override
+    protected synchronized void afterPersist(CacheFileChecksum checksum) throws IOException {
+        closeLog();
+        Path file = getLogFile().toPath();
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString() + ".", ".part");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            header.put(MAGIC).putInt(VERSION).putLong(checksum.getLength()).putInt(checksum.getCrc()).flip();
+            write(channel, header);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        this.log = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.log.position(this.log.size());
+        this.records = 0;
+    }
+
+    private void append(byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_LENGTH + record.length);
+        buffer.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+        write(this.log, buffer);
+        if (this.sync) {
+            this.log.force(false);
+        }
+        ++this.records;
+        if (this.log.size() > this.maxLogSize) {
+            LOGGER.debug("Cache log exceeds {} bytes after {} records", this.maxLogSize, this.records);
+            // compacted with the next partial update
+            closeLog();
+        }
+    }
+
+    private boolean readHeader(FileChannel channel, CacheFileChecksum checksum) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        if (!read(channel, header)) {
+            return false;
+        }
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        return Arrays.equals(magic, MAGIC) && header.getInt() == VERSION &&
+               header.getLong() == checksum.getLength() && header.getInt() == checksum.getCrc();
+    }
+
+    private void replay(FileChannel channel, WritableContentCache cache) throws IOException {
+        int replayed = 0;
+        long position = channel.position();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        while (read(channel, recordHeader)) {
+            int length = recordHeader.getInt();
+            int checksum = recordHeader.getInt();
+            if (length < 0 || length > channel.size() - channel.position()) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            if (!read(channel, record)) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                ContentCacheUpdate update = deserialize(record.array());
+                update.reset();
+                update.setCache(cache);
+                update.execute();
+                if (update.failed()) {
+                    LOGGER.warn("Replaying cache update failed", update.getFailureCause());
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.warn("Replaying cache update failed", ex);
+            }
+            position = channel.position();
+            ++replayed;
+        }
+        if (position < channel.size()) {
+            LOGGER.warn("Truncating incomplete cache log record at {}", position);
+            channel.truncate(position);
+        }
+        channel.position(position);
+        this.records = replayed;
+        LOGGER.debug("Replayed {} cache updates", replayed);
+    }
+
+    private void closeLog() {
+        if (this.log != null) {
+            try {
+                this.log.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Can not close cache log", ex);
+            }
+            this.log = null;
+        }
+    }
+
+    private static byte[] serialize(ContentCacheUpdate update) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(update);
+        }
+        return out.toByteArray();
+    }
+
+    private static ContentCacheUpdate deserialize(byte[] record) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+            return (ContentCacheUpdate) ois.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static boolean read(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl.persistence;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import javax.inject.Inject;
+
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.cache.snapshot.ContentCacheSchema;
+import org.n52.iceland.cache.snapshot.MappedContentCache;
+import org.n52.iceland.cache.snapshot.MappedSnapshot;
+
+/**
+ * Asynchronous persistence strategy that stores the cache as an indexed
+ * {@link MappedSnapshot}. On startup the snapshot is memory-mapped and
+ * handed to {@link ContentCacheSchema#createView(MappedSnapshot)}, so a
+ * {@link MappedContentCache} can serve requests while the first complete
+ * update runs in the background.
+ *
+ * @since 1.3.0
+ */
+public class MappedSnapshotCachePersistenceStrategy extends AsyncCachePersistenceStrategy {
+    public static final String SNAPSHOT_FILE = "cache.mapped";
+
+    private ContentCacheSchema<WritableContentCache> schema;
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public void setSchema(ContentCacheSchema<? extends WritableContentCache> schema) {
+        this.schema = (ContentCacheSchema<WritableContentCache>) schema;
+    }
+
+    @Override
+    protected String getCacheFileName() {
+        return SNAPSHOT_FILE;
+    }
+
+    @Override
+    protected WritableContentCache readCache(Path file, long length) throws IOException {
+        MappedSnapshot snapshot = MappedSnapshot.open(file, length);
+        snapshot.checkSchema(this.schema);
+        return this.schema.createView(snapshot);
+    }
+
+    @Override
+    protected void persistCache(ContentCache cache) {
+        // a view is backed by the current file and has nothing to add to it
+        if (!(cache instanceof MappedContentCache)) {
+            super.persistCache(cache);
+        }
+    }
+
+    @Override
+    protected void writeCache(ContentCache cache, OutputStream out) throws IOException {
+        MappedSnapshot.write(this.schema, (WritableContentCache) cache, out);
+    }
+}
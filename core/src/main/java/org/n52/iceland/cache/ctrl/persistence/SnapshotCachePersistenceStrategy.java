@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.inject.Inject;
+
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.cache.snapshot.ContentCacheSchema;
+import org.n52.iceland.cache.snapshot.SnapshotFormat;
+
+/**
+ * Asynchronous persistence strategy that stores the cache in the compact
+ * {@link SnapshotFormat} instead of using Java serialization. The cache
+ * implementation has to provide a {@link ContentCacheSchema}.
+ *
+ * @since 1.3.0
+ */
+public class SnapshotCachePersistenceStrategy extends AsyncCachePersistenceStrategy {
+    public static final String SNAPSHOT_FILE = "cache.snapshot";
+
+    private ContentCacheSchema<WritableContentCache> schema;
+    private SnapshotFormat format = new SnapshotFormat();
+
+    @Inject
+    @SuppressWarnings("unchecked")
+    public void setSchema(ContentCacheSchema<? extends WritableContentCache> schema) {
+        this.schema = (ContentCacheSchema<WritableContentCache>) schema;
+    }
+
+    /**
+     * @param compress if the snapshot should be DEFLATE compressed
+     */
+    public void setCompress(boolean compress) {
+        this.format = new SnapshotFormat(compress);
+    }
+
+    @Override
+    protected String getCacheFileName() {
+        return SNAPSHOT_FILE;
+    }
+
+    @Override
+    protected WritableContentCache readCache(InputStream in) throws IOException {
+        return this.format.read(this.schema, in);
+    }
+
+    @Override
+    protected void writeCache(ContentCache cache, OutputStream out) throws IOException {
+        this.format.write(this.schema, (WritableContentCache) cache, out);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.n52.iceland.cache.ContentCacheDiff;
+
+/**
+ * Computes {@link ContentCacheDiff}s from the fields of a
+ * {@link ContentCacheSchema}.
+ *
+ * @since 1.3.0
+ */
+final class ContentCacheDiffs {
+    private ContentCacheDiffs() {
+    }
+
+    static <C> ContentCacheDiff compute(List<SnapshotField<C>> fields, C previous, C next)
+            throws IOException {
+        ContentCacheDiff.Builder builder = ContentCacheDiff.builder();
+        for (SnapshotField<C> field : fields) {
+            if (field instanceof KeyedSnapshotField) {
+                KeyedSnapshotField<C> keyed = (KeyedSnapshotField<C>) field;
+                diff(builder, field.getName(), keyed.getEntries(previous), keyed.getEntries(next));
+            } else if (!Arrays.equals(serialize(field, previous), serialize(field, next))) {
+                builder.changed(field.getName());
+            }
+        }
+        return builder.build();
+    }
+
+    private static void diff(ContentCacheDiff.Builder builder, String name,
+                             Map<String, ? extends Collection<String>> previous,
+                             Map<String, ? extends Collection<String>> next) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> modified = new ArrayList<>();
+        if (previous != null) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : previous.entrySet()) {
+                if (next == null || !next.containsKey(entry.getKey())) {
+                    removed.add(entry.getKey());
+                } else if (!equalValues(entry.getValue(), next.get(entry.getKey()))) {
+                    modified.add(entry.getKey());
+                }
+            }
+        }
+        if (next != null) {
+            for (String key : next.keySet()) {
+                if (previous == null || !previous.containsKey(key)) {
+                    added.add(key);
+                }
+            }
+        }
+        builder.add(name, added, removed, modified);
+    }
+
+    private static boolean equalValues(Collection<String> a, Collection<String> b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null) {
+            return false;
+        } else if (a instanceof Set && b instanceof Set) {
+            return a.equals(b);
+        }
+        return new HashSet<>(a).equals(new HashSet<>(b));
+    }
+
+    private static <C> byte[] serialize(SnapshotField<C> field, C cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        field.write(cache, new SnapshotOutput(out, new StringDictionary()));
+        return out.toByteArray();
+    }
+}
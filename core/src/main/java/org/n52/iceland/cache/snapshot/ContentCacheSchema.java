@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.n52.iceland.cache.ContentCacheDiff;
+import org.n52.iceland.cache.WritableContentCache;
+
+/**
+ * Describes the fields of a content cache implementation, so it can be
+ * written to and read from a {@link SnapshotFormat} snapshot. Cache
+ * implementations provide a schema as a bean to use the
+ * {@link org.n52.iceland.cache.ctrl.persistence.SnapshotCachePersistenceStrategy}.
+ *
+ * @param <C> the cache type
+ *
+ * @since 1.3.0
+ */
+public interface ContentCacheSchema<C extends WritableContentCache> {
+
+    /**
+     * @return the name of the schema, stored in the snapshot to detect
+     *         snapshots of other cache implementations
+     */
+    String getName();
+
+    /**
+     * @return a new, empty cache the fields are read into
+     */
+    C createCache();
+
+    /**
+     * @return the fields of the cache
+     */
+    List<SnapshotField<C>> getFields();
+
+    /**
+     * Creates the cache that is served from a persisted {@link MappedSnapshot}
+     * until the first complete update. The default implementation decodes the
+     * complete snapshot; implementations may return a
+     * {@link MappedContentCache} that decodes entries on demand.
+     *
+     * @param snapshot the snapshot
+     *
+     * @return the cache
+     *
+     * @throws IOException if the snapshot can not be read
+     */
+    default WritableContentCache createView(MappedSnapshot snapshot) throws IOException {
+        return snapshot.materialize(this);
+    }
+
+    /**
+     * Computes the differences between two caches field by field. Keyed
+     * fields report the added, removed and modified keys, all other fields
+     * are only reported as changed.
+     *
+     * @param previous the previous cache
+     * @param next     the next cache
+     *
+     * @return the differences
+     *
+     * @throws IOException if a field can not be compared
+     */
+    default ContentCacheDiff diff(C previous, C next) throws IOException {
+        return ContentCacheDiffs.compute(getFields(), previous, next);
+    }
+}
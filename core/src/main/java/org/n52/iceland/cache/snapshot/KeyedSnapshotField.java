@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link SnapshotField} that maps strings to strings. Besides the sequential
+ * representation, {@link MappedSnapshot} stores these fields as hash indexed
+ * tables, so single entries can be looked up without decoding the field.
+ *
+ * @param <C> the cache type
+ *
+ * @since 1.3.0
+ */
+abstract class KeyedSnapshotField<C> implements SnapshotField<C> {
+    private final String name;
+
+    KeyedSnapshotField(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param cache the cache
+     *
+     * @return the entries of the field in the cache
+     */
+    abstract Map<String, ? extends Collection<String>> getEntries(C cache);
+
+    /**
+     * Sets the field of the cache to the supplied entries.
+     *
+     * @param cache   the cache
+     * @param entries the entries
+     */
+    abstract void setEntries(C cache, Map<String, Set<String>> entries);
+
+    @Override
+    public String toString() {
+        return String.format("SnapshotField[name=%s]", name);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import org.joda.time.DateTime;
+
+import org.n52.iceland.cache.WritableContentCache;
+
+/**
+ * Base class for read-only content cache views that answer lookups from a
+ * {@link MappedSnapshot}. Such a view is served after a restart until the
+ * first complete cache update replaces it, so the service is available
+ * without decoding the complete persisted cache first.
+ * <p>
+ * Views are not updated in place: the
+ * {@link org.n52.iceland.cache.ctrl.ContentCacheControllerImpl} runs complete
+ * updates of a view against a new cache and defers partial updates until the
+ * view is replaced.
+ *
+ * @since 1.3.0
+ */
+public abstract class MappedContentCache implements WritableContentCache {
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappedSnapshot snapshot;
+    private DateTime lastUpdateTime;
+
+    protected MappedContentCache(MappedSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    protected MappedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public void setLastUpdateTime(DateTime lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
+    @Override
+    public DateTime getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+}
@@ -0,0 +1,603 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.iceland.cache.WritableContentCache;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Indexed content cache snapshot that is read from a memory-mapped file.
+ * Opening a snapshot only reads the header and the field directory; strings
+ * and entries are decoded when they are accessed. Fields created by
+ * {@link SnapshotFields#strings}, {@link SnapshotFields#stringMap} and
+ * {@link SnapshotFields#stringMultimap} are stored as open addressing hash
+ * tables, so single entries can be looked up without decoding the remaining
+ * field. All other fields are stored in the {@link SnapshotFormat}
+ * representation and can be read using {@link #getInput(String)}.
+ * <p>
+ * The layout uses fixed width big-endian integers:
+ * <pre>
+ * "ICCM" version:u8 flags:u8 reserved:u16
+ * schemaLength:i32 schema:utf8
+ * stringCount:i32 stringOffsets:i32[stringCount + 1] strings:utf8
+ * fieldCount:i32 (name:i32 kind:i32 offset:i32 length:i32)[fieldCount]
+ * fields
+ * </pre>
+ * A keyed field consists of {@code size:i32 tableSize:i32
+ * (hash:i32 entry:i32)[tableSize]} followed by the entries
+ * {@code key:i32 valueCount:i32 values:i32[valueCount]}. String references of
+ * {@code -1} denote {@code null}. As a consequence of the 32 bit offsets
+ * snapshots are limited to 2 GiB.
+ * <p>
+ * Instances are thread safe.
+ *
+ * @since 1.3.0
+ */
+public final class MappedSnapshot {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedSnapshot.class);
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = { 'I', 'C', 'C', 'M' };
+    private static final int KIND_SEQUENTIAL = 0;
+    private static final int KIND_KEYED = 1;
+    private static final int EMPTY = -1;
+    private static final int NULL_REFERENCE = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final String schemaName;
+    private final int stringOffsets;
+    private final int stringData;
+    private final String[] strings;
+    private final Map<String, Field> fields;
+    private final StringDictionary dictionary;
+
+    private MappedSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            for (int i = 0; i < MAGIC.length; ++i) {
+                if (buffer.get(i) != MAGIC[i]) {
+                    throw new IOException("Not a mapped content cache snapshot");
+                }
+            }
+            int version = buffer.get(MAGIC.length);
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            int position = MAGIC.length + 4;
+            int schemaLength = buffer.getInt(position);
+            this.schemaName = decode(position + 4, schemaLength);
+            position += 4 + schemaLength;
+            int stringCount = buffer.getInt(position);
+            this.stringOffsets = position + 4;
+            this.stringData = this.stringOffsets + 4 * (stringCount + 1);
+            this.strings = new String[stringCount];
+            this.dictionary = new MappedStringDictionary();
+            position = this.stringData + buffer.getInt(this.stringOffsets + 4 * stringCount);
+            int fieldCount = buffer.getInt(position);
+            position += 4;
+            this.fields = new HashMap<>(fieldCount * 2);
+            for (int i = 0; i < fieldCount; ++i, position += 16) {
+                Field field = new Field(buffer.getInt(position + 4), buffer.getInt(position + 8),
+                                        buffer.getInt(position + 12));
+                if (field.offset < 0 || field.length < 0 || field.offset + field.length > buffer.limit()) {
+                    throw new IOException("Invalid field offset");
+                }
+                this.fields.put(getString(buffer.getInt(position)), field);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected end of snapshot", e);
+        }
+    }
+
+    /**
+     * @return the name of the {@link ContentCacheSchema} of the snapshot
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(this.fields.keySet());
+    }
+
+    public boolean hasField(String field) {
+        return this.fields.containsKey(field);
+    }
+
+    /**
+     * @param field the name of a keyed field
+     *
+     * @return the number of entries of the field or {@code 0} if the field
+     *         does not exist
+     *
+     * @throws IOException if the field is not keyed
+     */
+    public int size(String field) throws IOException {
+        Field f = getKeyedField(field);
+        return f == null ? 0 : this.buffer.getInt(f.offset);
+    }
+
+    /**
+     * @param field the name of a keyed field
+     * @param key   the key
+     *
+     * @return if the field contains an entry for the key
+     *
+     * @throws IOException if the field is not keyed or the snapshot is corrupt
+     */
+    public boolean containsKey(String field, String key) throws IOException {
+        return findEntry(field, key) != EMPTY;
+    }
+
+    /**
+     * @param field the name of a keyed field
+     * @param key   the key
+     *
+     * @return the values of the entry or an empty set if there is no entry
+     *         for the key
+     *
+     * @throws IOException if the field is not keyed or the snapshot is corrupt
+     */
+    public Set<String> getValues(String field, String key) throws IOException {
+        int entry = findEntry(field, key);
+        if (entry == EMPTY) {
+            return Collections.emptySet();
+        }
+        int count = this.buffer.getInt(entry + 4);
+        ImmutableSet.Builder<String> values = ImmutableSet.builder();
+        for (int i = 0; i < count; ++i) {
+            String value = getString(this.buffer.getInt(entry + 8 + 4 * i));
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values.build();
+    }
+
+    /**
+     * @param field the name of a keyed field
+     * @param key   the key
+     *
+     * @return the first value of the entry or {@code null} if there is no
+     *         entry for the key
+     *
+     * @throws IOException if the field is not keyed or the snapshot is corrupt
+     */
+    public String getValue(String field, String key) throws IOException {
+        int entry = findEntry(field, key);
+        if (entry == EMPTY || this.buffer.getInt(entry + 4) == 0) {
+            return null;
+        }
+        return getString(this.buffer.getInt(entry + 8));
+    }
+
+    /**
+     * @param field the name of a keyed field
+     *
+     * @return the keys of the field
+     *
+     * @throws IOException if the field is not keyed or the snapshot is corrupt
+     */
+    public Set<String> getKeys(String field) throws IOException {
+        Field f = getKeyedField(field);
+        if (f == null) {
+            return Collections.emptySet();
+        }
+        ImmutableSet.Builder<String> keys = ImmutableSet.builder();
+        int tableSize = this.buffer.getInt(f.offset + 4);
+        for (int i = 0; i < tableSize; ++i) {
+            int entry = this.buffer.getInt(f.offset + 8 + 8 * i + 4);
+            if (entry != EMPTY) {
+                String key = getString(this.buffer.getInt(f.offset + entry));
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys.build();
+    }
+
+    /**
+     * @param field the name of a sequential field
+     *
+     * @return the input to read the field from or {@code null} if the field
+     *         does not exist
+     *
+     * @throws IOException if the field is keyed
+     */
+    public SnapshotInput getInput(String field) throws IOException {
+        Field f = this.fields.get(field);
+        if (f == null) {
+            return null;
+        } else if (f.kind != KIND_SEQUENTIAL) {
+            throw new IOException(String.format("Field %s is not sequential", field));
+        }
+        return new SnapshotInput(slice(f.offset, f.length), this.dictionary);
+    }
+
+    /**
+     * Decodes the complete snapshot into a new cache.
+     *
+     * @param <C>    the cache type
+     * @param schema the schema of the cache
+     *
+     * @return the cache
+     *
+     * @throws IOException if the snapshot is of another schema or can not be
+     *                     read
+     */
+    public <C extends WritableContentCache> C materialize(ContentCacheSchema<C> schema) throws IOException {
+        checkSchema(schema);
+        C cache = schema.createCache();
+        for (SnapshotField<C> field : schema.getFields()) {
+            Field f = this.fields.get(field.getName());
+            if (f == null) {
+                LOG.debug("Snapshot does not contain field {}", field.getName());
+            } else if (f.kind == KIND_KEYED && field instanceof KeyedSnapshotField) {
+                ((KeyedSnapshotField<C>) field).setEntries(cache, readEntries(f));
+            } else if (f.kind == KIND_SEQUENTIAL && !(field instanceof KeyedSnapshotField)) {
+                field.read(cache, getInput(field.getName()));
+            } else {
+                LOG.warn("Skipping field {} of incompatible kind", field.getName());
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @param schema the schema
+     *
+     * @throws IOException if the snapshot was not written using the schema
+     */
+    public void checkSchema(ContentCacheSchema<?> schema) throws IOException {
+        if (!schema.getName().equals(this.schemaName)) {
+            throw new IOException(String.format("Snapshot of schema %s can not be read as %s",
+                                                this.schemaName, schema.getName()));
+        }
+    }
+
+    private Map<String, Set<String>> readEntries(Field f) throws IOException {
+        int size = this.buffer.getInt(f.offset);
+        int tableSize = this.buffer.getInt(f.offset + 4);
+        Map<String, Set<String>> entries = new HashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < tableSize; ++i) {
+            int entry = this.buffer.getInt(f.offset + 8 + 8 * i + 4);
+            if (entry != EMPTY) {
+                int position = f.offset + entry;
+                int count = this.buffer.getInt(position + 4);
+                Set<String> values = new HashSet<>((int) (count / 0.75f) + 1);
+                for (int j = 0; j < count; ++j) {
+                    values.add(getString(this.buffer.getInt(position + 8 + 4 * j)));
+                }
+                entries.put(getString(this.buffer.getInt(position)), values);
+            }
+        }
+        return entries;
+    }
+
+    private Field getKeyedField(String field) throws IOException {
+        Field f = this.fields.get(field);
+        if (f != null && f.kind != KIND_KEYED) {
+            throw new IOException(String.format("Field %s is not keyed", field));
+        }
+        return f;
+    }
+
+    /**
+     * @return the absolute position of the entry or {@link #EMPTY}
+     */
+    private int findEntry(String field, String key) throws IOException {
+        Field f = getKeyedField(field);
+        if (f == null || key == null) {
+            return EMPTY;
+        }
+        int tableSize = this.buffer.getInt(f.offset + 4);
+        if (tableSize == 0) {
+            return EMPTY;
+        }
+        int hash = hash(key);
+        int mask = tableSize - 1;
+        try {
+            for (int i = hash & mask, probes = 0; probes < tableSize; i = (i + 1) & mask, ++probes) {
+                int slot = f.offset + 8 + 8 * i;
+                int entry = this.buffer.getInt(slot + 4);
+                if (entry == EMPTY) {
+                    return EMPTY;
+                } else if (this.buffer.getInt(slot) == hash &&
+                           key.equals(getString(this.buffer.getInt(f.offset + entry)))) {
+                    return f.offset + entry;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Unexpected end of snapshot", e);
+        }
+        return EMPTY;
+    }
+
+    private String getString(int ref) throws IOException {
+        if (ref == NULL_REFERENCE) {
+            return null;
+        } else if (ref < 0 || ref >= this.strings.length) {
+            throw new IOException("Invalid string reference: " + ref);
+        }
+        // racy but idempotent: strings are immutable and safely published
+        String string = this.strings[ref];
+        if (string == null) {
+            int start = this.buffer.getInt(this.stringOffsets + 4 * ref);
+            int end = this.buffer.getInt(this.stringOffsets + 4 * (ref + 1));
+            string = decode(this.stringData + start, end - start);
+            this.strings[ref] = string;
+        }
+        return string;
+    }
+
+    private String decode(int offset, int length) throws IOException {
+        ByteBuffer bytes = slice(offset, length);
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset(), length, StandardCharsets.UTF_8);
+        }
+        byte[] copy = new byte[length];
+        bytes.get(copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer slice(int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > this.buffer.limit()) {
+            throw new IOException("Unexpected end of snapshot");
+        }
+        ByteBuffer slice = this.buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        return slice.slice();
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Maps the snapshot file into memory.
+     *
+     * @param file the file
+     *
+     * @return the snapshot
+     *
+     * @throws IOException if the file can not be mapped or is not a snapshot
+     */
+    public static MappedSnapshot open(Path file) throws IOException {
+        return open(file, Files.size(file));
+    }
+
+    /**
+     * Maps the first {@code length} bytes of the snapshot file into memory.
+     *
+     * @param file   the file
+     * @param length the length of the snapshot
+     *
+     * @return the snapshot
+     *
+     * @throws IOException if the file can not be mapped or is not a snapshot
+     */
+    public static MappedSnapshot open(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot exceeds 2 GiB: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, length);
+            return new MappedSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Wraps a snapshot that was already read into memory.
+     *
+     * @param buffer the buffer
+     *
+     * @return the snapshot
+     *
+     * @throws IOException if the buffer does not contain a snapshot
+     */
+    public static MappedSnapshot wrap(ByteBuffer buffer) throws IOException {
+        return new MappedSnapshot(buffer.slice());
+    }
+
+    /**
+     * Writes the cache as an indexed snapshot. The stream is not closed.
+     *
+     * @param <C>    the cache type
+     * @param schema the schema of the cache
+     * @param cache  the cache
+     * @param out    the stream
+     *
+     * @throws IOException if writing fails
+     */
+    public static <C extends WritableContentCache> void write(ContentCacheSchema<C> schema, C cache,
+                                                              OutputStream out)
+            throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        List<SnapshotField<C>> schemaFields = schema.getFields();
+        int[] names = new int[schemaFields.size()];
+        int[] kinds = new int[schemaFields.size()];
+        byte[][] values = new byte[schemaFields.size()][];
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (int i = 0; i < schemaFields.size(); ++i) {
+            SnapshotField<C> field = schemaFields.get(i);
+            names[i] = dictionary.add(field.getName());
+            buffer.reset();
+            if (field instanceof KeyedSnapshotField) {
+                kinds[i] = KIND_KEYED;
+                writeEntries(((KeyedSnapshotField<C>) field).getEntries(cache), dictionary,
+                             new DataOutputStream(buffer));
+            } else {
+                kinds[i] = KIND_SEQUENTIAL;
+                field.write(cache, new SnapshotOutput(buffer, dictionary));
+            }
+            values[i] = buffer.toByteArray();
+        }
+
+        byte[] schemaName = schema.getName().getBytes(StandardCharsets.UTF_8);
+        byte[][] strings = new byte[dictionary.size()][];
+        long stringLength = 0;
+        for (int i = 0; i < strings.length; ++i) {
+            strings[i] = dictionary.getStrings().get(i).getBytes(StandardCharsets.UTF_8);
+            stringLength += strings[i].length;
+        }
+        long position = MAGIC.length + 4 + 4 + schemaName.length + 4 + 4L * (strings.length + 1) +
+                        stringLength + 4 + 16L * values.length;
+        for (byte[] value : values) {
+            position += value.length;
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot exceeds 2 GiB");
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(0);
+        data.writeShort(0);
+        data.writeInt(schemaName.length);
+        data.write(schemaName);
+        data.writeInt(strings.length);
+        int offset = 0;
+        for (byte[] string : strings) {
+            data.writeInt(offset);
+            offset += string.length;
+        }
+        data.writeInt(offset);
+        for (byte[] string : strings) {
+            data.write(string);
+        }
+        data.writeInt(values.length);
+        offset = data.size() + 16 * values.length;
+        for (int i = 0; i < values.length; ++i) {
+            data.writeInt(names[i]);
+            data.writeInt(kinds[i]);
+            data.writeInt(offset);
+            data.writeInt(values[i].length);
+            offset += values[i].length;
+        }
+        for (byte[] value : values) {
+            data.write(value);
+        }
+        data.flush();
+    }
+
+    private static void writeEntries(Map<String, ? extends Collection<String>> entries,
+                                     StringDictionary dictionary, DataOutputStream out)
+            throws IOException {
+        int size = entries == null ? 0 : entries.size();
+        int tableSize = size == 0 ? 0 : Integer.highestOneBit(Math.max(size * 2 - 1, 1)) << 1;
+        int[] hashes = new int[tableSize];
+        int[] offsets = new int[tableSize];
+        Arrays.fill(offsets, EMPTY);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(buffer);
+        int base = 8 + 8 * tableSize;
+        int written = 0;
+        if (entries != null) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : entries.entrySet()) {
+                if (entry.getKey() == null) {
+                    continue;
+                }
+                int hash = hash(entry.getKey());
+                int slot = hash & (tableSize - 1);
+                while (offsets[slot] != EMPTY) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                hashes[slot] = hash;
+                offsets[slot] = base + entryOut.size();
+                Collection<String> values = entry.getValue() == null
+                        ? Collections.emptySet() : entry.getValue();
+                entryOut.writeInt(dictionary.add(entry.getKey()));
+                entryOut.writeInt(values.size());
+                for (String value : values) {
+                    entryOut.writeInt(value == null ? NULL_REFERENCE : dictionary.add(value));
+                }
+                ++written;
+            }
+        }
+        out.writeInt(written);
+        out.writeInt(tableSize);
+        for (int i = 0; i < tableSize; ++i) {
+            out.writeInt(hashes[i]);
+            out.writeInt(offsets[i]);
+        }
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    private static final class Field {
+        private final int kind;
+        private final int offset;
+        private final int length;
+
+        Field(int kind, int offset, int length) {
+            this.kind = kind;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Resolves the string references of sequential fields from the mapped
+     * string table.
+     */
+    private class MappedStringDictionary extends StringDictionary {
+        MappedStringDictionary() {
+            super(Collections.emptyList());
+        }
+
+        @Override
+        String get(int index) throws IOException {
+            return getString(index);
+        }
+
+        @Override
+        int size() {
+            return strings.length;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+
+/**
+ * A named field of a content cache implementation. Fields are stored by name,
+ * so fields can be added to or removed from a cache implementation without
+ * invalidating existing snapshots: unknown fields are skipped while reading
+ * and fields missing in the snapshot keep the value of the new cache.
+ *
+ * @param <C> the cache type
+ *
+ * @since 1.3.0
+ * @see SnapshotFields
+ */
+public interface SnapshotField<C> {
+
+    /**
+     * @return the name of the field, unique within a
+     *         {@link ContentCacheSchema}
+     */
+    String getName();
+
+    void write(C cache, SnapshotOutput out) throws IOException;
+
+    void read(C cache, SnapshotInput in) throws IOException;
+}
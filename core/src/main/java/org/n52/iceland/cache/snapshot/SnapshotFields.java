@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.joda.time.DateTime;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+
+/**
+ * Factory methods for {@link SnapshotField}s of common types.
+ *
+ * @since 1.3.0
+ */
+public final class SnapshotFields {
+    private SnapshotFields() {
+    }
+
+    public static <C> SnapshotField<C> of(String name, FieldWriter<C> writer, FieldReader<C> reader) {
+        return new SnapshotField<C>() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void write(C cache, SnapshotOutput out) throws IOException {
+                writer.write(cache, out);
+            }
+
+            @Override
+            public void read(C cache, SnapshotInput in) throws IOException {
+                reader.read(cache, in);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("SnapshotField[name=%s]", name);
+            }
+        };
+    }
+
+    public static <C> SnapshotField<C> string(String name, Function<C, String> getter,
+                                              BiConsumer<C, String> setter) {
+        return of(name, (c, out) -> out.writeString(getter.apply(c)),
+                  (c, in) -> setter.accept(c, in.readString()));
+    }
+
+    public static <C> SnapshotField<C> strings(String name, Function<C, ? extends Collection<String>> getter,
+                                               BiConsumer<C, Set<String>> setter) {
+        return new KeyedSnapshotField<C>(name) {
+            @Override
+            public void write(C cache, SnapshotOutput out) throws IOException {
+                out.writeStrings(getter.apply(cache));
+            }
+
+            @Override
+            public void read(C cache, SnapshotInput in) throws IOException {
+                setter.accept(cache, in.readStrings());
+            }
+
+            @Override
+            Map<String, ? extends Collection<String>> getEntries(C cache) {
+                Collection<String> values = getter.apply(cache);
+                Set<String> keys = values instanceof Set ? (Set<String>) values : new HashSet<>(values);
+                return Maps.asMap(keys, key -> Collections.<String>emptySet());
+            }
+
+            @Override
+            void setEntries(C cache, Map<String, Set<String>> entries) {
+                setter.accept(cache, new HashSet<>(entries.keySet()));
+            }
+        };
+    }
+
+    public static <C> SnapshotField<C> stringMap(String name, Function<C, Map<String, String>> getter,
+                                                 BiConsumer<C, Map<String, String>> setter) {
+        return new KeyedSnapshotField<C>(name) {
+            @Override
+            public void write(C cache, SnapshotOutput out) throws IOException {
+                out.writeStringMap(getter.apply(cache));
+            }
+
+            @Override
+            public void read(C cache, SnapshotInput in) throws IOException {
+                setter.accept(cache, in.readStringMap());
+            }
+
+            @Override
+            Map<String, ? extends Collection<String>> getEntries(C cache) {
+                return Maps.transformValues(getter.apply(cache), Collections::singleton);
+            }
+
+            @Override
+            void setEntries(C cache, Map<String, Set<String>> entries) {
+                Map<String, String> values = new HashMap<>((int) (entries.size() / 0.75f) + 1);
+                entries.forEach((key, value) -> values.put(key, Iterables.getFirst(value, null)));
+                setter.accept(cache, values);
+            }
+        };
+    }
+
+    public static <C> SnapshotField<C> stringMultimap(
+            String name, Function<C, ? extends Map<String, ? extends Collection<String>>> getter,
+            BiConsumer<C, Map<String, Set<String>>> setter) {
+        return new KeyedSnapshotField<C>(name) {
+            @Override
+            public void write(C cache, SnapshotOutput out) throws IOException {
+                out.writeStringMultimap(getter.apply(cache));
+            }
+
+            @Override
+            public void read(C cache, SnapshotInput in) throws IOException {
+                setter.accept(cache, in.readStringMultimap());
+            }
+
+            @Override
+            Map<String, ? extends Collection<String>> getEntries(C cache) {
+                return getter.apply(cache);
+            }
+
+            @Override
+            void setEntries(C cache, Map<String, Set<String>> entries) {
+                setter.accept(cache, entries);
+            }
+        };
+    }
+
+    public static <C> SnapshotField<C> dateTime(String name, Function<C, DateTime> getter,
+                                                BiConsumer<C, DateTime> setter) {
+        return of(name, (c, out) -> out.writeDateTime(getter.apply(c)),
+                  (c, in) -> setter.accept(c, in.readDateTime()));
+    }
+
+    @FunctionalInterface
+    public interface FieldWriter<C> {
+        void write(C cache, SnapshotOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface FieldReader<C> {
+        void read(C cache, SnapshotInput in) throws IOException;
+    }
+}
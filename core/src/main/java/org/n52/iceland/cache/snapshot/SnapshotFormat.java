@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.iceland.cache.WritableContentCache;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Compact binary snapshot of a content cache. A snapshot consists of
+ * <ol>
+ * <li>the magic bytes {@code ICCS}, the format version and flags,</li>
+ * <li>the name of the {@link ContentCacheSchema},</li>
+ * <li>a dictionary of all distinct strings,</li>
+ * <li>the fields of the cache, each prefixed with its name and length.</li>
+ * </ol>
+ * Everything after the flags is optionally DEFLATE compressed. Integers are
+ * variable length quantities and strings are dictionary references, so the
+ * large, highly redundant identifier sets of a cache are stored compactly.
+ *
+ * @since 1.3.0
+ */
+public class SnapshotFormat {
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotFormat.class);
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = { 'I', 'C', 'C', 'S' };
+    private static final int FLAG_DEFLATE = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean compress;
+
+    public SnapshotFormat() {
+        this(false);
+    }
+
+    /**
+     * @param compress if the snapshot should be DEFLATE compressed
+     */
+    public SnapshotFormat(boolean compress) {
+        this.compress = compress;
+    }
+
+    public boolean isCompress() {
+        return compress;
+    }
+
+    /**
+     * Writes the cache to the stream. The stream is not closed.
+     *
+     * @param <C>    the cache type
+     * @param schema the schema of the cache
+     * @param cache  the cache
+     * @param out    the stream
+     *
+     * @throws IOException if writing fails
+     */
+    public <C extends WritableContentCache> void write(ContentCacheSchema<C> schema, C cache, OutputStream out)
+            throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        List<SnapshotField<C>> fields = schema.getFields();
+        int[] names = new int[fields.size()];
+        List<byte[]> values = new ArrayList<>(fields.size());
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        SnapshotOutput fieldOutput = new SnapshotOutput(buffer, dictionary);
+        for (int i = 0; i < fields.size(); ++i) {
+            SnapshotField<C> field = fields.get(i);
+            names[i] = dictionary.add(field.getName());
+            buffer.reset();
+            field.write(cache, fieldOutput);
+            values.add(buffer.toByteArray());
+        }
+
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(this.compress ? FLAG_DEFLATE : 0);
+        Deflater deflater = this.compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            DeflaterOutputStream deflated = this.compress ? new DeflaterOutputStream(out, deflater, BUFFER_SIZE) : null;
+            OutputStream body = new BufferedOutputStream(this.compress ? deflated : out, BUFFER_SIZE);
+            SnapshotOutput output = new SnapshotOutput(body, dictionary);
+            output.writeUtf8(schema.getName());
+            output.writeVarInt(dictionary.size());
+            for (String string : dictionary.getStrings()) {
+                output.writeUtf8(string);
+            }
+            output.writeVarInt(fields.size());
+            for (int i = 0; i < fields.size(); ++i) {
+                output.writeVarInt(names[i]);
+                output.writeBytes(values.get(i));
+            }
+            body.flush();
+            if (deflated != null) {
+                deflated.finish();
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Reads a cache from the stream.
+     *
+     * @param <C>    the cache type
+     * @param schema the schema of the cache
+     * @param in     the stream
+     *
+     * @return the cache
+     *
+     * @throws IOException if the snapshot can not be read
+     */
+    public <C extends WritableContentCache> C read(ContentCacheSchema<C> schema, InputStream in)
+            throws IOException {
+        return read(schema, ByteBuffer.wrap(ByteStreams.toByteArray(in)));
+    }
+
+    /**
+     * Reads a cache from the buffer.
+     *
+     * @param <C>    the cache type
+     * @param schema the schema of the cache
+     * @param buffer the buffer
+     *
+     * @return the cache
+     *
+     * @throws IOException if the snapshot can not be read
+     */
+    public <C extends WritableContentCache> C read(ContentCacheSchema<C> schema, ByteBuffer buffer)
+            throws IOException {
+        ByteBuffer body = readHeader(buffer);
+        SnapshotInput header = new SnapshotInput(body, new StringDictionary(new ArrayList<>(0)));
+        String name = header.readUtf8();
+        if (!schema.getName().equals(name)) {
+            throw new IOException(String.format("Snapshot of schema %s can not be read as %s",
+                                                name, schema.getName()));
+        }
+        int size = header.readVarInt();
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            strings.add(header.readUtf8());
+        }
+        StringDictionary dictionary = new StringDictionary(strings);
+
+        Map<String, SnapshotField<C>> fields = new HashMap<>();
+        schema.getFields().forEach(field -> fields.put(field.getName(), field));
+        C cache = schema.createCache();
+        int fieldCount = header.readVarInt();
+        for (int i = 0; i < fieldCount; ++i) {
+            String fieldName = dictionary.get(header.readVarInt());
+            ByteBuffer value = header.readSlice(header.readVarInt());
+            SnapshotField<C> field = fields.get(fieldName);
+            if (field == null) {
+                LOG.debug("Skipping unknown field {} of snapshot", fieldName);
+            } else {
+                field.read(cache, new SnapshotInput(value, dictionary));
+            }
+        }
+        return cache;
+    }
+
+    private static ByteBuffer readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < MAGIC.length + 2) {
+            throw new IOException("Not a content cache snapshot");
+        }
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) {
+                throw new IOException("Not a content cache snapshot");
+            }
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        int flags = buffer.get();
+        if ((flags & FLAG_DEFLATE) == 0) {
+            return buffer.slice();
+        }
+        byte[] compressed = new byte[buffer.remaining()];
+        buffer.get(compressed);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return ByteBuffer.wrap(ByteStreams.toByteArray(in));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Reads the values written by {@link SnapshotOutput}.
+ *
+ * @since 1.3.0
+ */
+public class SnapshotInput {
+    private final ByteBuffer buffer;
+    private final StringDictionary dictionary;
+
+    SnapshotInput(ByteBuffer buffer, StringDictionary dictionary) {
+        this.buffer = buffer;
+        this.dictionary = dictionary;
+    }
+
+    public int readVarInt() throws IOException {
+        long value = readVarLong();
+        if (value > 0xffffffffL) {
+            throw new IOException("Invalid varint: " + value);
+        }
+        return (int) value;
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public long readLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return get() != 0;
+    }
+
+    public double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; ++i) {
+            bits |= (long) (get() & 0xff) << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    public byte[] readBytes() throws IOException {
+        byte[] value = new byte[readVarInt()];
+        try {
+            this.buffer.get(value);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Unexpected end of snapshot", e);
+        }
+        return value;
+    }
+
+    public String readString() throws IOException {
+        int ref = readVarInt();
+        return ref == 0 ? null : this.dictionary.get(ref - 1);
+    }
+
+    public Set<String> readStrings() throws IOException {
+        int size = readVarInt();
+        if (size == 0) {
+            return new HashSet<>();
+        }
+        Set<String> values = new HashSet<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; ++i) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    public List<String> readStringList() throws IOException {
+        int size = readVarInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            values.add(readString());
+        }
+        return values;
+    }
+
+    public Map<String, String> readStringMap() throws IOException {
+        int size = readVarInt();
+        if (size == 0) {
+            return new HashMap<>();
+        }
+        Map<String, String> values = new HashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; ++i) {
+            values.put(readString(), readString());
+        }
+        return values;
+    }
+
+    public Map<String, Set<String>> readStringMultimap() throws IOException {
+        int size = readVarInt();
+        if (size == 0) {
+            return new HashMap<>();
+        }
+        Map<String, Set<String>> values = new HashMap<>((int) (size / 0.75f) + 1);
+        for (int i = 0; i < size; ++i) {
+            values.put(readString(), readStrings());
+        }
+        return values;
+    }
+
+    public DateTime readDateTime() throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        long millis = readLong();
+        String zone = readString();
+        return new DateTime(millis, zone == null ? DateTimeZone.UTC : DateTimeZone.forID(zone));
+    }
+
+    /**
+     * @return if there are unread bytes left in the field
+     */
+    public boolean hasRemaining() {
+        return this.buffer.hasRemaining();
+    }
+
+    String readUtf8() throws IOException {
+        ByteBuffer bytes = readSlice(readVarInt());
+        if (bytes.hasArray()) {
+            return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(),
+                              StandardCharsets.UTF_8);
+        }
+        byte[] copy = new byte[bytes.remaining()];
+        bytes.get(copy);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+
+    ByteBuffer readSlice(int length) throws IOException {
+        if (length > this.buffer.remaining()) {
+            throw new IOException("Unexpected end of snapshot");
+        }
+        ByteBuffer slice = this.buffer.slice();
+        slice.limit(length);
+        this.buffer.position(this.buffer.position() + length);
+        return slice;
+    }
+
+    private byte get() throws IOException {
+        if (!this.buffer.hasRemaining()) {
+            throw new IOException("Unexpected end of snapshot");
+        }
+        return this.buffer.get();
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Writes the values of a {@link SnapshotField}. Integers are written as
+ * variable length quantities and strings as references into the string
+ * dictionary of the snapshot, so repeated identifiers are stored only once.
+ *
+ * @since 1.3.0
+ */
+public class SnapshotOutput {
+    private final OutputStream out;
+    private final StringDictionary dictionary;
+
+    SnapshotOutput(OutputStream out, StringDictionary dictionary) {
+        this.out = out;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Writes a non-negative integer.
+     *
+     * @param value the value
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xffffffffL);
+    }
+
+    /**
+     * Writes a non-negative long.
+     *
+     * @param value the value
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeVarLong(long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7fL) != 0) {
+            this.out.write((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        this.out.write((int) v);
+    }
+
+    /**
+     * Writes a long that may be negative using zig-zag encoding.
+     *
+     * @param value the value
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        this.out.write(value ? 1 : 0);
+    }
+
+    public void writeDouble(double value) throws IOException {
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < 8; ++i) {
+            this.out.write((int) (bits >>> (8 * i)));
+        }
+    }
+
+    public void writeBytes(byte[] value) throws IOException {
+        writeVarInt(value.length);
+        this.out.write(value);
+    }
+
+    void writeUtf8(String value) throws IOException {
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a reference to the string in the dictionary.
+     *
+     * @param value the string, may be {@code null}
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeString(String value) throws IOException {
+        writeVarInt(value == null ? 0 : this.dictionary.add(value) + 1);
+    }
+
+    /**
+     * Writes a collection of strings. A {@code null} collection is read as an
+     * empty one.
+     *
+     * @param values the strings
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeStrings(Collection<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(values.size());
+        for (String value : values) {
+            writeString(value);
+        }
+    }
+
+    public void writeStringMap(Map<String, String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(entry.getKey());
+            writeString(entry.getValue());
+        }
+    }
+
+    public void writeStringMultimap(Map<String, ? extends Collection<String>> values) throws IOException {
+        if (values == null) {
+            writeVarInt(0);
+            return;
+        }
+        writeVarInt(values.size());
+        for (Map.Entry<String, ? extends Collection<String>> entry : values.entrySet()) {
+            writeString(entry.getKey());
+            writeStrings(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the instant and the time zone of a {@code DateTime}.
+     *
+     * @param value the time, may be {@code null}
+     *
+     * @throws IOException if writing fails
+     */
+    public void writeDateTime(DateTime value) throws IOException {
+        writeBoolean(value != null);
+        if (value != null) {
+            writeLong(value.getMillis());
+            DateTimeZone zone = value.getZone();
+            writeString(zone == null ? null : zone.getID());
+        }
+    }
+}
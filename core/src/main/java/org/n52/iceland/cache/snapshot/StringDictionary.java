@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The strings of a snapshot. Every distinct string is stored once and
+ * referenced by its index.
+ *
+ * @since 1.3.0
+ */
+class StringDictionary {
+    private final List<String> strings;
+    private final Map<String, Integer> indices;
+
+    StringDictionary() {
+        this.strings = new ArrayList<>();
+        this.indices = new HashMap<>();
+    }
+
+    StringDictionary(List<String> strings) {
+        this.strings = strings;
+        this.indices = null;
+    }
+
+    int add(String string) {
+        Integer index = this.indices.get(string);
+        if (index == null) {
+            index = this.strings.size();
+            this.strings.add(string);
+            this.indices.put(string, index);
+        }
+        return index;
+    }
+
+    String get(int index) throws IOException {
+        if (index < 0 || index >= this.strings.size()) {
+            throw new IOException("Invalid string reference: " + index);
+        }
+        return this.strings.get(index);
+    }
+
+    int size() {
+        return this.strings.size();
+    }
+
+    List<String> getStrings() {
+        return this.strings;
+    }
+}
@@ -18,8 +18,17 @@ package org.n52.iceland.coding;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,13 +42,13 @@ import org.n52.iceland.util.Producers;
 import org.n52.iceland.util.ProxySimilarityComparator;
 import org.n52.iceland.util.Similar;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Sets;
 
 /**
  * TODO JavaDoc
@@ -55,22 +64,55 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
     private static final Logger LOG = LoggerFactory
             .getLogger(AbstractCodingRepository.class);
 
-    private final Set<Producer<C>> components = Sets.newHashSet();
-    private final SetMultimap<K, Producer<C>> componentsByKey = HashMultimap.create();
+    /**
+     * The number of keys for which lookup results are cached. Keys may be
+     * derived from client requests, so the cache has to be bounded.
+     */
+    @VisibleForTesting
+    static final int MAX_RESOLVED_KEYS = 10000;
+
+    private volatile Registry<K, C> registry = new Registry<>(ImmutableSetMultimap.of());
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder resolutionCacheHits = new LongAdder();
+    private final LongAdder resolutionCacheMisses = new LongAdder();
 
     public Set<Producer<C>> getComponentProviders() {
-        return Collections.unmodifiableSet(this.components);
+        return this.registry.components;
     }
 
     public SetMultimap<K, Producer<C>> getComponentProvidersByKey() {
-        return Multimaps.unmodifiableSetMultimap(componentsByKey);
+        return this.registry.componentsByKey;
     }
 
     protected void setProducers(SetMultimap<K, Producer<C>> implementations) {
-        this.componentsByKey.clear();
-        this.componentsByKey.putAll(implementations);
-        this.components.clear();
-        this.components.addAll(implementations.values());
+        this.registry = new Registry<>(implementations);
+        this.generation.incrementAndGet();
+    }
+
+    /**
+     * Gets the generation of this repository. The generation changes every
+     * time the set of components changes, so it can be used to invalidate
+     * results derived from this repository.
+     *
+     * @return the generation
+     */
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * @return the number of lookups that were answered from the resolution
+     *         cache, including cached misses
+     */
+    public long getResolutionCacheHits() {
+        return this.resolutionCacheHits.sum();
+    }
+
+    /**
+     * @return the number of lookups that required a scan of all components
+     */
+    public long getResolutionCacheMisses() {
+        return this.resolutionCacheMisses.sum();
     }
 
     protected C choose(Set<C> matches, K key) {
@@ -94,44 +136,107 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
     }
 
     protected Set<C> findComponentForSingleKey(K key) {
-        if (!this.componentsByKey.containsKey(key)) {
-            Set<C> instances = Sets.newHashSet();
-            for (Producer<C> producer : this.components) {
+        return Producers.produce(findProducersForSingleKey(key));
+    }
+
+    protected Set<C> findComponentsForCompositeKey(CompositeKey ck) {
+        return Producers.produce(findProducersForCompositeKey(ck));
+    }
+
+    private Set<Producer<C>> findProducersForSingleKey(K key) {
+        return resolve(key, registry -> {
+            Set<Producer<C>> producers = registry.componentsByKey.get(key);
+            if (!producers.isEmpty()) {
+                return producers;
+            }
+            ImmutableSet.Builder<Producer<C>> matches = ImmutableSet.builder();
+            for (Producer<C> producer : registry.components) {
                 C component = producer.get();
                 for (K ckey : component.getKeys()) {
                     if (ckey.getSimilarity(key) >= 0) {
-                        this.componentsByKey.put(key, producer);
-                        instances.add(component);
+                        matches.add(producer);
+                        break;
                     }
                 }
             }
-            return instances;
-        } else {
-            return Producers.produce(componentsByKey.get(key));
-        }
+            return matches.build();
+        });
     }
 
-    protected Set<C> findComponentsForCompositeKey(CompositeKey ck) {
-        K key = ck.asKey();
-        if (!this.componentsByKey.containsKey(key)) {
-            Set<C> instances = Sets.newHashSet();
-            for (Producer<C> producer : this.components) {
-                C component = producer.get();
-                if (ck.matches(component.getKeys())) {
-                    this.componentsByKey.put(key, producer);
-                    instances.add(component);
+    private Set<Producer<C>> findProducersForCompositeKey(CompositeKey ck) {
+        return resolve(ck.asKey(), registry -> {
+            ImmutableSet.Builder<Producer<C>> matches = ImmutableSet.builder();
+            for (Producer<C> producer : registry.components) {
+                if (ck.matches(producer.get().getKeys())) {
+                    matches.add(producer);
                 }
             }
+            Set<Producer<C>> producers = matches.build();
             LOG.debug("Found {} components for composite key: {}",
-                      instances.size(), Joiner.on(", ").join(instances));
-            return instances;
-        } else {
-            return Producers.produce(componentsByKey.get(key));
+                      producers.size(), Joiner.on(", ").join(producers));
+            return producers;
+        });
+    }
+
+    /**
+     * Gets the component chosen for the supplied key from the resolved-key
+     * table of the current registry. Ambiguous matches are only ranked on the
+     * first lookup of a key, subsequent lookups are a single hash lookup.
+     */
+    private C getChosenComponent(K key, Supplier<Set<Producer<C>>> resolver) {
+        Registry<K, C> current = this.registry;
+        Optional<Producer<C>> chosen = current.chosen.get(key);
+        if (chosen != null) {
+            this.resolutionCacheHits.increment();
+            return chosen.map(Producer::get).orElse(null);
+        }
+        Map<C, Producer<C>> candidates = new IdentityHashMap<>();
+        for (Producer<C> producer : resolver.get()) {
+            candidates.putIfAbsent(producer.get(), producer);
+        }
+        C component = choose(candidates.keySet(), key);
+        if (current.chosen.size() < MAX_RESOLVED_KEYS) {
+            current.chosen.putIfAbsent(key, Optional.ofNullable(candidates.get(component)));
         }
+        return component;
+    }
+
+    /**
+     * Resolves the producers for the supplied key using the resolution cache
+     * of the current registry. Misses are cached as empty sets. The
+     * resolution is computed outside of the cache, as producing a component
+     * may trigger lookups in this repository.
+     */
+    private Set<Producer<C>> resolve(K key, Function<Registry<K, C>, Set<Producer<C>>> resolver) {
+        Registry<K, C> current = this.registry;
+        Set<Producer<C>> producers = current.resolved.get(key);
+        if (producers != null) {
+            this.resolutionCacheHits.increment();
+            return producers;
+        }
+        this.resolutionCacheMisses.increment();
+        producers = resolver.apply(current);
+        if (current.resolved.size() < MAX_RESOLVED_KEYS) {
+            Set<Producer<C>> previous = current.resolved.putIfAbsent(key, producers);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return producers;
+    }
+
+    /**
+     * @return the number of keys with cached lookup results in the current
+     *         registry
+     */
+    @VisibleForTesting
+    int getResolvedKeyCount() {
+        Registry<K, C> current = this.registry;
+        return Math.max(current.resolved.size(), current.chosen.size());
     }
 
     protected Set<C> getComponents() {
-        return Producers.produce(this.components);
+        return Producers.produce(this.registry.components);
     }
 
     @SafeVarargs
@@ -140,11 +245,11 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
     }
 
     protected C getComponentForSingleKey(K key) {
-        return choose(findComponentForSingleKey(key), key);
+        return getChosenComponent(key, () -> findProducersForSingleKey(key));
     }
 
     protected C getComponentForCompositeKey(CompositeKey key) {
-        return choose(findComponentsForCompositeKey(key), key.asKey());
+        return getChosenComponent(key.asKey(), () -> findProducersForCompositeKey(key));
     }
 
     @SafeVarargs
@@ -175,6 +280,23 @@ public abstract class AbstractCodingRepository<K extends Similar<K>, C extends C
 
     }
 
+    /**
+     * Immutable set of registered components together with the lookup results
+     * for these. A new registry is created on every change of the components,
+     * so a lookup never mixes components of different generations.
+     */
+    private static class Registry<K, C> {
+        private final ImmutableSet<Producer<C>> components;
+        private final ImmutableSetMultimap<K, Producer<C>> componentsByKey;
+        private final ConcurrentMap<K, Set<Producer<C>>> resolved = new ConcurrentHashMap<>();
+        private final ConcurrentMap<K, Optional<Producer<C>>> chosen = new ConcurrentHashMap<>();
+
+        Registry(SetMultimap<K, Producer<C>> implementations) {
+            this.componentsByKey = ImmutableSetMultimap.copyOf(implementations);
+            this.components = ImmutableSet.copyOf(implementations.values());
+        }
+    }
+
     protected abstract class CompositeKey extends CompositeSimilar<K>{
 
         protected CompositeKey(Iterable<K> keys) {
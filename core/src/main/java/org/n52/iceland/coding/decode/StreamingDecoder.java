@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding.decode;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+import org.n52.iceland.exception.ows.concrete.UnsupportedDecoderInputException;
+
+import com.google.common.io.ByteSource;
+
+/**
+ * {@link Decoder} that is able to decode a request directly from the bytes of
+ * the request body. Bindings prefer this contract over
+ * {@link Decoder#decode(Object)}, so the request body is neither materialized
+ * as a {@code String} nor parsed more than once. Decoders for the same keys
+ * that only accept a {@code String} are used through
+ * {@link #adapt(Decoder)}.
+ *
+ * @param <T> the result of the decoding process, the "Target"
+ *
+ * @since 1.3.0
+ */
+public interface StreamingDecoder<T> extends Decoder<T, String> {
+
+    /**
+     * Decode the supplied source. The source may be opened more than once.
+     *
+     * @param source  the source
+     * @param charset the character set of the source as announced by the
+     *                client
+     *
+     * @return the decoded object
+     *
+     * @throws OwsExceptionReport               if an error occurs
+     * @throws UnsupportedDecoderInputException if the content is not supported
+     *                                          by this decoder
+     */
+    T decode(ByteSource source, Charset charset)
+            throws OwsExceptionReport, UnsupportedDecoderInputException;
+
+    @Override
+    default T decode(String objectToDecode)
+            throws OwsExceptionReport, UnsupportedDecoderInputException {
+        if (objectToDecode == null) {
+            throw new UnsupportedDecoderInputException(this, objectToDecode);
+        }
+        return decode(ByteSource.wrap(objectToDecode.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adapts the supplied {@code String} based decoder to this contract.
+     *
+     * @param <T>     the result type
+     * @param decoder the decoder
+     *
+     * @return the decoder itself if it is a {@code StreamingDecoder}, else an
+     *         adapter that reads the source into a {@code String}
+     */
+    @SuppressWarnings("unchecked")
+    static <T> StreamingDecoder<T> adapt(Decoder<T, String> decoder) {
+        if (decoder == null || decoder instanceof StreamingDecoder) {
+            return (StreamingDecoder<T>) decoder;
+        }
+        return new StringDecoderAdapter<>(decoder);
+    }
+}
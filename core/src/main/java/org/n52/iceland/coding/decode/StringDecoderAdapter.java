@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding.decode;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Set;
+
+import org.n52.iceland.exception.ows.NoApplicableCodeException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+import org.n52.iceland.service.ServiceConstants.SupportedType;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.io.ByteSource;
+
+/**
+ * {@link StreamingDecoder} that reads the source into a {@code String} and
+ * delegates to a {@code String} based {@link Decoder}.
+ *
+ * @param <T> the result of the decoding process, the "Target"
+ *
+ * @since 1.3.0
+ */
+class StringDecoderAdapter<T> implements StreamingDecoder<T> {
+
+    private final Decoder<T, String> delegate;
+
+    StringDecoderAdapter(Decoder<T, String> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public T decode(ByteSource source, Charset charset) throws OwsExceptionReport {
+        String content;
+        try {
+            content = source.asCharSource(charset).read();
+        } catch (IOException ioe) {
+            throw new NoApplicableCodeException().causedBy(ioe)
+                    .withMessage("Error while reading request! Message: %s", ioe.getMessage());
+        }
+        return this.delegate.decode(content);
+    }
+
+    @Override
+    public T decode(String objectToDecode) throws OwsExceptionReport {
+        return this.delegate.decode(objectToDecode);
+    }
+
+    @Override
+    public Set<DecoderKey> getKeys() {
+        return this.delegate.getKeys();
+    }
+
+    @Override
+    public Set<SupportedType> getSupportedTypes() {
+        return this.delegate.getSupportedTypes();
+    }
+
+    @Override
+    public Set<String> getConformanceClasses(String service, String version) {
+        return this.delegate.getConformanceClasses(service, version);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this).addValue(this.delegate).toString();
+    }
+}
@@ -44,4 +44,8 @@ public abstract class AbstractDelegatingEncoder<T, S> implements Encoder<T, S> {
         return this.encoderRepository.getEncoder(key, others);
     }
 
+    public <X> EncoderDispatcher<X> getDispatcher(String namespace) {
+        return this.encoderRepository.getDispatcher(namespace);
+    }
+
 }
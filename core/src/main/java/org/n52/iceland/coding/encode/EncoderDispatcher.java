@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding.encode;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Reusable handle to resolve the encoders of a family of {@link EncoderKey}s
+ * that only differ in the type of the object to encode, e.g. the
+ * {@link XmlEncoderKey}s of a namespace. The encoder is resolved once per
+ * class; subsequent lookups are a single identity based hash lookup without
+ * allocating a key. The resolved encoders are discarded if the components of
+ * the repository change.
+ *
+ * @param <S> the target type of the encoders
+ *
+ * @since 1.3.0
+ * @see EncoderRepository#getDispatcher(String)
+ */
+public class EncoderDispatcher<S> {
+    private final EncoderRepository repository;
+    private final Function<Class<?>, EncoderKey> keyFactory;
+    private volatile Table table;
+
+    EncoderDispatcher(EncoderRepository repository, Function<Class<?>, EncoderKey> keyFactory) {
+        this.repository = repository;
+        this.keyFactory = keyFactory;
+        this.table = new Table(repository.getGeneration());
+    }
+
+    /**
+     * Gets the encoder for objects of the supplied type.
+     *
+     * @param <F>  the source type of the encoder
+     * @param type the type of the objects to encode
+     *
+     * @return the encoder or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <F> Encoder<F, S> getEncoder(Class<? extends F> type) {
+        Table current = getTable();
+        Optional<Encoder<?, ?>> encoder = current.encoders.get(type);
+        if (encoder == null) {
+            encoder = Optional.ofNullable(this.repository.getEncoder(this.keyFactory.apply(type)));
+            current.encoders.putIfAbsent(type, encoder);
+        }
+        return (Encoder<F, S>) encoder.orElse(null);
+    }
+
+    /**
+     * Gets the encoder for the type of the supplied object.
+     *
+     * @param <F>    the source type of the encoder
+     * @param object the object to encode
+     *
+     * @return the encoder or {@code null} if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <F> Encoder<F, S> getEncoder(F object) {
+        return getEncoder((Class<? extends F>) object.getClass());
+    }
+
+    private Table getTable() {
+        Table current = this.table;
+        long generation = this.repository.getGeneration();
+        if (current.generation != generation) {
+            current = new Table(generation);
+            this.table = current;
+        }
+        return current;
+    }
+
+    /**
+     * The encoders resolved for a single generation of the repository. The
+     * keys are classes, so the map lookup is effectively identity based.
+     */
+    private static class Table {
+        private final long generation;
+        private final ConcurrentMap<Class<?>, Optional<Encoder<?, ?>>> encoders = new ConcurrentHashMap<>();
+
+        Table(long generation) {
+            this.generation = generation;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.n52.iceland.coding.encode;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -37,6 +39,7 @@ public class EncoderRepository extends AbstractCodingRepository<EncoderKey, Enco
     private Collection<Encoder<?, ?>> encoders;
     @Autowired(required = false)
     private Collection<EncoderFactory> encoderFactories;
+    private final ConcurrentMap<String, EncoderDispatcher<?>> dispatchers = new ConcurrentHashMap<>();
 
     @Override
     public void init() {
@@ -56,6 +59,22 @@ public class EncoderRepository extends AbstractCodingRepository<EncoderKey, Enco
         return (Encoder<F, T>) getComponent(key, keys);
     }
 
+    /**
+     * Gets the dispatcher for the {@link XmlEncoderKey}s of the supplied
+     * namespace. Dispatchers are shared, so delegating encoders resolve the
+     * encoder of a class only once instead of for every encoded object.
+     *
+     * @param <T>       the target type of the encoders
+     * @param namespace the namespace
+     *
+     * @return the dispatcher
+     */
+    @SuppressWarnings("unchecked")
+    public <T> EncoderDispatcher<T> getDispatcher(String namespace) {
+        return (EncoderDispatcher<T>) this.dispatchers.computeIfAbsent(namespace,
+                ns -> new EncoderDispatcher<>(this, type -> new XmlEncoderKey(ns, type)));
+    }
+
     @Override
     protected CompositeKey createCompositeKey(List<EncoderKey> keys) {
         return new CompositeEncoderKey(keys);
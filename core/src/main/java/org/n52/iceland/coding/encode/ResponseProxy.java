@@ -38,6 +38,15 @@ public class ResponseProxy {
         this.response = response;
     }
 
+    /**
+     * Constructor for proxies that are not backed by a servlet response, e.g.
+     * while a response is encoded into a buffer. Subclasses have to override
+     * all methods.
+     */
+    protected ResponseProxy() {
+        this.response = null;
+    }
+
     public void addHeader(String headerIdentifier, String headerValue) {
         response.addHeader(headerIdentifier, headerValue);
     }
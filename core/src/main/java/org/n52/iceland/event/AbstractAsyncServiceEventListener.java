@@ -17,19 +17,15 @@
 package org.n52.iceland.event;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
-import org.n52.iceland.util.GroupedAndNamedThreadFactory;
+import org.n52.iceland.util.BackgroundExecutors;
 
 public abstract class AbstractAsyncServiceEventListener implements
         ServiceEventListener {
     private final Executor executor;
 
     public AbstractAsyncServiceEventListener(int threadPoolSize) {
-        this.executor = Executors
-                .newFixedThreadPool(threadPoolSize,
-                                    new GroupedAndNamedThreadFactory(getClass()
-                                            .getName() + "-worker"));
+        this.executor = BackgroundExecutors.newExecutor(getClass().getName() + "-worker", threadPoolSize);
     }
 
     public AbstractAsyncServiceEventListener() {
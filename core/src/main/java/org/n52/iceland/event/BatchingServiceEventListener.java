@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Listener that receives events in batches, e.g. to write them to an
+ * external store in bulk. The {@link ServiceEventBus} accumulates the events
+ * of the listener on a dedicated consumer thread, regardless of whether the
+ * bus is asynchronous, and delivers a batch once it reached
+ * {@link #getBatchSize()} events or the first event of the batch waited for
+ * {@link #getFlushInterval()} milliseconds.
+ *
+ * @since 1.3.0
+ */
+public interface BatchingServiceEventListener extends ServiceEventListener {
+    /**
+     * The default maximum number of events of a batch.
+     */
+    int DEFAULT_BATCH_SIZE = 100;
+    /**
+     * The default maximum time in milliseconds an event waits for its batch.
+     */
+    long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * Handles a batch of events in the order they were submitted. The list
+     * is unmodifiable and belongs to the listener, which may keep it after
+     * returning.
+     *
+     * @param events the events, never empty
+     */
+    void handle(List<ServiceEvent> events);
+
+    @Override
+    default void handle(ServiceEvent event) {
+        handle(Collections.singletonList(event));
+    }
+
+    /**
+     * @return the maximum number of events of a batch
+     */
+    default int getBatchSize() {
+        return DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * @return the maximum time in milliseconds the first event of a batch
+     *         waits for further events
+     */
+    default long getFlushInterval() {
+        return DEFAULT_FLUSH_INTERVAL;
+    }
+}
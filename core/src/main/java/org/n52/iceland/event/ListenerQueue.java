@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer of the events of a single listener that are handled by
+ * a dedicated consumer thread, so a slow listener neither delays other
+ * listeners nor exhausts the memory. Events of a
+ * {@link BatchingServiceEventListener} are taken in batches.
+ *
+ * @since 1.3.0
+ */
+final class ListenerQueue implements Runnable {
+    private final ServiceEventListener listener;
+    private final ServiceEvent[] buffer;
+    private final OverflowPolicy policy;
+    private final long timeout;
+    private final int sampleRate;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private int head;
+    private int count;
+    private int sampled;
+    private boolean closed;
+
+    /**
+     * @param listener   the listener
+     * @param capacity   the capacity of the queue
+     * @param policy     the policy for a full queue
+     * @param timeout    the time in milliseconds to wait for {@link
+     *                   OverflowPolicy#BLOCK}
+     * @param sampleRate the rate for {@link OverflowPolicy#SAMPLE}
+     */
+    ListenerQueue(ServiceEventListener listener, int capacity, OverflowPolicy policy, long timeout,
+                  int sampleRate) {
+        this.listener = listener;
+        this.buffer = new ServiceEvent[capacity];
+        this.policy = policy;
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Queues the event according to the {@link OverflowPolicy}.
+     *
+     * @param event the event
+     *
+     * @return if the event was queued
+     */
+    boolean offer(ServiceEvent event) {
+        lock.lock();
+        try {
+            if (closed || !makeRoom()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            buffer[(head + count) % buffer.length] = event;
+            ++count;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean makeRoom() {
+        if (policy == OverflowPolicy.SAMPLE) {
+            if (count < buffer.length / 2) {
+                sampled = 0;
+            } else if (sampled++ % sampleRate != 0) {
+                return false;
+            }
+        }
+        if (count < buffer.length) {
+            return true;
+        }
+        switch (policy) {
+            case DROP_OLDEST:
+                buffer[head] = null;
+                head = (head + 1) % buffer.length;
+                --count;
+                dropped.incrementAndGet();
+                return true;
+            case BLOCK:
+                long nanos = timeout;
+                try {
+                    while (count == buffer.length && !closed) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                return !closed;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        if (listener instanceof BatchingServiceEventListener) {
+            runBatches((BatchingServiceEventListener) listener);
+        } else {
+            ServiceEvent event;
+            while ((event = take()) != null) {
+                ServiceEventBus.handle(event, listener);
+                delivered.incrementAndGet();
+            }
+        }
+    }
+
+    private void runBatches(BatchingServiceEventListener listener) {
+        int size = Math.max(1, listener.getBatchSize());
+        long interval = TimeUnit.MILLISECONDS.toNanos(Math.max(0, listener.getFlushInterval()));
+        List<ServiceEvent> batch = new ArrayList<>(Math.min(size, buffer.length));
+        while (takeBatch(batch, size, interval)) {
+            // the listener may keep the batch, so it gets a list of its own
+            ServiceEventBus.handle(Collections.unmodifiableList(new ArrayList<>(batch)), listener);
+            delivered.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Takes events until the batch is full, the interval elapsed since the
+     * first event was taken or the queue was closed and drained.
+     *
+     * @return if the batch contains events
+     */
+    private boolean takeBatch(List<ServiceEvent> batch, int size, long interval) {
+        lock.lock();
+        try {
+            while (count == 0) {
+                if (closed) {
+                    return false;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            long deadline = System.nanoTime() + interval;
+            while (batch.size() < size) {
+                if (count > 0) {
+                    batch.add(poll());
+                } else if (closed) {
+                    break;
+                } else {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0) {
+                        break;
+                    }
+                    try {
+                        notEmpty.awaitNanos(nanos);
+                    } catch (InterruptedException e) {
+                        // deliver what we have, the consumer is not interrupted
+                        break;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServiceEvent take() {
+        lock.lock();
+        try {
+            while (count == 0) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            return poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ServiceEvent poll() {
+        ServiceEvent event = buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        --count;
+        notFull.signal();
+        return event;
+    }
+
+    /**
+     * Stops accepting events. The consumer terminates after handling the
+     * already queued events.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ListenerQueueStatistics getStatistics() {
+        int depth;
+        lock.lock();
+        try {
+            depth = count;
+        } finally {
+            lock.unlock();
+        }
+        return new ListenerQueueStatistics(listener, buffer.length, depth, delivered.get(), dropped.get());
+    }
+}
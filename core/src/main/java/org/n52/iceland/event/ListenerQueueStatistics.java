@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The state of the asynchronous event queue of a listener.
+ *
+ * @since 1.3.0
+ */
+public final class ListenerQueueStatistics {
+    private final ServiceEventListener listener;
+    private final int capacity;
+    private final int depth;
+    private final long delivered;
+    private final long dropped;
+
+    ListenerQueueStatistics(ServiceEventListener listener, int capacity, int depth, long delivered, long dropped) {
+        this.listener = listener;
+        this.capacity = capacity;
+        this.depth = depth;
+        this.delivered = delivered;
+        this.dropped = dropped;
+    }
+
+    public ServiceEventListener getListener() {
+        return listener;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of queued events
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of events handed to the listener
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of events discarded by the {@link OverflowPolicy}
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("listener", listener)
+                .add("capacity", capacity)
+                .add("depth", depth)
+                .add("delivered", delivered)
+                .add("dropped", dropped)
+                .toString();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event;
+
+/**
+ * Determines what happens to an event that is submitted for asynchronous
+ * handling while the queue of a listener is full.
+ *
+ * @since 1.3.0
+ */
+public enum OverflowPolicy {
+    /**
+     * Discards the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * Discards the new event.
+     */
+    DROP_NEWEST,
+    /**
+     * Blocks the submitting thread until there is room in the queue or the
+     * timeout elapsed, in which case the new event is discarded.
+     */
+    BLOCK,
+    /**
+     * Only queues every n-th event once the queue is half full and discards
+     * the new event if the queue is full.
+     */
+    SAMPLE
+}
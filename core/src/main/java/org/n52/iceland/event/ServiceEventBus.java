@@ -16,71 +16,138 @@
  */
 package org.n52.iceland.event;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.n52.iceland.exception.ConfigurationError;
 import org.n52.iceland.lifecycle.Constructable;
+import org.n52.iceland.lifecycle.Destroyable;
 import org.n52.iceland.util.ClassHelper;
-import org.n52.iceland.util.GroupedAndNamedThreadFactory;
-import org.n52.iceland.util.collections.MultiMaps;
-import org.n52.iceland.util.collections.SetMultiMap;
+import org.n52.iceland.util.BackgroundExecutors;
+import org.n52.iceland.util.Validation;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.SetMultimap;
 
 /**
  * The {@link ServiceEventListener} are registered to the
  * {@link ServiceEventBus} which delegates the fired {@link ServiceEvent} to the
  * {@link ServiceEventListener}.
+ * <p>
+ * The registrations are kept in an immutable {@link Dispatch} that is
+ * replaced on every (un)registration. Submitting an event reads the current
+ * dispatch once and iterates the listeners of the event class, which are
+ * resolved once per event class and dispatch. Submitting therefore never
+ * blocks and, if events are handled synchronously, does not allocate.
+ * <p>
+ * In asynchronous mode every listener gets a bounded queue with a dedicated
+ * consumer thread (see {@link ListenerQueue}). If a queue is full, the
+ * {@link OverflowPolicy} decides which event is discarded, so a slow listener
+ * can neither exhaust the memory nor delay other listeners. The queue
+ * settings apply to queues created after they were changed. The consumers
+ * are virtual threads if {@link BackgroundExecutors} is configured so.
+ * <p>
+ * A {@link BatchingServiceEventListener} always gets a queue, also in
+ * synchronous mode, and receives the events in batches.
  *
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
  *
  * @since 1.0.0
  */
-public class ServiceEventBus implements Constructable {
+public class ServiceEventBus implements Constructable, Destroyable {
     private static final Logger LOG = LoggerFactory.getLogger(ServiceEventBus.class);
     @Deprecated
     private static ServiceEventBus instance;
-    private static final int THREAD_POOL_SIZE = 3;
     private static final String THREAD_GROUP_NAME = "ServiceEventBus-Worker";
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long DEFAULT_OVERFLOW_TIMEOUT = 100;
+    private static final int DEFAULT_SAMPLE_RATE = 10;
 
-    private final ClassCache classCache;
-    private final ReadWriteLock lock;
-    private final ThreadFactory threadFactory;
-    private final Executor executor;
-    private final SetMultimap<Class<? extends ServiceEvent>, ServiceEventListener> listeners;
-    private final Queue<HandlerExecution> queue;
-    private boolean async = false;
+    /**
+     * The registrations, guarded by itself. Only used to create new
+     * dispatches.
+     */
+    private final SetMultimap<Class<? extends ServiceEvent>, Subscription> listeners;
+    private final Map<ServiceEventListener, Subscription> subscriptions;
+    private volatile Dispatch dispatch = new Dispatch(ImmutableSetMultimap.of());
+    private volatile boolean async = false;
+    private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private volatile long overflowTimeout = DEFAULT_OVERFLOW_TIMEOUT;
+    private volatile int sampleRate = DEFAULT_SAMPLE_RATE;
 
     public ServiceEventBus() {
-        this.classCache = new ClassCache();
-        this.lock = new ReentrantReadWriteLock();
-        this.threadFactory = new GroupedAndNamedThreadFactory(THREAD_GROUP_NAME);
-        this.executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE, threadFactory);
-        this.listeners = HashMultimap.create();
-        this.queue = new ConcurrentLinkedQueue<>();
+        this.listeners = LinkedHashMultimap.create();
+        this.subscriptions = new ConcurrentHashMap<>();
     }
 
     public void setAsync(boolean async) {
         this.async = async;
     }
 
+    /**
+     * @param capacity the number of events a listener can queue in
+     *                 asynchronous mode
+     *
+     * @throws ConfigurationError if the capacity is not positive
+     */
+    public void setAsyncQueueCapacity(int capacity) throws ConfigurationError {
+        this.queueCapacity = Validation.greaterZero("Event queue capacity", capacity);
+    }
+
+    public void setOverflowPolicy(OverflowPolicy policy) throws ConfigurationError {
+        this.overflowPolicy = Validation.notNull("Overflow policy", policy);
+    }
+
+    /**
+     * @param timeout the time in milliseconds {@link OverflowPolicy#BLOCK}
+     *                waits for room in the queue
+     *
+     * @throws ConfigurationError if the timeout is negative
+     */
+    public void setOverflowTimeout(int timeout) throws ConfigurationError {
+        this.overflowTimeout = Validation.greaterEqualZero("Overflow timeout", timeout);
+    }
+
+    /**
+     * @param sampleRate the rate {@link OverflowPolicy#SAMPLE} keeps events
+     *                   at, e.g. every 10th event
+     *
+     * @throws ConfigurationError if the rate is not positive
+     */
+    public void setSampleRate(int sampleRate) throws ConfigurationError {
+        this.sampleRate = Validation.greaterZero("Sample rate", sampleRate);
+    }
+
     @Override
     public void init() {
         ServiceEventBus.instance = this;
     }
 
+    @Override
+    public void destroy() {
+        this.subscriptions.values().forEach(Subscription::close);
+    }
+
+    /**
+     * @return the state of the asynchronous queues of the listeners
+     */
+    public List<ListenerQueueStatistics> getQueueStatistics() {
+        return this.subscriptions.values().stream()
+                .map(Subscription::getQueue).filter(Objects::nonNull)
+                .map(ListenerQueue::getStatistics)
+                .collect(Collectors.toList());
+    }
+
     private boolean checkEvent(ServiceEvent event) {
         if (event == null) {
             LOG.warn("Submitted event is null!");
@@ -101,16 +168,16 @@ public class ServiceEventBus implements Constructable {
         return true;
     }
 
-    private Set<ServiceEventListener> getListenersForEvent(final ServiceEvent event) {
-        lock.readLock().lock();
-        try {
-
-            return classCache.getClasses(event.getClass()).stream()
-                    .map(listeners::get).filter(Objects::nonNull)
-                    .flatMap(Set::stream).collect(Collectors.toSet());
-        } finally {
-            lock.readLock().unlock();
-        }
+    /**
+     * Checks if any listener would receive an event of the supplied class,
+     * so producers can skip creating events nobody listens to.
+     *
+     * @param eventClass the event class
+     *
+     * @return if there are listeners for the class
+     */
+    public boolean hasListeners(Class<? extends ServiceEvent> eventClass) {
+        return this.dispatch.getSubscriptions(eventClass).length > 0;
     }
 
     /**
@@ -125,25 +192,63 @@ public class ServiceEventBus implements Constructable {
         if (!checkEvent(event)) {
             return;
         }
-        lock.readLock().lock();
-        try {
-            getListenersForEvent(event).stream()
-                    .peek(listener -> LOG.debug("Queueing Event {} for Listener {}", event, listener))
-                    .map(listener -> new HandlerExecution(event, listener))
-                    .forEach(queue::offer);
-        } finally {
-            lock.readLock().unlock();
-        }
-        HandlerExecution r;
-        while ((r = queue.poll()) != null) {
-            if (async) {
-                executor.execute(r);
+        for (Subscription subscription : this.dispatch.getSubscriptions(event.getClass())) {
+            if (async || subscription.batching) {
+                LOG.debug("Queueing Event {} for Listener {}", event, subscription.listener);
+                if (!getOrCreateQueue(subscription).offer(event)) {
+                    LOG.debug("Dropped Event {} for Listener {}", event, subscription.listener);
+                }
             } else {
-                r.run();
+                handle(event, subscription.listener);
             }
         }
     }
 
+    private ListenerQueue getOrCreateQueue(Subscription subscription) {
+        ListenerQueue queue = subscription.queue;
+        if (queue == null) {
+            synchronized (subscription) {
+                queue = subscription.queue;
+                if (queue == null) {
+                    queue = new ListenerQueue(subscription.listener, queueCapacity, overflowPolicy,
+                                              overflowTimeout, sampleRate);
+                    if (subscription.closed) {
+                        queue.close();
+                    } else {
+                        Thread consumer = BackgroundExecutors.newThreadFactory(getThreadName(subscription.listener))
+                                .newThread(queue);
+                        consumer.setDaemon(true);
+                        consumer.start();
+                    }
+                    subscription.queue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    private static String getThreadName(ServiceEventListener listener) {
+        return String.format("%s-%s", THREAD_GROUP_NAME, listener.getClass().getSimpleName());
+    }
+
+    static void handle(ServiceEvent event, ServiceEventListener listener) {
+        try {
+            LOG.debug("Submitting Event {} to Listener {}", event, listener);
+            listener.handle(event);
+        } catch (final Throwable t) {
+            LOG.error(String.format("Error handling event %s by handler %s", event, listener), t);
+        }
+    }
+
+    static void handle(List<ServiceEvent> events, BatchingServiceEventListener listener) {
+        try {
+            LOG.debug("Submitting {} Events to Listener {}", events.size(), listener);
+            listener.handle(events);
+        } catch (final Throwable t) {
+            LOG.error(String.format("Error handling %d events by handler %s", events.size(), listener), t);
+        }
+    }
+
     /**
      * Register a new {@link ServiceEventListener} to the
      * {@link ServiceEventBus}.
@@ -155,13 +260,13 @@ public class ServiceEventBus implements Constructable {
         if (!checkListener(listener)) {
             return;
         }
-        lock.writeLock().lock();
-        try {
-            listener.getTypes().stream()
-                    .peek(type -> LOG.debug("Subscibing Listener {} to EventType {}", listener, type))
-                    .forEach(type -> listeners.put(type, listener));
-        } finally {
-            lock.writeLock().unlock();
+        synchronized (this.listeners) {
+            Subscription subscription = this.subscriptions.computeIfAbsent(listener, Subscription::new);
+            for (Class<? extends ServiceEvent> type : listener.getTypes()) {
+                LOG.debug("Subscibing Listener {} to EventType {}", listener, type);
+                this.listeners.put(type, subscription);
+            }
+            this.dispatch = new Dispatch(ImmutableSetMultimap.copyOf(this.listeners));
         }
     }
 
@@ -176,19 +281,20 @@ public class ServiceEventBus implements Constructable {
         if (!checkListener(listener)) {
             return;
         }
-        lock.writeLock().lock();
-        try {
+        synchronized (this.listeners) {
+            Subscription subscription = this.subscriptions.get(listener);
             for (Class<? extends ServiceEvent> eventType : listener.getTypes()) {
-                Set<ServiceEventListener> listenersForKey = listeners.get(eventType);
-                if (listenersForKey.contains(listener)) {
+                if (subscription != null && this.listeners.remove(eventType, subscription)) {
                     LOG.debug("Unsubscibing Listener {} from EventType {}", listener, eventType);
-                    listenersForKey.remove(listener);
                 } else {
                     LOG.warn("Listener {} was not registered for SosEvent Type {}", listener, eventType);
                 }
             }
-        } finally {
-            lock.writeLock().unlock();
+            if (subscription != null && !this.listeners.containsValue(subscription)) {
+                this.subscriptions.remove(listener);
+                subscription.close();
+            }
+            this.dispatch = new Dispatch(ImmutableSetMultimap.copyOf(this.listeners));
         }
     }
 
@@ -202,59 +308,61 @@ public class ServiceEventBus implements Constructable {
         getInstance().submit(event);
     }
 
-    private static class ClassCache {
-        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * A registered listener and its queue, which is created on the first
+     * asynchronous or batched submission.
+     */
+    private static final class Subscription {
+        private final ServiceEventListener listener;
+        private final boolean batching;
+        private volatile ListenerQueue queue;
+        private boolean closed;
 
-        private final SetMultiMap<Class<? extends ServiceEvent>, Class<? extends ServiceEvent>> cache = MultiMaps
-                .newSetMultiMap();
+        Subscription(ServiceEventListener listener) {
+            this.listener = listener;
+            this.batching = listener instanceof BatchingServiceEventListener;
+        }
 
-        public Set<Class<? extends ServiceEvent>> getClasses(Class<? extends ServiceEvent> eventClass) {
-            lock.readLock().lock();
-            try {
-                Set<Class<? extends ServiceEvent>> r = cache.get(eventClass);
-                if (r != null) {
-                    return r;
-                }
-            } finally {
-                lock.readLock().unlock();
-            }
-            lock.writeLock().lock();
-            try {
-                Set<Class<? extends ServiceEvent>> r = cache.get(eventClass);
-                if (r != null) {
-                    return r;
-                }
-                r = flatten(eventClass);
-                cache.put(eventClass, r);
-                return r;
-            } finally {
-                lock.writeLock().unlock();
-            }
+        ListenerQueue getQueue() {
+            return queue;
         }
 
-        private Set<Class<? extends ServiceEvent>> flatten(Class<? extends ServiceEvent> eventClass) {
-            return ClassHelper.flattenPartialHierachy(ServiceEvent.class, eventClass);
+        synchronized void close() {
+            this.closed = true;
+            if (this.queue != null) {
+                this.queue.close();
+            }
         }
     }
 
-    private static class HandlerExecution implements Runnable {
-        private final ServiceEvent event;
+    /**
+     * Immutable snapshot of the registrations. The listeners of an event
+     * class (including the listeners of its super types) are resolved on the
+     * first submission of the class; later submissions only perform a lookup.
+     */
+    private static final class Dispatch {
+        private final ImmutableSetMultimap<Class<? extends ServiceEvent>, Subscription> registrations;
+        private final Map<Class<? extends ServiceEvent>, Subscription[]> resolved = new ConcurrentHashMap<>();
 
-        private final ServiceEventListener listener;
+        Dispatch(ImmutableSetMultimap<Class<? extends ServiceEvent>, Subscription> registrations) {
+            this.registrations = registrations;
+        }
 
-        HandlerExecution(ServiceEvent event, ServiceEventListener listener) {
-            this.event = event;
-            this.listener = listener;
+        Subscription[] getSubscriptions(Class<? extends ServiceEvent> eventClass) {
+            Subscription[] subscriptions = this.resolved.get(eventClass);
+            if (subscriptions == null) {
+                subscriptions = this.resolved.computeIfAbsent(eventClass, this::resolve);
+            }
+            return subscriptions;
         }
 
-        @Override
-        public void run() {
-            try {
-                LOG.debug("Submitting Event {} to Listener {}", event, listener);
-                listener.handle(event);
-            } catch (final Throwable t) {
-                LOG.error(String.format("Error handling event %s by handler %s", event, listener), t);
+        private Subscription[] resolve(Class<? extends ServiceEvent> eventClass) {
+            Set<Subscription> subscriptions = new LinkedHashSet<>();
+            for (Class<? extends ServiceEvent> type
+                         : ClassHelper.flattenPartialHierachy(ServiceEvent.class, eventClass)) {
+                subscriptions.addAll(this.registrations.get(type));
             }
+            return subscriptions.toArray(new Subscription[subscriptions.size()]);
         }
     }
 }
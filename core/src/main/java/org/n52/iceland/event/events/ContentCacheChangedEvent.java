@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.events;
+
+import java.util.Optional;
+
+import org.n52.iceland.cache.ContentCacheDiff;
+import org.n52.iceland.event.ServiceEvent;
+
+/**
+ * This event is fired after a complete update replaced the content cache
+ * with a new generation. If the differences to the previous generation are
+ * not known, e.g. because no
+ * {@link org.n52.iceland.cache.snapshot.ContentCacheSchema} is available,
+ * listeners have to assume that everything changed.
+ *
+ * @since 1.3.0
+ */
+public class ContentCacheChangedEvent implements ServiceEvent {
+    private final long generation;
+    private final Optional<ContentCacheDiff> diff;
+
+    public ContentCacheChangedEvent(long generation, Optional<ContentCacheDiff> diff) {
+        this.generation = generation;
+        this.diff = diff;
+    }
+
+    /**
+     * @return the number of the new cache generation
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the differences to the previous generation, if known
+     */
+    public Optional<ContentCacheDiff> getDiff() {
+        return diff;
+    }
+
+    /**
+     * @return if the new generation differs from the previous one
+     */
+    public boolean isChanged() {
+        return !diff.isPresent() || !diff.get().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContentCacheChangedEvent[generation=%d, diff=%s]", generation,
+                             diff.map(Object::toString).orElse("unknown"));
+    }
+}
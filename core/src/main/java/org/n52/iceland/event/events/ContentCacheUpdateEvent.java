@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.events;
+
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.event.ServiceEvent;
+
+/**
+ * This event is fired after a {@link ContentCacheUpdate} was applied to the
+ * content cache.
+ *
+ * @since 1.3.0
+ */
+public class ContentCacheUpdateEvent implements ServiceEvent {
+    private final ContentCacheUpdate update;
+
+    public ContentCacheUpdateEvent(ContentCacheUpdate update) {
+        this.update = update;
+    }
+
+    public ContentCacheUpdate getUpdate() {
+        return update;
+    }
+
+    public boolean isCompleteUpdate() {
+        return update.isCompleteUpdate();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ContentCacheUpdateEvent[update=%s]", getUpdate());
+    }
+}
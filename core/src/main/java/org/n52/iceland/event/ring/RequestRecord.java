@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.ring;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.n52.iceland.util.http.HTTPHeaders;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Preallocated slot of a {@link RequestRecordRingBuffer}. Unlike the
+ * {@link org.n52.iceland.event.events.IncomingRequestEvent} and
+ * {@link org.n52.iceland.event.events.OutgoingResponseEvent}, a record only
+ * holds values extracted from the servlet objects, so it neither keeps them
+ * alive nor requires an allocation per request. Slots are reused, handlers
+ * must copy the values they want to keep.
+ *
+ * @since 1.3.0
+ */
+public final class RequestRecord {
+    /**
+     * The sequence of the record that was published last to this slot,
+     * written after all other fields.
+     */
+    volatile long published = -1;
+    /**
+     * If the values of the record could not be extracted, so the record is
+     * published only to release the sequence and is not passed to handlers.
+     */
+    boolean skipped;
+    private Type type;
+    private long requestNumber;
+    private long elapsedTime;
+    private int status;
+    private long requestBytes;
+    private long responseBytes;
+    private String method;
+    private String remoteAddress;
+
+    RequestRecord() {
+    }
+
+    void setIncoming(HttpServletRequest request, long requestNumber) {
+        this.type = Type.INCOMING;
+        this.requestNumber = requestNumber;
+        this.elapsedTime = -1;
+        this.status = -1;
+        this.requestBytes = request.getContentLengthLong();
+        this.responseBytes = -1;
+        this.method = request.getMethod();
+        this.remoteAddress = request.getRemoteAddr();
+    }
+
+    void setOutgoing(HttpServletRequest request, HttpServletResponse response, long requestNumber,
+                     long elapsedTime) {
+        this.type = Type.OUTGOING;
+        this.requestNumber = requestNumber;
+        this.elapsedTime = elapsedTime;
+        this.status = response.getStatus();
+        this.requestBytes = request.getContentLengthLong();
+        this.responseBytes = parseLength(response.getHeader(HTTPHeaders.CONTENT_LENGTH));
+        this.method = request.getMethod();
+        this.remoteAddress = request.getRemoteAddr();
+    }
+
+    private static long parseLength(String header) {
+        if (header == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(header);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the sequence of this record in the ring buffer
+     */
+    public long getSequence() {
+        return published;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRequestNumber() {
+        return requestNumber;
+    }
+
+    /**
+     * @return the processing time in milliseconds or {@code -1} for incoming
+     *         requests
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * @return the HTTP status of the response or {@code -1} for incoming
+     *         requests
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the length of the request body or {@code -1} if unknown
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return the length of the response body or {@code -1} if unknown
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("sequence", published)
+                .add("type", type)
+                .add("requestNumber", requestNumber)
+                .add("elapsedTime", elapsedTime)
+                .add("status", status)
+                .add("requestBytes", requestBytes)
+                .add("responseBytes", responseBytes)
+                .add("method", method)
+                .add("remoteAddress", remoteAddress)
+                .toString();
+    }
+
+    public enum Type {
+        INCOMING,
+        OUTGOING
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.ring;
+
+/**
+ * Handler of the {@link RequestRecord}s of a {@link RequestRecordRingBuffer}.
+ * All handlers are called in sequence on the consumer thread of the buffer.
+ *
+ * @since 1.3.0
+ */
+@FunctionalInterface
+public interface RequestRecordHandler {
+    /**
+     * Handles a record. The record is reused after this method returned.
+     *
+     * @param record     the record
+     * @param endOfBatch if no further records are currently available, e.g.
+     *                   to flush buffered output
+     */
+    void onRecord(RequestRecord record, boolean endOfBatch);
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.ring;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import org.n52.iceland.exception.ConfigurationError;
+import org.n52.iceland.lifecycle.Constructable;
+import org.n52.iceland.lifecycle.Destroyable;
+import org.n52.iceland.util.BackgroundExecutors;
+
+/**
+ * Allocation free alternative to the request and response events of the
+ * {@link org.n52.iceland.event.ServiceEventBus} for high request rates.
+ * <p>
+ * The buffer consists of preallocated {@link RequestRecord} slots. Producers
+ * claim the next sequence with a compare-and-set, fill the slot with the
+ * values extracted from the servlet objects and publish it by writing the
+ * sequence to the slot; a slot whose values could not be extracted is
+ * published as skipped, so the consumer never waits for it. A single consumer
+ * thread passes the published records in sequence to the
+ * {@link RequestRecordHandler}s and parks when there are none; producers only
+ * unpark it if it is parked. If the consumer falls behind by the capacity of
+ * the buffer, new records are dropped rather than blocking the request
+ * threads.
+ *
+ * @since 1.3.0
+ */
+public class RequestRecordRingBuffer implements Constructable, Destroyable {
+    private static final Logger LOG = LoggerFactory.getLogger(RequestRecordRingBuffer.class);
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int SPINS = 100;
+    private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * The next sequence to claim.
+     */
+    private final AtomicLong cursor = new AtomicLong();
+    /**
+     * The next sequence to consume, all slots of lower sequences are free.
+     */
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private RequestRecord[] slots;
+    private int mask;
+    private volatile RequestRecordHandler[] handlers = new RequestRecordHandler[0];
+    private volatile boolean running;
+    private volatile boolean parked;
+    private volatile Thread consumer;
+
+    public RequestRecordRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RequestRecordRingBuffer(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two
+     *
+     * @throws ConfigurationError if the capacity is not positive or the buffer
+     *                            was already started
+     */
+    public final void setCapacity(int capacity) throws ConfigurationError {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new ConfigurationError("Invalid ring buffer capacity: %d", capacity);
+        }
+        if (this.consumer != null) {
+            throw new ConfigurationError("The capacity of a started ring buffer can not be changed");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new RequestRecord[size];
+        for (int i = 0; i < size; ++i) {
+            this.slots[i] = new RequestRecord();
+        }
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return this.slots.length;
+    }
+
+    @Autowired(required = false)
+    public void setHandlers(Collection<RequestRecordHandler> handlers) {
+        this.handlers = handlers.toArray(new RequestRecordHandler[handlers.size()]);
+    }
+
+    public synchronized void addHandler(RequestRecordHandler handler) {
+        RequestRecordHandler[] current = this.handlers;
+        RequestRecordHandler[] next = new RequestRecordHandler[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = handler;
+        this.handlers = next;
+    }
+
+    /**
+     * @return the number of records dropped because the buffer was full
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the number of published records that are not yet handled
+     */
+    public long getBacklog() {
+        return this.cursor.get() - this.consumed.get();
+    }
+
+    @Override
+    public synchronized void init() {
+        if (this.consumer == null) {
+            this.running = true;
+            this.consumer = BackgroundExecutors.newThreadFactory("request-record-consumer").newThread(this::consume);
+            this.consumer.setDaemon(true);
+            this.consumer.start();
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        this.running = false;
+        if (this.consumer != null) {
+            LockSupport.unpark(this.consumer);
+            try {
+                this.consumer.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Publishes the values of an incoming request.
+     *
+     * @param request       the request
+     * @param requestNumber the number of the request
+     *
+     * @return if the record was published; {@code false} if the buffer is
+     *         full or the values could not be extracted
+     */
+    public boolean publishIncoming(HttpServletRequest request, long requestNumber) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        RequestRecord record = this.slots[(int) sequence & this.mask];
+        try {
+            record.setIncoming(request, requestNumber);
+        } catch (RuntimeException e) {
+            // the slot is published as skipped, the consumer must not wait for it
+            publish(record, sequence, true);
+            LOG.warn("Could not extract the record of request {}", requestNumber, e);
+            return false;
+        }
+        publish(record, sequence, false);
+        return true;
+    }
+
+    /**
+     * Publishes the values of an outgoing response.
+     *
+     * @param request       the request
+     * @param response      the response
+     * @param requestNumber the number of the request
+     * @param elapsedTime   the processing time in milliseconds
+     *
+     * @return if the record was published; {@code false} if the buffer is
+     *         full or the values could not be extracted
+     */
+    public boolean publishOutgoing(HttpServletRequest request, HttpServletResponse response, long requestNumber,
+                                   long elapsedTime) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        RequestRecord record = this.slots[(int) sequence & this.mask];
+        try {
+            record.setOutgoing(request, response, requestNumber, elapsedTime);
+        } catch (RuntimeException e) {
+            // the slot is published as skipped, the consumer must not wait for it
+            publish(record, sequence, true);
+            LOG.warn("Could not extract the record of response {}", requestNumber, e);
+            return false;
+        }
+        publish(record, sequence, false);
+        return true;
+    }
+
+    /**
+     * Claims the next sequence.
+     *
+     * @return the sequence or {@code -1} if the buffer is full
+     */
+    private long claim() {
+        while (true) {
+            long sequence = this.cursor.get();
+            if (sequence - this.consumed.get() >= this.slots.length) {
+                this.dropped.incrementAndGet();
+                return -1;
+            }
+            if (this.cursor.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    private void publish(RequestRecord record, long sequence, boolean skipped) {
+        record.skipped = skipped;
+        record.published = sequence;
+        if (this.parked) {
+            Thread thread = this.consumer;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private void consume() {
+        long next = this.consumed.get();
+        int idle = 0;
+        while (true) {
+            RequestRecord record = this.slots[(int) next & this.mask];
+            if (record.published == next) {
+                if (!record.skipped) {
+                    RequestRecord following = this.slots[(int) (next + 1) & this.mask];
+                    handle(record, following.published != next + 1 || following.skipped);
+                }
+                this.consumed.lazySet(++next);
+                idle = 0;
+            } else if (!this.running && this.cursor.get() == next) {
+                return;
+            } else if (++idle < SPINS) {
+                Thread.yield();
+            } else {
+                this.parked = true;
+                // check again, a producer may have published before it saw
+                // the flag
+                if (record.published != next && this.running) {
+                    LockSupport.park(this);
+                }
+                this.parked = false;
+            }
+        }
+    }
+
+    private void handle(RequestRecord record, boolean endOfBatch) {
+        for (RequestRecordHandler handler : this.handlers) {
+            try {
+                handler.onRecord(record, endOfBatch);
+            } catch (RuntimeException e) {
+                LOG.error(String.format("Error handling record %s by handler %s", record, handler), e);
+            }
+        }
+    }
+}
@@ -28,9 +28,11 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.n52.iceland.exception.ows.OwsExceptionReport;
 import org.n52.iceland.service.CommunicationObjectWithSoapHeader;
 import org.n52.iceland.util.http.HTTPStatus;
 import org.n52.iceland.util.http.MediaType;
+import org.n52.iceland.util.io.SegmentedOutputStream;
 import org.n52.iceland.w3c.soap.SoapHeader;
 
 import com.google.common.collect.Lists;
@@ -70,7 +72,9 @@ public class ServiceResponse implements CommunicationObjectWithSoapHeader {
     private final List<SoapHeader> soapHeaderMap = Lists.newArrayList();
 
     /**
-     * constructor with content and response code
+     * constructor with content and response code. To avoid copying the
+     * content while it is encoded, use a
+     * {@link org.n52.iceland.util.io.SegmentedOutputStream} as buffer.
      *
      * @param baos
      *            Output stream of the service response
@@ -139,6 +143,7 @@ public class ServiceResponse implements CommunicationObjectWithSoapHeader {
      *            The stream the content of this response is written to
      *
      * @see #isContentLess()
+     * @see #write(OutputStream)
      */
     public void writeToOutputStream(OutputStream outputStream) {
         if (byteArrayOutputStream == null) {
@@ -153,6 +158,38 @@ public class ServiceResponse implements CommunicationObjectWithSoapHeader {
         } catch (IOException ioe) {
             LOGGER.error("doResponse", ioe);
         } finally {
+            release();
+        }
+    }
+
+    /**
+     * Writes the content of this response to the supplied stream. In contrast
+     * to {@link #writeToOutputStream(OutputStream)} errors are propagated to
+     * the caller, as they may occur after parts of a streamed response have
+     * already been written. A {@link SegmentedOutputStream} buffer is
+     * released afterwards, so the content can only be written once.
+     *
+     * @param outputStream the stream the content of this response is written
+     *                     to
+     *
+     * @throws IOException        if writing to the stream fails
+     * @throws OwsExceptionReport if the content can not be encoded
+     */
+    public void write(OutputStream outputStream) throws IOException, OwsExceptionReport {
+        if (byteArrayOutputStream != null) {
+            try {
+                byteArrayOutputStream.writeTo(outputStream);
+            } finally {
+                release();
+            }
+        }
+    }
+
+    private void release() {
+        if (byteArrayOutputStream instanceof SegmentedOutputStream) {
+            // returns pooled buffers to their pool
+            ((SegmentedOutputStream) byteArrayOutputStream).release();
+        } else {
             try {
                 byteArrayOutputStream.close();
             } catch (IOException ioe) {
@@ -161,6 +198,18 @@ public class ServiceResponse implements CommunicationObjectWithSoapHeader {
         }
     }
 
+    /**
+     * Check, if the content of this response is encoded while it is written
+     * and the content length is not known in advance.
+     *
+     * @return if this response is streamed
+     *
+     * @see StreamingServiceResponse
+     */
+    public boolean isStreaming() {
+        return false;
+    }
+
     /**
      * Check, if this response contains content to be written.
      *
@@ -175,10 +224,10 @@ public class ServiceResponse implements CommunicationObjectWithSoapHeader {
 
     /**
      * Get the content length of the byte stream
-     * @return content length
+     * @return content length or {@code -1} if it is not known
      */
     public int getContentLength() {
-        return byteArrayOutputStream == null ? -1 : byteArrayOutputStream.toByteArray().length;
+        return byteArrayOutputStream == null ? -1 : byteArrayOutputStream.size();
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+import org.n52.iceland.util.http.HTTPStatus;
+import org.n52.iceland.util.http.MediaType;
+
+/**
+ * {@link ServiceResponse} whose content is encoded directly into the output
+ * stream of the HTTP response instead of being buffered in memory. The
+ * content length is not known in advance, so the response is sent using
+ * chunked transfer encoding and the heap usage is independent of the size of
+ * the document. Small bodies should still use the buffering
+ * {@link ServiceResponse}, as it allows to send a {@code Content-Length}.
+ *
+ * @since 1.3.0
+ */
+public class StreamingServiceResponse extends ServiceResponse {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingServiceResponse.class);
+
+    private final StreamingContent content;
+
+    /**
+     * @param content     the content of the response
+     * @param contentType the content type
+     * @param status      the HTTP response code
+     */
+    public StreamingServiceResponse(StreamingContent content, MediaType contentType, HTTPStatus status) {
+        super(contentType, status);
+        this.content = Objects.requireNonNull(content);
+    }
+
+    /**
+     * @param content     the content of the response
+     * @param contentType the content type
+     */
+    public StreamingServiceResponse(StreamingContent content, MediaType contentType) {
+        this(content, contentType, null);
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException, OwsExceptionReport {
+        this.content.write(outputStream);
+    }
+
+    @Override
+    public void writeToOutputStream(OutputStream outputStream) {
+        try {
+            write(outputStream);
+        } catch (IOException | OwsExceptionReport e) {
+            LOGGER.error("doResponse", e);
+        }
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return true;
+    }
+
+    @Override
+    public boolean isContentLess() {
+        return false;
+    }
+
+    @Override
+    public int getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StreamingServiceResponse [content=%s, httpResponseCode=%s, contentType=%s, headerMap=%s]",
+                             content, getStatus(), getContentType(), getHeaderMap());
+    }
+
+    /**
+     * The content of a {@link StreamingServiceResponse}, e.g. a streaming
+     * encoder bound to the object to encode.
+     */
+    @FunctionalInterface
+    public interface StreamingContent {
+        /**
+         * Encodes the content into the supplied stream. Implementations
+         * should write in chunks and must not close the stream.
+         *
+         * @param out the stream
+         *
+         * @throws IOException        if writing fails
+         * @throws OwsExceptionReport if the content can not be encoded
+         */
+        void write(OutputStream out) throws IOException, OwsExceptionReport;
+    }
+}
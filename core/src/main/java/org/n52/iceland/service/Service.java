@@ -32,6 +32,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -42,6 +43,7 @@ import org.n52.iceland.event.ServiceEventBus;
 import org.n52.iceland.event.events.ExceptionEvent;
 import org.n52.iceland.event.events.IncomingRequestEvent;
 import org.n52.iceland.event.events.OutgoingResponseEvent;
+import org.n52.iceland.event.ring.RequestRecordRingBuffer;
 import org.n52.iceland.exception.HTTPException;
 import org.n52.iceland.util.http.HTTPHeaders;
 import org.n52.iceland.util.http.HTTPMethods;
@@ -71,15 +73,25 @@ public class Service extends HttpServlet {
 
     private static final AtomicLong counter = new AtomicLong(0);
 
+    private static final String KVP_CONTENT_TYPE = MediaTypes.APPLICATION_KVP.toString();
+
     @Inject
     private transient BindingRepository bindingRepository;
 
     @Inject
     private transient ServiceEventBus serviceEventBus;
 
+    @Autowired(required = false)
+    private transient RequestRecordRingBuffer requestRecords;
+
     private long logRequest(HttpServletRequest request) {
         long count = counter.incrementAndGet();
-        this.serviceEventBus.submit(new IncomingRequestEvent(request, count));
+        if (this.requestRecords != null) {
+            this.requestRecords.publishIncoming(request, count);
+        }
+        if (this.serviceEventBus.hasListeners(IncomingRequestEvent.class)) {
+            this.serviceEventBus.submit(new IncomingRequestEvent(request, count));
+        }
 
         if (LOGGER.isDebugEnabled()) {
             Enumeration<?> headerNames = request.getHeaderNames();
@@ -97,7 +109,12 @@ public class Service extends HttpServlet {
 
     private void logResponse(HttpServletRequest request, HttpServletResponse response, long count, Stopwatch stopwatch) {
         long elapsed = stopwatch.stop().elapsed(TimeUnit.MILLISECONDS);
-        this.serviceEventBus.submit(new OutgoingResponseEvent(request, response, count, elapsed));
+        if (this.requestRecords != null) {
+            this.requestRecords.publishOutgoing(request, response, count, elapsed);
+        }
+        if (this.serviceEventBus.hasListeners(OutgoingResponseEvent.class)) {
+            this.serviceEventBus.submit(new OutgoingResponseEvent(request, response, count, elapsed));
+        }
         LOGGER.debug("Outgoing response for request No. {} is committed = {} (took {} ms)", count, response.isCommitted(), elapsed);
     }
 
@@ -228,11 +245,15 @@ public class Service extends HttpServlet {
     private Binding getBinding(HttpServletRequest request) throws HTTPException {
         final String requestURI = request.getPathInfo();
         if (requestURI == null || requestURI.isEmpty() || requestURI.equals("/")) {
-            MediaType contentType = getContentType(request);
-            // strip of the parameters to get rid of things like encoding
-            Binding binding = this.bindingRepository.getBinding(contentType.withoutParameters());
+            String contentType = getContentType(request);
+            Binding binding;
+            try {
+                binding = this.bindingRepository.getBindingForContentType(contentType);
+            } catch (IllegalArgumentException e) {
+                throw new HTTPException(HTTPStatus.BAD_REQUEST, e);
+            }
             if (binding == null) {
-                if (contentType.equals(MediaTypes.APPLICATION_KVP)) {
+                if (MediaType.parse(contentType).equals(MediaTypes.APPLICATION_KVP)) {
                     throw new HTTPException(HTTPStatus.METHOD_NOT_ALLOWED);
                 } else {
                     throw new HTTPException(HTTPStatus.UNSUPPORTED_MEDIA_TYPE);
@@ -242,29 +263,24 @@ public class Service extends HttpServlet {
             }
         }
 
-        for (String prefix : this.bindingRepository.getAllBindingsByPath().keySet()) {
-            if (requestURI.startsWith(prefix)) {
-                return this.bindingRepository.getBinding(prefix);
-            }
+        Binding binding = this.bindingRepository.getBindingForPath(requestURI);
+        if (binding == null) {
+            throw new HTTPException(HTTPStatus.NOT_FOUND);
         }
-        throw new HTTPException(HTTPStatus.NOT_FOUND);
+        return binding;
     }
 
-    private MediaType getContentType(HttpServletRequest request)
+    private String getContentType(HttpServletRequest request)
             throws HTTPException {
         if (request.getContentType() == null) {
             // default to KVP for GET requests
             if (request.getMethod().equals(HTTPMethods.GET)) {
-                return MediaTypes.APPLICATION_KVP;
+                return KVP_CONTENT_TYPE;
             } else {
                 throw new HTTPException(HTTPStatus.BAD_REQUEST);
             }
         } else {
-            try {
-                return MediaType.parse(request.getContentType());
-            } catch (IllegalArgumentException e) {
-                throw new HTTPException(HTTPStatus.BAD_REQUEST, e);
-            }
+            return request.getContentType();
         }
     }
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+
+/**
+ * Creates the threads and executors of iceland's background work, e.g.
+ * asynchronous event listeners or cache persistence, so that all of them can
+ * be switched between platform thread pools and virtual threads at once.
+ * <p>
+ * The {@link ExecutionMode} defaults to the value of the system property
+ * {@value #MODE_PROPERTY} or {@link ExecutionMode#PLATFORM}. Components
+ * create their executors on construction or first use, so the mode should
+ * be set before the application context is started. Virtual threads are
+ * accessed reflectively as this code is compiled for Java 8; on runtimes
+ * without them the platform mode is used.
+ *
+ * @since 1.3.0
+ */
+public final class BackgroundExecutors {
+    public static final String MODE_PROPERTY = "org.n52.iceland.executionMode";
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundExecutors.class);
+    private static volatile ExecutionMode mode = initialMode();
+
+    private BackgroundExecutors() {
+    }
+
+    public static ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the mode for executors and threads created afterwards.
+     *
+     * @param mode the mode
+     */
+    public static void setMode(ExecutionMode mode) {
+        if (mode == ExecutionMode.VIRTUAL && !isVirtualThreadsSupported()) {
+            LOG.warn("Virtual threads are not supported by this Java runtime, using platform threads");
+            BackgroundExecutors.mode = ExecutionMode.PLATFORM;
+        } else {
+            BackgroundExecutors.mode = Validation.notNull("Execution mode", mode);
+        }
+    }
+
+    /**
+     * @return if the Java runtime supports virtual threads
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return VirtualThreads.SUPPORTED;
+    }
+
+    /**
+     * Creates a factory for dedicated threads, e.g. the consumer of a queue.
+     *
+     * @param name the name prefix of the threads
+     *
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(String name) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return VirtualThreads.factory(name);
+        }
+        return new GroupedAndNamedThreadFactory(name);
+    }
+
+    /**
+     * Creates an executor for blocking tasks. In platform mode this is a
+     * fixed pool of {@code threads} threads, in virtual mode every task gets
+     * a new virtual thread.
+     *
+     * @param name    the name prefix of the threads
+     * @param threads the number of platform threads
+     *
+     * @return the executor
+     */
+    public static ExecutorService newExecutor(String name, int threads) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return VirtualThreads.executor(VirtualThreads.factory(name));
+        }
+        return Executors.newFixedThreadPool(threads, new GroupedAndNamedThreadFactory(name));
+    }
+
+    private static ExecutionMode initialMode() {
+        String property = Strings.emptyToNull(System.getProperty(MODE_PROPERTY));
+        if (property == null) {
+            return ExecutionMode.PLATFORM;
+        }
+        try {
+            ExecutionMode configured = ExecutionMode.valueOf(property.trim().toUpperCase(Locale.ROOT));
+            if (configured == ExecutionMode.VIRTUAL && !isVirtualThreadsSupported()) {
+                LOG.warn("Virtual threads are not supported by this Java runtime, using platform threads");
+                return ExecutionMode.PLATFORM;
+            }
+            return configured;
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid value for {}: {}", MODE_PROPERTY, property);
+            return ExecutionMode.PLATFORM;
+        }
+    }
+
+    /**
+     * The reflective access to {@code Thread.ofVirtual()} and
+     * {@code Executors.newThreadPerTaskExecutor(ThreadFactory)}.
+     */
+    private static final class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method FACTORY;
+        private static final Method THREAD_PER_TASK_EXECUTOR;
+        private static final boolean SUPPORTED;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method factory = null;
+            Method executor = null;
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class, long.class);
+                factory = builder.getMethod("factory");
+                executor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                // fails on runtimes with virtual threads as a preview feature
+                ofVirtual.invoke(null);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            FACTORY = factory;
+            THREAD_PER_TASK_EXECUTOR = executor;
+            SUPPORTED = ofVirtual != null;
+        }
+
+        private VirtualThreads() {
+        }
+
+        static ThreadFactory factory(String name) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 0L);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Could not create virtual thread factory", e);
+            }
+        }
+
+        static ExecutorService executor(ThreadFactory factory) {
+            try {
+                return (ExecutorService) THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Could not create virtual thread executor", e);
+            }
+        }
+    }
+}
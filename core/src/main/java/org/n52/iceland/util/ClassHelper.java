@@ -17,12 +17,16 @@
 package org.n52.iceland.util;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 /**
  * @author <a href="mailto:c.autermann@52north.org">Christian Autermann</a>
@@ -33,6 +37,17 @@ public final class ClassHelper {
 
     private static final Logger LOG = LoggerFactory.getLogger(ClassHelper.class);
 
+    /**
+     * Hierarchy distances of a class to its super classes and interfaces (or
+     * -1 for unrelated classes). Both levels hold their classes weakly and the
+     * tables are only referenced from this class, so neither classes of
+     * other class loaders nor JDK classes keep a class loader alive.
+     */
+    private static final LoadingCache<Class<?>, Map<Class<?>, Integer>> SIMILARITIES
+            = CacheBuilder.newBuilder().weakKeys()
+                    .build(CacheLoader.from(type -> CacheBuilder.newBuilder().weakKeys()
+                            .<Class<?>, Integer>build().asMap()));
+
     private ClassHelper() {
     }
 
@@ -45,6 +60,16 @@ public final class ClassHelper {
      *         more similiar
      */
     public static int getSimiliarity(Class<?> superClass, Class<?> clazz) {
+        Map<Class<?>, Integer> similarities = SIMILARITIES.getUnchecked(clazz);
+        Integer similarity = similarities.get(superClass);
+        if (similarity == null) {
+            similarity = computeSimiliarity(superClass, clazz);
+            similarities.put(superClass, similarity);
+        }
+        return similarity;
+    }
+
+    private static int computeSimiliarity(Class<?> superClass, Class<?> clazz) {
         if (clazz.isArray()) {
             if (!superClass.isArray()) {
                 return -1;
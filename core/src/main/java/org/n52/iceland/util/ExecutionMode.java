@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util;
+
+/**
+ * The kind of threads background work is executed on.
+ *
+ * @see BackgroundExecutors
+ * @since 1.3.0
+ */
+public enum ExecutionMode {
+    /**
+     * Bounded pools of platform threads.
+     */
+    PLATFORM,
+    /**
+     * A new virtual thread per task. Requires a Java runtime with virtual
+     * threads, otherwise {@link #PLATFORM} is used.
+     */
+    VIRTUAL
+}
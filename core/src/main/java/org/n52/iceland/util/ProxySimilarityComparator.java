@@ -19,6 +19,8 @@ package org.n52.iceland.util;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * TODO JavaDoc
@@ -34,6 +36,7 @@ import java.util.Comparator;
  */
 public abstract class ProxySimilarityComparator<T, K extends Similar<K>> implements Comparator<T> {
     private final SimilarityComparator<K> comp;
+    private final Map<T, K> mostSimilar = new ConcurrentHashMap<>();
 
     public ProxySimilarityComparator(K ref) {
         this.comp = new SimilarityComparator<>(ref);
@@ -41,8 +44,7 @@ public abstract class ProxySimilarityComparator<T, K extends Similar<K>> impleme
 
     @Override
     public int compare(T o1, T o2) {
-        int compResult = comp.compare(Collections.min(getSimilars(o1), comp),
-                                      Collections.min(getSimilars(o2), comp));
+        int compResult = comp.compare(getMostSimilar(o1), getMostSimilar(o2));
         // check inheritance hierarchy if key matches are equal and classes are not
         if (compResult == 0 && !o1.getClass().equals(o2.getClass())) {
             if (o1.getClass().isAssignableFrom(o2.getClass())) {
@@ -54,5 +56,14 @@ public abstract class ProxySimilarityComparator<T, K extends Similar<K>> impleme
         return compResult;
     }
 
+    /**
+     * Gets the similar of {@code t} that is most similar to the reference.
+     * The result is computed once per compared object, as sorting compares
+     * every object multiple times.
+     */
+    private K getMostSimilar(T t) {
+        return this.mostSimilar.computeIfAbsent(t, x -> Collections.min(getSimilars(x), comp));
+    }
+
     protected abstract Collection<K> getSimilars(T t);
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.n52.iceland.w3c.W3CConstants;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+
+/**
+ * Reads the root element of a XML document without parsing the remaining
+ * document. The underlying StAX parser stops at the first start element, so
+ * the costs are independent of the document size. Like a non namespace aware
+ * DOM, only the namespace declarations of the root element itself are taken
+ * into account to resolve the namespace of the root element.
+ *
+ * @since 1.3.0
+ */
+public final class XmlRootElementSniffer {
+
+    /**
+     * {@link XMLInputFactory} implementations are not guaranteed to be thread
+     * safe, so every thread gets its own preconfigured instance.
+     */
+    private static final ThreadLocal<XMLInputFactory> FACTORY
+            = ThreadLocal.withInitial(XmlRootElementSniffer::createInputFactory);
+
+    private XmlRootElementSniffer() {
+    }
+
+    /**
+     * Reads the root element from the supplied reader. The reader is not
+     * closed.
+     *
+     * @param reader the reader
+     *
+     * @return the root element
+     *
+     * @throws XMLStreamException if the document is not well-formed up to the
+     *                            root element or does not contain an element
+     */
+    public static RootElement sniff(Reader reader) throws XMLStreamException {
+        return sniff(FACTORY.get().createXMLStreamReader(reader));
+    }
+
+    /**
+     * Reads the root element from the supplied stream. The stream is not
+     * closed.
+     *
+     * @param in       the stream
+     * @param encoding the encoding of the stream or {@code null} to use the
+     *                 encoding declared in the document
+     *
+     * @return the root element
+     *
+     * @throws XMLStreamException if the document is not well-formed up to the
+     *                            root element or does not contain an element
+     */
+    public static RootElement sniff(InputStream in, String encoding) throws XMLStreamException {
+        XMLInputFactory factory = FACTORY.get();
+        if (Strings.isNullOrEmpty(encoding)) {
+            return sniff(factory.createXMLStreamReader(in));
+        } else {
+            return sniff(factory.createXMLStreamReader(in, encoding));
+        }
+    }
+
+    private static RootElement sniff(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return new RootElement(reader);
+                }
+            }
+            throw new XMLStreamException("Document does not contain a root element");
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // namespaces are resolved from the root element's declarations only,
+        // so that undeclared prefixes do not fail the sniffing
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * The name and the unqualified attributes of a XML root element.
+     */
+    public static class RootElement {
+        private final String namespace;
+        private final String localName;
+        private final String prefix;
+        private final Map<String, String> attributes;
+
+        RootElement(XMLStreamReader reader) {
+            String[] name = splitName(reader.getPrefix(), reader.getLocalName());
+            this.prefix = name[0];
+            this.localName = name[1];
+            Map<String, String> namespaces = new HashMap<>(4);
+            for (int i = 0; i < reader.getNamespaceCount(); ++i) {
+                namespaces.put(Strings.nullToEmpty(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i));
+            }
+            int count = reader.getAttributeCount();
+            this.attributes = count == 0 ? Collections.emptyMap() : new HashMap<>(count);
+            for (int i = 0; i < count; ++i) {
+                String[] attributeName = splitName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+                if (attributeName[0] == null) {
+                    if (W3CConstants.AN_XMLNS.equals(attributeName[1])) {
+                        namespaces.put("", reader.getAttributeValue(i));
+                    } else {
+                        this.attributes.put(attributeName[1], reader.getAttributeValue(i));
+                    }
+                } else if (W3CConstants.AN_XMLNS.equals(attributeName[0])) {
+                    namespaces.put(attributeName[1], reader.getAttributeValue(i));
+                }
+            }
+            String uri = reader.getNamespaceURI();
+            if (Strings.isNullOrEmpty(uri)) {
+                uri = namespaces.get(Strings.nullToEmpty(this.prefix));
+            }
+            this.namespace = Strings.nullToEmpty(uri);
+        }
+
+        /**
+         * Splits a name into prefix and local part. The reader is not
+         * namespace aware, so depending on the implementation the prefix may
+         * still be part of the local name.
+         */
+        private static String[] splitName(String prefix, String localName) {
+            int idx = localName.indexOf(':');
+            if (idx >= 0) {
+                return new String[] { localName.substring(0, idx), localName.substring(idx + 1) };
+            }
+            return new String[] { Strings.emptyToNull(prefix), localName };
+        }
+
+        /**
+         * @return the namespace of the element or an empty string if the
+         *         element is not qualified
+         */
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getLocalName() {
+            return localName;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public boolean hasAttribute(String name) {
+            return this.attributes.containsKey(name);
+        }
+
+        /**
+         * @param name the name of the unqualified attribute
+         *
+         * @return the value or {@code null} if the attribute is not present
+         */
+        public String getAttribute(String name) {
+            return this.attributes.get(name);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("namespace", getNamespace())
+                    .add("localName", getLocalName())
+                    .add("attributes", this.attributes)
+                    .toString();
+        }
+    }
+}
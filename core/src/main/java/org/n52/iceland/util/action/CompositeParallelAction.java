@@ -18,13 +18,11 @@ package org.n52.iceland.util.action;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import org.n52.iceland.util.GroupedAndNamedThreadFactory;
+import org.n52.iceland.util.BackgroundExecutors;
 
 
 /**
@@ -36,8 +34,8 @@ import org.n52.iceland.util.GroupedAndNamedThreadFactory;
 public abstract class CompositeParallelAction<A extends ThreadableAction> extends CompositeAction<A> {
     private static final Logger LOGGER = LoggerFactory.getLogger(CompositeParallelAction.class);
 
-    private final ThreadFactory threadFactory;
     private final ExecutorService executor;
+    private final boolean ownExecutor;
     private final String threadGroupName;
     private CountDownLatch countDownLatch;
 
@@ -45,8 +43,25 @@ public abstract class CompositeParallelAction<A extends ThreadableAction> extend
     public CompositeParallelAction(int threads, String threadGroupName, A... actions) {
         super(actions);
         this.threadGroupName = threadGroupName;
-        this.threadFactory = new GroupedAndNamedThreadFactory(threadGroupName);
-        this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+        this.executor = BackgroundExecutors.newExecutor(threadGroupName, threads);
+        this.ownExecutor = true;
+    }
+
+    /**
+     * Creates a action that runs the actions on a shared executor. The
+     * executor is not shut down after the execution.
+     *
+     * @param executor the executor
+     * @param name     the name used for logging
+     * @param actions  the actions
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    public CompositeParallelAction(ExecutorService executor, String name, A... actions) {
+        super(actions);
+        this.threadGroupName = name;
+        this.executor = executor;
+        this.ownExecutor = false;
     }
 
     @Override
@@ -64,7 +79,9 @@ public abstract class CompositeParallelAction<A extends ThreadableAction> extend
             long latchSize = this.countDownLatch.getCount();
 
             //execute actions in parallel
-            executor.shutdown(); // <-- will finish all submitted tasks
+            if (ownExecutor) {
+                executor.shutdown(); // <-- will finish all submitted tasks
+            }
             // wait for all threads to finish
             try {
                 LOGGER.debug("{}: waiting for {} threads to finish", threadGroupName, latchSize);
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.collections;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Immutable trie that maps string prefixes to values. The longest prefix of a
+ * string is found in time proportional to the length of the string,
+ * independent of the number of prefixes.
+ *
+ * @param <V> the value type
+ *
+ * @since 1.3.0
+ */
+public final class PrefixTree<V> {
+    private static final PrefixTree<Object> EMPTY = new PrefixTree<>(new MutableNode<>().freeze());
+
+    private final Node<V> root;
+
+    private PrefixTree(Node<V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the value that is associated with the longest prefix of the
+     * supplied string.
+     *
+     * @param string the string
+     *
+     * @return the value or {@code null} if no prefix of {@code string} is
+     *         contained in this tree
+     */
+    public V getLongestPrefixMatch(String string) {
+        Node<V> node = this.root;
+        V match = node.value;
+        for (int i = 0; i < string.length(); ++i) {
+            node = node.getChild(string.charAt(i));
+            if (node == null) {
+                break;
+            } else if (node.value != null) {
+                match = node.value;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * @param string the prefix
+     *
+     * @return the value associated with exactly this prefix or {@code null}
+     */
+    public V get(String string) {
+        Node<V> node = this.root;
+        for (int i = 0; node != null && i < string.length(); ++i) {
+            node = node.getChild(string.charAt(i));
+        }
+        return node == null ? null : node.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PrefixTree<V> empty() {
+        return (PrefixTree<V>) EMPTY;
+    }
+
+    public static <V> PrefixTree<V> of(Map<String, ? extends V> prefixes) {
+        Builder<V> builder = builder();
+        prefixes.forEach(builder::put);
+        return builder.build();
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    private static final class Node<V> {
+        private final char[] keys;
+        private final Node<V>[] children;
+        private final V value;
+
+        Node(char[] keys, Node<V>[] children, V value) {
+            this.keys = keys;
+            this.children = children;
+            this.value = value;
+        }
+
+        Node<V> getChild(char c) {
+            int idx = Arrays.binarySearch(this.keys, c);
+            return idx < 0 ? null : this.children[idx];
+        }
+    }
+
+    public static final class Builder<V> {
+        private final MutableNode<V> root = new MutableNode<>();
+
+        private Builder() {
+        }
+
+        public Builder<V> put(String prefix, V value) {
+            Objects.requireNonNull(prefix);
+            Objects.requireNonNull(value);
+            MutableNode<V> node = this.root;
+            for (int i = 0; i < prefix.length(); ++i) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new MutableNode<>());
+            }
+            node.value = value;
+            return this;
+        }
+
+        public PrefixTree<V> build() {
+            return new PrefixTree<>(this.root.freeze());
+        }
+    }
+
+    private static final class MutableNode<V> {
+        private final TreeMap<Character, MutableNode<V>> children = new TreeMap<>();
+        private V value;
+
+        Node<V> freeze() {
+            char[] keys = new char[this.children.size()];
+            // generic arrays can not be created; the array only ever holds
+            // Node<V> instances and never escapes the node
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Node<V>[] nodes = new Node[this.children.size()];
+            int i = 0;
+            for (Entry<Character, MutableNode<V>> child : this.children.entrySet()) {
+                keys[i] = child.getKey();
+                nodes[i] = child.getValue().freeze();
+                ++i;
+            }
+            return new Node<>(keys, nodes, this.value);
+        }
+    }
+}
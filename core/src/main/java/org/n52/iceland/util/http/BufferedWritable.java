@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.n52.iceland.coding.encode.ResponseProxy;
+import org.n52.iceland.util.http.compression.ContentCodec;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.hash.Hashing;
+
+/**
+ * {@link HttpUtils.Writable} of an already encoded response. The compressed
+ * variants of the content are created on first use and kept, so the content
+ * can be written to any number of responses without encoding or compressing
+ * it again. The status and headers of the encoded response are kept as well,
+ * so they can be replayed on every response.
+ *
+ * @since 1.3.0
+ * @see HttpUtils#buffer(Object, MediaType)
+ */
+public class BufferedWritable implements HttpUtils.Writable {
+    private final byte[] content;
+    private final MediaType contentType;
+    private final boolean supportsGZip;
+    private final HTTPStatus status;
+    private final ListMultimap<String, String> headers;
+    private final ConcurrentMap<String, byte[]> compressed = new ConcurrentHashMap<>(2);
+    private volatile String etag;
+
+    public BufferedWritable(byte[] content, MediaType contentType, boolean supportsGZip) {
+        this(content, contentType, supportsGZip, null, ImmutableListMultimap.of());
+    }
+
+    /**
+     * @param content      the encoded content
+     * @param contentType  the content type
+     * @param supportsGZip if the content may be compressed
+     * @param status       the status of the response, may be {@code null}
+     * @param headers      the headers of the response
+     */
+    public BufferedWritable(byte[] content, MediaType contentType, boolean supportsGZip, HTTPStatus status,
+                            ListMultimap<String, String> headers) {
+        this.content = content;
+        this.contentType = contentType;
+        this.supportsGZip = supportsGZip;
+        this.status = status;
+        this.headers = ImmutableListMultimap.copyOf(headers);
+    }
+
+    /**
+     * @return the status of the response or {@code null} if the status was
+     *         not set
+     */
+    public HTTPStatus getStatus() {
+        return this.status;
+    }
+
+    /**
+     * @return the headers of the response, excluding the content length
+     */
+    public ListMultimap<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    @Override
+    public void write(OutputStream out, ResponseProxy responseProxy) throws IOException {
+        out.write(this.content);
+    }
+
+    @Override
+    public boolean supportsGZip() {
+        return this.supportsGZip;
+    }
+
+    @Override
+    public MediaType getEncodedContentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public int getContentLength() {
+        return this.content.length;
+    }
+
+    /**
+     * @return a strong entity tag derived from the content
+     */
+    public String getETag() {
+        String tag = this.etag;
+        if (tag == null) {
+            tag = '"' + Hashing.murmur3_128().hashBytes(this.content).toString() + '"';
+            this.etag = tag;
+        }
+        return tag;
+    }
+
+    @Override
+    public byte[] getCompressed(ContentCodec codec) throws IOException {
+        byte[] bytes = this.compressed.get(codec.getEncoding());
+        if (bytes == null) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(this.content.length / 4);
+            try (OutputStream out = codec.encode(buffer)) {
+                out.write(this.content);
+            }
+            bytes = buffer.toByteArray();
+            byte[] previous = this.compressed.putIfAbsent(codec.getEncoding(), bytes);
+            if (previous != null) {
+                bytes = previous;
+            }
+        }
+        return bytes;
+    }
+}
@@ -27,4 +27,8 @@ package org.n52.iceland.util.http;
  */
 public interface HTTPConstants {
     String GZIP_ENCODING = "gzip";
+
+    String DEFLATE_ENCODING = "deflate";
+
+    String IDENTITY_ENCODING = "identity";
 }
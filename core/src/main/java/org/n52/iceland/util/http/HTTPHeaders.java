@@ -45,4 +45,16 @@ public interface HTTPHeaders {
     String ACCESS_CONTROL_ALLOW_HEADERS = "Access-Control-Allow-Headers";
 
     String X_FORWARDED_FOR = "X-Forwarded-For";
+
+    String VARY = "Vary";
+
+    String CONTENT_LENGTH = "Content-Length";
+
+    String ETAG = "ETag";
+
+    String LAST_MODIFIED = "Last-Modified";
+
+    String IF_NONE_MATCH = "If-None-Match";
+
+    String IF_MODIFIED_SINCE = "If-Modified-Since";
 }
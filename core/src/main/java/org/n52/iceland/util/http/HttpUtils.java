@@ -20,11 +20,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -32,6 +35,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import org.n52.iceland.binding.OwsExceptionReportHandler;
 import org.n52.iceland.coding.encode.ResponseProxy;
@@ -46,7 +50,19 @@ import org.n52.iceland.exception.ows.OwsExceptionReport;
 import org.n52.iceland.request.ResponseFormat;
 import org.n52.iceland.response.ServiceResponse;
 import org.n52.iceland.service.MiscSettings;
-
+import org.n52.iceland.util.io.SegmentedOutputStream;
+import org.n52.iceland.util.http.compression.ContentCodec;
+import org.n52.iceland.util.http.compression.ContentCodecRegistry;
+import org.n52.iceland.util.http.compression.DeflaterContentCodec;
+import org.n52.iceland.util.http.compression.DiscardableStream;
+import org.n52.iceland.util.http.compression.ThresholdCompressingOutputStream;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Ordering;
 import com.google.common.io.CountingOutputStream;
 
 /**
@@ -61,10 +77,34 @@ public class HttpUtils {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpUtils.class);
 
+    /**
+     * Clients tend to send the same few {@code Accept} headers, so the parsed
+     * values are cached.
+     */
+    private static final Cache<String, List<MediaType>> ACCEPT_HEADER_CACHE
+            = CacheBuilder.newBuilder().maximumSize(256).build();
+
+    /**
+     * Bodies smaller than this are not worth the overhead of compression.
+     */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
     private Boolean isCountingOutputStream = false;
 
     private ServiceEventBus eventBus;
 
+    private final ContentCodecRegistry contentCodecs = new ContentCodecRegistry();
+
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private int compressionBufferSize = DeflaterContentCodec.DEFAULT_BUFFER_SIZE;
+
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+
+    public HttpUtils() {
+        registerDeflaterCodecs();
+    }
+
     public ServiceEventBus getEventBus() {
         return eventBus;
     }
@@ -83,6 +123,78 @@ public class HttpUtils {
         this.isCountingOutputStream = isCountingOutputStream;
     }
 
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @param compressionLevel the level of the {@code gzip} and
+     *                         {@code deflate} codecs (-1 to 9)
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        registerDeflaterCodecs();
+    }
+
+    public int getCompressionBufferSize() {
+        return compressionBufferSize;
+    }
+
+    /**
+     * @param compressionBufferSize the output buffer size of the {@code gzip}
+     *                              and {@code deflate} codecs
+     */
+    public void setCompressionBufferSize(int compressionBufferSize) {
+        this.compressionBufferSize = compressionBufferSize;
+        registerDeflaterCodecs();
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * @param compressionThreshold the minimum size of a body to be compressed
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public ContentCodecRegistry getContentCodecs() {
+        return contentCodecs;
+    }
+
+    /**
+     * Registers additional codecs. These are preferred over the built-in
+     * {@code gzip} and {@code deflate} codecs if the client accepts them
+     * with the same quality, and replace them if they are registered for
+     * the same encoding.
+     *
+     * @param codecs the codecs
+     */
+    @Autowired(required = false)
+    public void setContentCodecs(Collection<ContentCodec> codecs) {
+        // register in reverse, so the first codec ends up most preferred
+        ImmutableList.copyOf(codecs).reverse().forEach(this.contentCodecs::registerPreferred);
+    }
+
+    private void registerDeflaterCodecs() {
+        registerDeflaterCodec(DeflaterContentCodec.gzip(compressionLevel, compressionBufferSize));
+        registerDeflaterCodec(DeflaterContentCodec.deflate(compressionLevel, compressionBufferSize));
+    }
+
+    private void registerDeflaterCodec(DeflaterContentCodec codec) {
+        Optional<ContentCodec> previous = this.contentCodecs.getCodec(codec.getEncoding());
+        if (previous.isPresent() && !(previous.get() instanceof DeflaterContentCodec)) {
+            // do not replace a codec that was registered explicitly
+            return;
+        }
+        this.contentCodecs.register(codec);
+        // responses that are still compressing keep their deflaters until
+        // they are done
+        previous.ifPresent(c -> ((DeflaterContentCodec) c).destroy());
+    }
+
     public static boolean supportsGzipEncoding(HttpServletRequest req) {
         return checkHeader(req, HTTPHeaders.ACCEPT_ENCODING, HTTPConstants.GZIP_ENCODING);
     }
@@ -107,29 +219,149 @@ public class HttpUtils {
         return false;
     }
 
+    /**
+     * Gets the media types of the {@code Accept} header of the request,
+     * ordered by descending quality. Media types with the same quality keep
+     * the order of the header. The parsed result of a header value is cached,
+     * so the returned list is immutable.
+     *
+     * @param req the request
+     *
+     * @return the media types, or a list containing only the wild card if the
+     *         request has no {@code Accept} header
+     *
+     * @throws HTTPException if the header can not be parsed
+     */
     public static List<MediaType> getAcceptHeader(HttpServletRequest req) throws HTTPException {
         String header = req.getHeader(HTTPHeaders.ACCEPT);
         if (header == null || header.isEmpty()) {
             return Collections.singletonList(MediaTypes.WILD_CARD);
         }
-        String[] values = header.split(",");
-        ArrayList<MediaType> mediaTypes = new ArrayList<>(values.length);
-        for (int i = 0; i < values.length; ++i) {
+        List<MediaType> mediaTypes = ACCEPT_HEADER_CACHE.getIfPresent(header);
+        if (mediaTypes == null) {
             try {
-                // Fix for invalid HTTP-Accept header send by OGC OWS-Cite tests
-                if (!" *; q=.2".equals(values[i]) && !"*; q=.2".equals(values[i]) && !" *; q=0.2".equals(values[i])
-                        && !"*; q=0.2".equals(values[i])) {
-                    mediaTypes.add(MediaType.parse(values[i]));
-                } else {
-                    LOGGER.warn("The HTTP-Accept header contains an invalid value: {}", values[i]);
-                }
+                mediaTypes = parseAcceptHeader(header);
             } catch (IllegalArgumentException e) {
                 throw new HTTPException(HTTPStatus.BAD_REQUEST, e);
             }
+            ACCEPT_HEADER_CACHE.put(header, mediaTypes);
         }
         return mediaTypes;
     }
 
+    private static List<MediaType> parseAcceptHeader(String header) {
+        String[] values = header.split(",");
+        List<MediaType> mediaTypes = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; ++i) {
+            // Fix for invalid HTTP-Accept header send by OGC OWS-Cite tests
+            if (!" *; q=.2".equals(values[i]) && !"*; q=.2".equals(values[i]) && !" *; q=0.2".equals(values[i])
+                    && !"*; q=0.2".equals(values[i])) {
+                mediaTypes.add(MediaType.parse(values[i]));
+            } else {
+                LOGGER.warn("The HTTP-Accept header contains an invalid value: {}", values[i]);
+            }
+        }
+        // stable sort, so media types of the same quality keep their order
+        return ImmutableList.copyOf(Ordering.<Float>natural().reverse()
+                .onResultOf(MediaType::getQuality).sortedCopy(mediaTypes));
+    }
+
+    /**
+     * Evaluates the {@code If-None-Match} and {@code If-Modified-Since}
+     * headers of a {@code GET} or {@code HEAD} request. Entity tags are
+     * compared weakly and variants of {@code etag} for compressed
+     * representations match as well.
+     *
+     * @param req          the request
+     * @param etag         the current entity tag of the resource
+     * @param lastModified the modification time of the resource in
+     *                     milliseconds, or {@code -1} if unknown
+     *
+     * @return if the client's representation is still valid
+     */
+    public static boolean isNotModified(HttpServletRequest req, String etag, long lastModified) {
+        String method = req.getMethod();
+        if (!HTTPMethods.GET.equalsIgnoreCase(method) && !HTTPMethods.HEAD.equalsIgnoreCase(method)) {
+            return false;
+        }
+        Enumeration<String> ifNoneMatch = req.getHeaders(HTTPHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && ifNoneMatch.hasMoreElements()) {
+            while (ifNoneMatch.hasMoreElements()) {
+                for (String tag : ifNoneMatch.nextElement().split(",")) {
+                    if (matchesETag(tag.trim(), etag)) {
+                        return true;
+                    }
+                }
+            }
+            // If-Modified-Since is ignored if If-None-Match is present
+            return false;
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader(HTTPHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates have a resolution of seconds
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean matchesETag(String tag, String etag) {
+        if ("*".equals(tag)) {
+            return true;
+        }
+        String opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+        if (opaque.equals(etag)) {
+            return true;
+        }
+        // variants for content codings are tagged as "<etag>-<coding>"
+        String prefix = etag.substring(0, etag.length() - 1) + '-';
+        return opaque.startsWith(prefix) && opaque.endsWith("\"");
+    }
+
+    /**
+     * Answers a conditional request with {@code 304 Not Modified}.
+     *
+     * @param response     the response
+     * @param etag         the entity tag of the resource
+     * @param lastModified the modification time of the resource in
+     *                     milliseconds, or {@code -1} if unknown
+     */
+    public static void writeNotModified(HttpServletResponse response, String etag, long lastModified) {
+        response.setStatus(HTTPStatus.NOT_MODIFIED.getCode());
+        setValidators(response, etag, lastModified);
+    }
+
+    /**
+     * Sets the {@code ETag} and {@code Last-Modified} headers. If the
+     * response is compressed by
+     * {@link #writeObject(HttpServletRequest, HttpServletResponse, MediaType, Writable, OwsExceptionReportHandler)},
+     * the entity tag is suffixed with the content coding, as the compressed
+     * representation is not byte-equal.
+     *
+     * @param response     the response
+     * @param etag         the strong entity tag of the resource
+     * @param lastModified the modification time of the resource in
+     *                     milliseconds, or {@code -1} if unknown
+     */
+    public static void setValidators(HttpServletResponse response, String etag, long lastModified) {
+        response.setHeader(HTTPHeaders.ETAG, etag);
+        if (lastModified >= 0) {
+            response.setDateHeader(HTTPHeaders.LAST_MODIFIED, lastModified);
+        }
+    }
+
+    private static void setContentEncoding(HttpServletResponse response, String encoding) {
+        response.setHeader(HTTPHeaders.CONTENT_ENCODING, encoding);
+        String etag = response.getHeader(HTTPHeaders.ETAG);
+        if (etag != null && etag.endsWith("\"")) {
+            response.setHeader(HTTPHeaders.ETAG, etag.substring(0, etag.length() - 1) + '-' + encoding + '"');
+        }
+    }
+
     public static InputStream getInputStream(HttpServletRequest req) throws IOException {
         if (isGzipEncoded(req)) {
             return new GZIPInputStream(req.getInputStream());
@@ -140,6 +372,10 @@ public class HttpUtils {
 
     public void writeObject(HttpServletRequest request, HttpServletResponse response, MediaType contentType,
             Object object, OwsExceptionReportHandler owserHandler) throws IOException, HTTPException {
+        if (object instanceof ServiceResponse) {
+            writeObject(request, response, (ServiceResponse) object, owserHandler);
+            return;
+        }
         writeObject(request, response, contentType, new GenericWritable(object, contentType), owserHandler);
     }
 
@@ -157,13 +393,40 @@ public class HttpUtils {
     public void writeObject(HttpServletRequest request, HttpServletResponse response, MediaType contentType,
             Writable writable, OwsExceptionReportHandler owserHandler) throws IOException, HTTPException {
         OutputStream out = null;
+        OutputStream encoding = null;
+        boolean aborted = false;
         response.setContentType(writable.getEncodedContentType().toString());
 
         try {
             out = response.getOutputStream();
-            if (supportsGzipEncoding(request) && writable.supportsGZip()) {
-                out = new GZIPOutputStream(out);
-                response.setHeader(HTTPHeaders.CONTENT_ENCODING, HTTPConstants.GZIP_ENCODING);
+            int contentLength = writable.getContentLength();
+            Optional<ContentCodec> codec = Optional.empty();
+            if (writable.supportsGZip()) {
+                response.addHeader(HTTPHeaders.VARY, HTTPHeaders.ACCEPT_ENCODING);
+                if (contentLength < 0 || contentLength >= compressionThreshold) {
+                    codec = contentCodecs.negotiate(request.getHeaders(HTTPHeaders.ACCEPT_ENCODING));
+                }
+            }
+            byte[] compressed = codec.isPresent() ? writable.getCompressed(codec.get()) : null;
+            if (compressed != null) {
+                // the content is already available in compressed form
+                setContentEncoding(response, codec.get().getEncoding());
+                response.setContentLength(compressed.length);
+                writable = new CompressedWritable(writable, compressed);
+            } else if (codec.isPresent()) {
+                String contentEncoding = codec.get().getEncoding();
+                if (contentLength < 0) {
+                    // the size is not known in advance, so decide once the
+                    // threshold is reached
+                    encoding = new ThresholdCompressingOutputStream(out, codec.get(), compressionThreshold,
+                            () -> setContentEncoding(response, contentEncoding));
+                } else {
+                    setContentEncoding(response, contentEncoding);
+                    encoding = codec.get().encode(out);
+                }
+                out = encoding;
+            } else if (contentLength >= 0) {
+                response.setContentLength(contentLength);
             }
             if (isCountingOutputStream) {
                 out = new CountingOutputStream(out);
@@ -171,14 +434,29 @@ public class HttpUtils {
             writable.write(out, new ResponseProxy(response));
             out.flush();
         } catch (OwsExceptionReport owser) {
+            // release the resources of the compression without finishing it
+            discard(encoding);
+            if (response.isCommitted()) {
+                // parts of the document already reached the client, appending
+                // the report would only produce a corrupt body
+                LOGGER.error("Aborting response as the exception report can not be written after the "
+                             + "response was committed", owser);
+                aborted = true;
+                throw new IOException("Response aborted", owser);
+            }
+            // discard the partial document including the encoding headers
+            response.reset();
+            out = response.getOutputStream();
+            if (isCountingOutputStream) {
+                out = new CountingOutputStream(out);
+            }
             Object writeOwsExceptionReport = owserHandler.handleOwsExceptionReport(request, response, owser);
             if (writeOwsExceptionReport != null) {
                 Writable owserWritable = getWritable(writeOwsExceptionReport, contentType);
+                response.setContentType(owserWritable.getEncodedContentType().toString());
                 try {
                     owserWritable.write(out, new ResponseProxy(response));
-                    if (out != null) {
-                        out.flush();
-                    }
+                    out.flush();
                 } catch (OwsExceptionReport oer) {
                     throw new HTTPException(HTTPStatus.INTERNAL_SERVER_ERROR, oer);
                 }
@@ -188,13 +466,80 @@ public class HttpUtils {
                 Long bytesWritten = ((CountingOutputStream) out).getCount();
                 eventBus.submit(new CountingOutputStreamEvent(bytesWritten));
             }
-            if (out != null) {
+            // do not finish an aborted response, the client has to notice the
+            // truncated body
+            if (out != null && !aborted) {
                 out.close();
             }
 
         }
     }
 
+    private static void discard(OutputStream encoding) {
+        if (encoding instanceof DiscardableStream) {
+            ((DiscardableStream) encoding).discard();
+        }
+    }
+
+    /**
+     * Writes a buffered response including the status and headers of the
+     * encoded response.
+     *
+     * @param request      the HTTP request
+     * @param response     the HTTP response
+     * @param writable     the buffered response
+     * @param owserHandler the handler of exceptions that occur while writing
+     *
+     * @throws IOException   if writing fails
+     * @throws HTTPException if writing fails
+     *
+     * @see #buffer(Object, MediaType)
+     */
+    public void writeObject(HttpServletRequest request, HttpServletResponse response, BufferedWritable writable,
+            OwsExceptionReportHandler owserHandler) throws IOException, HTTPException {
+        if (writable.getStatus() != null) {
+            response.setStatus(writable.getStatus().getCode());
+        }
+        for (Map.Entry<String, String> header : writable.getHeaders().entries()) {
+            response.addHeader(header.getKey(), header.getValue());
+        }
+        writeObject(request, response, writable.getEncodedContentType(), writable, owserHandler);
+    }
+
+    /**
+     * Encodes the supplied object into memory, so the result can be written
+     * to multiple responses. The status and headers of a
+     * {@link ServiceResponse} and the headers set by the
+     * {@link ResponseWriter} are kept, content lengths are discarded.
+     *
+     * @param object      the object to encode
+     * @param contentType the content type to encode to
+     *
+     * @return the encoded object
+     *
+     * @throws IOException        if the encoding fails
+     * @throws OwsExceptionReport if the encoding fails
+     */
+    public BufferedWritable buffer(Object object, MediaType contentType) throws IOException, OwsExceptionReport {
+        Writable writable = object instanceof ServiceResponse
+                                    ? new ServiceResponseWritable((ServiceResponse) object)
+                                    : new GenericWritable(object, contentType);
+        HTTPStatus status = null;
+        RecordingResponseProxy proxy = new RecordingResponseProxy();
+        if (object instanceof ServiceResponse) {
+            status = ((ServiceResponse) object).getStatus();
+            ((ServiceResponse) object).getHeaderMap().forEach(proxy::addHeader);
+        }
+        SegmentedOutputStream buffer = new SegmentedOutputStream();
+        try {
+            writable.write(buffer, proxy);
+            return new BufferedWritable(buffer.toByteArray(), writable.getEncodedContentType(),
+                                        writable.supportsGZip(), status, proxy.headers);
+        } finally {
+            buffer.release();
+        }
+    }
+
     private static Writable getWritable(Object writeOwsExceptionReport, MediaType contentType) {
         if (writeOwsExceptionReport instanceof ServiceResponse) {
             return new ServiceResponseWritable((ServiceResponse) writeOwsExceptionReport);
@@ -253,12 +598,15 @@ public class HttpUtils {
         }
 
         @Override
-        public void write(OutputStream out, ResponseProxy responseProxy) throws IOException {
-            // set content length if not gzipped
-            if (!(out instanceof GZIPOutputStream) && response.getContentLength() > -1) {
-                responseProxy.setContentLength(response.getContentLength());
-            }
-            response.writeToOutputStream(out);
+        public void write(OutputStream out, ResponseProxy responseProxy) throws IOException, OwsExceptionReport {
+            // streamed responses are encoded directly into the servlet stream
+            // and sent chunked
+            response.write(out);
+        }
+
+        @Override
+        public int getContentLength() {
+            return response.isStreaming() ? -1 : response.getContentLength();
         }
 
         @Override
@@ -272,6 +620,49 @@ public class HttpUtils {
         }
     }
 
+    private static class CompressedWritable implements Writable {
+        private final Writable writable;
+        private final byte[] compressed;
+
+        CompressedWritable(Writable writable, byte[] compressed) {
+            this.writable = writable;
+            this.compressed = compressed;
+        }
+
+        @Override
+        public void write(OutputStream out, ResponseProxy responseProxy) throws IOException {
+            out.write(compressed);
+        }
+
+        @Override
+        public boolean supportsGZip() {
+            return writable.supportsGZip();
+        }
+
+        @Override
+        public MediaType getEncodedContentType() {
+            return writable.getEncodedContentType();
+        }
+
+        @Override
+        public int getContentLength() {
+            return compressed.length;
+        }
+    }
+
+    private static class RecordingResponseProxy extends ResponseProxy {
+        private final ListMultimap<String, String> headers = ArrayListMultimap.create();
+
+        @Override
+        public void addHeader(String headerIdentifier, String headerValue) {
+            headers.put(headerIdentifier, headerValue);
+        }
+
+        @Override
+        public void setContentLength(int contentLength) {
+        }
+    }
+
     public interface Writable {
 
         void write(OutputStream out, ResponseProxy responseProxy) throws IOException, OwsExceptionReport;
@@ -279,6 +670,26 @@ public class HttpUtils {
         boolean supportsGZip();
 
         MediaType getEncodedContentType();
+
+        /**
+         * @return the length of the content or {@code -1} if it is not known
+         *         before it is written
+         */
+        default int getContentLength() {
+            return -1;
+        }
+
+        /**
+         * @param codec the codec negotiated for the response
+         *
+         * @return the content compressed with {@code codec}, or {@code null}
+         *         if it has to be compressed while it is written
+         *
+         * @throws IOException if the compression fails
+         */
+        default byte[] getCompressed(ContentCodec codec) throws IOException {
+            return null;
+        }
     }
 
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A HTTP content coding (e.g. {@code gzip}) that can be applied to response
+ * bodies.
+ *
+ * @since 1.3.0
+ */
+public interface ContentCodec {
+
+    /**
+     * @return the name of the content coding as used in the
+     *         {@code Accept-Encoding} and {@code Content-Encoding} headers
+     */
+    String getEncoding();
+
+    /**
+     * Creates a stream that compresses the written bytes into {@code out}.
+     * Closing the returned stream finishes the compression, closes
+     * {@code out} and releases all resources of the stream.
+     *
+     * @param out the stream to write the compressed bytes to
+     *
+     * @return the compressing stream
+     *
+     * @throws IOException if the stream can not be created
+     */
+    OutputStream encode(OutputStream out) throws IOException;
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.n52.iceland.util.http.HTTPConstants;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Registry of the {@link ContentCodec}s that may be applied to responses.
+ * Codecs are negotiated using the quality values of the
+ * {@code Accept-Encoding} header; codecs with the same quality are preferred
+ * in registration order.
+ *
+ * @since 1.3.0
+ */
+public class ContentCodecRegistry {
+    private static final String WILDCARD = "*";
+    private static final String X_GZIP = "x-gzip";
+    private static final String QUALITY_PARAMETER = "q";
+    private static final Splitter CODING_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Splitter PARAMETER_SPLITTER = Splitter.on(';').trimResults();
+
+    private volatile Map<String, ContentCodec> codecs = Collections.emptyMap();
+
+    /**
+     * Registers a codec, replacing any codec for the same encoding. A
+     * replacement keeps the preference of the replaced codec.
+     *
+     * @param codec the codec
+     */
+    public synchronized void register(ContentCodec codec) {
+        Map<String, ContentCodec> map = new LinkedHashMap<>(this.codecs);
+        map.put(codec.getEncoding().toLowerCase(Locale.ROOT), codec);
+        this.codecs = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Registers a codec that is preferred over all codecs registered so far
+     * if the client accepts them with the same quality. Any codec for the
+     * same encoding is replaced.
+     *
+     * @param codec the codec
+     */
+    public synchronized void registerPreferred(ContentCodec codec) {
+        String encoding = codec.getEncoding().toLowerCase(Locale.ROOT);
+        Map<String, ContentCodec> map = new LinkedHashMap<>(this.codecs.size() + 1);
+        map.put(encoding, codec);
+        this.codecs.forEach(map::putIfAbsent);
+        this.codecs = Collections.unmodifiableMap(map);
+    }
+
+    public Optional<ContentCodec> getCodec(String encoding) {
+        return Optional.ofNullable(this.codecs.get(encoding.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Chooses the codec with the highest quality from the supplied
+     * {@code Accept-Encoding} header values.
+     *
+     * @param headers the header values
+     *
+     * @return the codec, or nothing if the response should not be compressed
+     */
+    public Optional<ContentCodec> negotiate(Enumeration<String> headers) {
+        if (headers == null || !headers.hasMoreElements() || this.codecs.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, Float> qualities = parse(headers);
+        Float wildcard = qualities.get(WILDCARD);
+        ContentCodec best = null;
+        float bestQuality = 0;
+        for (Map.Entry<String, ContentCodec> codec : this.codecs.entrySet()) {
+            Float quality = qualities.getOrDefault(codec.getKey(), wildcard);
+            if (quality != null && quality > bestQuality) {
+                best = codec.getValue();
+                bestQuality = quality;
+            }
+        }
+        Float identity = qualities.get(HTTPConstants.IDENTITY_ENCODING);
+        if (best == null || identity != null && identity > bestQuality) {
+            return Optional.empty();
+        }
+        return Optional.of(best);
+    }
+
+    private static Map<String, Float> parse(Enumeration<String> headers) {
+        Map<String, Float> qualities = new HashMap<>(4);
+        while (headers.hasMoreElements()) {
+            String header = headers.nextElement();
+            if (header == null) {
+                continue;
+            }
+            for (String coding : CODING_SPLITTER.split(header)) {
+                float quality = 1;
+                String name = null;
+                for (String parameter : PARAMETER_SPLITTER.split(coding)) {
+                    if (name == null) {
+                        name = parameter.toLowerCase(Locale.ROOT);
+                    } else {
+                        quality = parseQuality(parameter, quality);
+                    }
+                }
+                if (X_GZIP.equals(name)) {
+                    name = HTTPConstants.GZIP_ENCODING;
+                }
+                qualities.put(name, quality);
+            }
+        }
+        return qualities;
+    }
+
+    private static float parseQuality(String parameter, float defaultValue) {
+        int idx = parameter.indexOf('=');
+        if (idx > 0 && QUALITY_PARAMETER.equalsIgnoreCase(parameter.substring(0, idx).trim())) {
+            try {
+                return Float.parseFloat(parameter.substring(idx + 1).trim());
+            } catch (NumberFormatException e) {
+                // an invalid quality does not exclude the coding
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.n52.iceland.util.http.HTTPConstants;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The {@code gzip} and {@code deflate} content codings, backed by pooled
+ * {@link Deflater}s.
+ *
+ * @since 1.3.0
+ */
+public class DeflaterContentCodec implements ContentCodec {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int POOL_SIZE = 64;
+
+    private final String encoding;
+    private final boolean gzip;
+    private final int bufferSize;
+    private final DeflaterPool pool;
+
+    private DeflaterContentCodec(String encoding, boolean gzip, int level, int bufferSize) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        this.encoding = encoding;
+        this.gzip = gzip;
+        this.bufferSize = bufferSize;
+        // gzip writes its own header and trailer around the raw deflate data
+        this.pool = new DeflaterPool(level, gzip, POOL_SIZE);
+    }
+
+    @Override
+    public String getEncoding() {
+        return this.encoding;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException {
+        if (this.gzip) {
+            return new GzipOutputStream(out, this.pool, this.bufferSize);
+        } else {
+            return new PooledDeflaterOutputStream(out, this.pool, this.bufferSize);
+        }
+    }
+
+    /**
+     * Frees the native resources of the pooled deflaters. Streams that are
+     * still open may be used further, their deflaters are freed when the
+     * streams are closed.
+     */
+    public void destroy() {
+        this.pool.clear();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("encoding", this.encoding)
+                .add("bufferSize", this.bufferSize)
+                .toString();
+    }
+
+    public static DeflaterContentCodec gzip(int level, int bufferSize) {
+        return new DeflaterContentCodec(HTTPConstants.GZIP_ENCODING, true, level, bufferSize);
+    }
+
+    public static DeflaterContentCodec deflate(int level, int bufferSize) {
+        return new DeflaterContentCodec(HTTPConstants.DEFLATE_ENCODING, false, level, bufferSize);
+    }
+}
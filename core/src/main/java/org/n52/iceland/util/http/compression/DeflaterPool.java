@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of {@link Deflater}s with the same configuration. Creating a
+ * {@code Deflater} allocates a sizeable native zlib state, so reusing them
+ * cuts the costs of compressing small and medium responses considerably.
+ *
+ * @since 1.3.0
+ */
+public class DeflaterPool {
+    private final BlockingQueue<Deflater> deflaters;
+    private final int level;
+    private final boolean nowrap;
+    private volatile boolean cleared;
+
+    /**
+     * @param level    the compression level
+     * @param nowrap   if the ZLIB header and checksum should be omitted
+     * @param capacity the maximum number of idle deflaters
+     */
+    public DeflaterPool(int level, boolean nowrap, int capacity) {
+        this.level = level;
+        this.nowrap = nowrap;
+        this.deflaters = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public Deflater acquire() {
+        Deflater deflater = this.deflaters.poll();
+        return deflater != null ? deflater : new Deflater(this.level, this.nowrap);
+    }
+
+    /**
+     * Returns a deflater to the pool. Deflaters released after the pool was
+     * {@linkplain #clear() cleared} are ended right away.
+     *
+     * @param deflater the deflater
+     */
+    public void release(Deflater deflater) {
+        if (this.cleared) {
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        if (!this.deflaters.offer(deflater)) {
+            deflater.end();
+        } else if (this.cleared) {
+            // the pool was cleared concurrently
+            drain();
+        }
+    }
+
+    /**
+     * Frees the native resources of all idle deflaters. Deflaters that are
+     * still in use are freed once they are released.
+     */
+    public void clear() {
+        this.cleared = true;
+        drain();
+    }
+
+    private void drain() {
+        Deflater deflater;
+        while ((deflater = this.deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
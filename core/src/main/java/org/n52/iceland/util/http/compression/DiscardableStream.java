@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+/**
+ * Compressing stream that can release its resources without finishing the
+ * compressed content, e.g. if the response it writes to is reset or aborted.
+ *
+ * @since 1.3.0
+ */
+public interface DiscardableStream {
+
+    /**
+     * Releases the resources of the stream without writing any further
+     * bytes. The stream must not be used afterwards and closing it has no
+     * effect.
+     */
+    void discard();
+}
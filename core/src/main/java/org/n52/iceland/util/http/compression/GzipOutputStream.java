@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * GZIP stream using a pooled {@code Deflater}. The JDK's
+ * {@link java.util.zip.GZIPOutputStream} always creates its own deflater, so
+ * the GZIP member header and trailer are written here.
+ *
+ * @since 1.3.0
+ */
+class GzipOutputStream extends PooledDeflaterOutputStream {
+    private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0 };
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+
+    GzipOutputStream(OutputStream out, DeflaterPool pool, int bufferSize) throws IOException {
+        super(out, pool, bufferSize);
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        this.crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!this.finished) {
+            this.finished = true;
+            super.finish();
+            writeInt(this.crc.getValue());
+            writeInt(this.def.getBytesRead());
+        }
+    }
+
+    private void writeInt(long value) throws IOException {
+        this.out.write((int) (value & 0xff));
+        this.out.write((int) ((value >> 8) & 0xff));
+        this.out.write((int) ((value >> 16) & 0xff));
+        this.out.write((int) ((value >> 24) & 0xff));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link DeflaterOutputStream} that returns its {@code Deflater} to a
+ * {@link DeflaterPool} when it is closed or discarded.
+ *
+ * @since 1.3.0
+ */
+class PooledDeflaterOutputStream extends DeflaterOutputStream implements DiscardableStream {
+    private final DeflaterPool pool;
+    private boolean released;
+
+    PooledDeflaterOutputStream(OutputStream out, DeflaterPool pool, int bufferSize) {
+        super(out, pool.acquire(), bufferSize);
+        this.pool = pool;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.released) {
+            return;
+        }
+        try {
+            super.close();
+        } finally {
+            discard();
+        }
+    }
+
+    @Override
+    public void discard() {
+        if (!this.released) {
+            this.released = true;
+            this.pool.release(this.def);
+        }
+    }
+}
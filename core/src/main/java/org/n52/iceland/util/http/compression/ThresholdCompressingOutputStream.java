@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream that only compresses its content if it reaches a minimum size. The
+ * first bytes are buffered until either the threshold is reached, in which
+ * case {@code onCompress} is called (e.g. to set the
+ * {@code Content-Encoding} header) and the content is compressed, or the
+ * stream is closed, in which case the content is written uncompressed.
+ *
+ * @since 1.3.0
+ */
+public class ThresholdCompressingOutputStream extends OutputStream implements DiscardableStream {
+    private final OutputStream out;
+    private final ContentCodec codec;
+    private final Runnable onCompress;
+    private final byte[] buffer;
+    private int position;
+    private OutputStream target;
+    private boolean closed;
+
+    /**
+     * @param out        the stream to write to
+     * @param codec      the codec
+     * @param threshold  the minimum number of bytes to compress
+     * @param onCompress called before the first compressed byte is written
+     */
+    public ThresholdCompressingOutputStream(OutputStream out, ContentCodec codec, int threshold,
+                                            Runnable onCompress) {
+        this.out = out;
+        this.codec = codec;
+        this.onCompress = onCompress;
+        this.buffer = new byte[Math.max(0, threshold)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.target == null && this.position < this.buffer.length) {
+            this.buffer[this.position++] = (byte) b;
+        } else {
+            compressing().write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (this.target == null && this.position + len <= this.buffer.length) {
+            System.arraycopy(b, off, this.buffer, this.position, len);
+            this.position += len;
+        } else {
+            compressing().write(b, off, len);
+        }
+    }
+
+    /**
+     * Flushes only if the decision to compress was already made, as flushing
+     * the buffered bytes would prevent the compression.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.target != null) {
+            this.target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.target != null) {
+            this.target.close();
+        } else {
+            try {
+                this.out.write(this.buffer, 0, this.position);
+            } finally {
+                this.out.close();
+            }
+        }
+    }
+
+    /**
+     * Discards the buffered bytes and the compressing stream, if it was
+     * already created.
+     */
+    @Override
+    public void discard() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        if (this.target instanceof DiscardableStream) {
+            ((DiscardableStream) this.target).discard();
+        }
+    }
+
+    /**
+     * @return if the content is compressed
+     */
+    public boolean isCompressing() {
+        return this.target != null;
+    }
+
+    private OutputStream compressing() throws IOException {
+        if (this.target == null) {
+            this.onCompress.run();
+            this.target = this.codec.encode(this.out);
+            this.target.write(this.buffer, 0, this.position);
+        }
+        return this.target;
+    }
+}
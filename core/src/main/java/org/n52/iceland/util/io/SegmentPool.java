@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of fixed-size byte arrays. The pool is striped by thread to
+ * reduce contention; segments that do not fit into the pool anymore are left
+ * to the garbage collector.
+ *
+ * @since 1.3.0
+ */
+final class SegmentPool {
+    static final int SEGMENT_SIZE = 8192;
+    private static final int STRIPES = 8;
+    private static final int SEGMENTS_PER_STRIPE = 128;
+
+    static final SegmentPool INSTANCE = new SegmentPool(STRIPES, SEGMENTS_PER_STRIPE);
+
+    private final List<BlockingQueue<byte[]>> stripes;
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    SegmentPool(int stripes, int segmentsPerStripe) {
+        this.stripes = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; ++i) {
+            this.stripes.add(new ArrayBlockingQueue<>(segmentsPerStripe));
+        }
+    }
+
+    byte[] acquire() {
+        byte[] segment = stripe().poll();
+        if (segment == null) {
+            this.allocated.increment();
+            return new byte[SEGMENT_SIZE];
+        }
+        this.reused.increment();
+        return segment;
+    }
+
+    void release(byte[] segment) {
+        stripe().offer(segment);
+    }
+
+    long getAllocatedSegments() {
+        return this.allocated.sum();
+    }
+
+    long getReusedSegments() {
+        return this.reused.sum();
+    }
+
+    private BlockingQueue<byte[]> stripe() {
+        return this.stripes.get((int) (Thread.currentThread().getId() % this.stripes.size()));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ByteArrayOutputStream} that stores the written bytes in a list of
+ * fixed-size segments taken from a shared pool instead of a single growing
+ * array. Growing the buffer never copies the written bytes, the size is
+ * known without copying and {@link #writeTo(OutputStream)} writes the
+ * segments one by one. As with {@link ByteArrayOutputStream}, closing the
+ * stream has no effect and the content stays available; {@link #release()}
+ * discards the content and returns the segments to the pool once the content
+ * is not needed anymore.
+ *
+ * Unlike {@link ByteArrayOutputStream} this class is not thread safe.
+ *
+ * @since 1.3.0
+ */
+public class SegmentedOutputStream extends ByteArrayOutputStream {
+    private final SegmentPool pool;
+    private final List<byte[]> segments = new ArrayList<>();
+    private byte[] current;
+    private int position;
+    private int size;
+
+    public SegmentedOutputStream() {
+        this(SegmentPool.INSTANCE);
+    }
+
+    SegmentedOutputStream(SegmentPool pool) {
+        super(0);
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int b) {
+        if (this.current == null || this.position == this.current.length) {
+            nextSegment();
+        }
+        this.current[this.position++] = (byte) b;
+        ++this.size;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int offset = off;
+        int remaining = len;
+        while (remaining > 0) {
+            if (this.current == null || this.position == this.current.length) {
+                nextSegment();
+            }
+            int length = Math.min(remaining, this.current.length - this.position);
+            System.arraycopy(b, offset, this.current, this.position, length);
+            this.position += length;
+            offset += length;
+            remaining -= length;
+        }
+        this.size += len;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        int remaining = this.size;
+        for (byte[] segment : this.segments) {
+            int length = Math.min(remaining, segment.length);
+            out.write(segment, 0, length);
+            remaining -= length;
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[this.size];
+        int offset = 0;
+        for (byte[] segment : this.segments) {
+            int length = Math.min(this.size - offset, segment.length);
+            System.arraycopy(segment, 0, bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return new String(toByteArray(), Charset.defaultCharset());
+    }
+
+    @Override
+    public String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(toByteArray(), charsetName);
+    }
+
+    /**
+     * Discards the content but keeps the segments for reuse by this stream.
+     */
+    @Override
+    public void reset() {
+        this.current = this.segments.isEmpty() ? null : this.segments.get(0);
+        while (this.segments.size() > 1) {
+            this.pool.release(this.segments.remove(this.segments.size() - 1));
+        }
+        this.position = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Discards the content and returns the segments to the pool. The stream
+     * may still be written to afterwards.
+     */
+    public void release() {
+        this.segments.forEach(this.pool::release);
+        this.segments.clear();
+        this.current = null;
+        this.position = 0;
+        this.size = 0;
+    }
+
+    private void nextSegment() {
+        this.current = this.pool.acquire();
+        this.segments.add(this.current);
+        this.position = 0;
+    }
+
+    /**
+     * @return the number of segments that had to be allocated because the
+     *         pool was empty
+     */
+    public static long getAllocatedSegments() {
+        return SegmentPool.INSTANCE.getAllocatedSegments();
+    }
+
+    /**
+     * @return the number of segments that were taken from the pool
+     */
+    public static long getReusedSegments() {
+        return SegmentPool.INSTANCE.getReusedSegments();
+    }
+}
@@ -19,13 +19,24 @@ package org.n52.iceland.binding;
 import static org.junit.Assert.*;
 import static org.hamcrest.core.Is.is;
 
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.n52.iceland.coding.decode.DecoderKey;
 import org.n52.iceland.coding.decode.OperationDecoderKey;
 import org.n52.iceland.coding.decode.XmlNamespaceOperationDecoderKey;
+import org.n52.iceland.coding.decode.XmlStringOperationDecoderKey;
 import org.n52.iceland.exception.CodedException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
 import org.n52.iceland.w3c.soap.SoapConstants;
 
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+import com.google.common.io.FileBackedOutputStream;
+
 public class AbstractXmlBindingTest {
 
     private TestXmlBinding binding = new TestXmlBinding();
@@ -62,6 +73,12 @@ public class AbstractXmlBindingTest {
             .append("<Envelope xmlns=\"http://www.w3.org/2003/05/soap-envelope\">").append("<env:Body/>")
             .append("</Envelope>").toString();
 
+    private String xmlStringDefaultNamespaceNoService = new StringBuilder()
+            .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+            .append("<InsertSensor xmlns=\"http://www.opengis.net/swes/2.0\" version=\"2.0.0\">")
+            .append("<procedureDescription/>")
+            .append("</InsertSensor>").toString();
+
     @Test
     public void test_SoapPrefix() throws CodedException {
         DecoderKey decoderKey = binding.getDecoderKey(xmlStringSoapPrefix, characterEncoding);
@@ -95,4 +112,70 @@ public class AbstractXmlBindingTest {
         }
     }
 
+    @Test
+    public void test_DefaultNamespaceWithoutService() throws CodedException {
+        DecoderKey decoderKey = binding.getDecoderKey(xmlStringDefaultNamespaceNoService, characterEncoding);
+        assertTrue(decoderKey instanceof XmlNamespaceOperationDecoderKey);
+        XmlNamespaceOperationDecoderKey key = (XmlNamespaceOperationDecoderKey) decoderKey;
+        assertThat(key.getNamespace(), is("http://www.opengis.net/swes/2.0"));
+        assertThat(key.getType(), is("InsertSensor"));
+    }
+
+    @Test(expected = CodedException.class)
+    public void test_NoRootElement() throws CodedException {
+        binding.getDecoderKey("<?xml version=\"1.0\" encoding=\"UTF-8\"?>", characterEncoding);
+    }
+
+    @Test
+    public void test_GetObsFromByteSource() throws CodedException {
+        DecoderKey decoderKey = binding.getDecoderKey(
+                ByteSource.wrap(xmlStringGetObs.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        assertTrue(decoderKey instanceof XmlStringOperationDecoderKey);
+        assertThat(((XmlStringOperationDecoderKey) decoderKey).getService(), is("SOS"));
+        assertThat(((XmlStringOperationDecoderKey) decoderKey).getVersion(), is("2.0.0"));
+        assertThat(((XmlStringOperationDecoderKey) decoderKey).getOperation(), is("GetObservation"));
+    }
+
+    @Test
+    public void test_FormParameterBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/service");
+        request.addParameter("request", xmlStringGetCaps);
+        FileBackedOutputStream buffer = new FileBackedOutputStream(AbstractXmlBinding.REQUEST_BUFFER_THRESHOLD);
+        ByteSource body = binding.xmlToByteSource(request, characterEncoding, buffer);
+        assertThat(body.asCharSource(StandardCharsets.UTF_8).read(), is(xmlStringGetCaps));
+    }
+
+    @Test(expected = OwsExceptionReport.class)
+    public void test_UnsupportedFormParameter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/service");
+        request.addParameter("unsupported", xmlStringGetCaps);
+        binding.xmlToByteSource(request, characterEncoding,
+                                new FileBackedOutputStream(AbstractXmlBinding.REQUEST_BUFFER_THRESHOLD));
+    }
+
+    @Test
+    public void test_LargeBodyIsBufferedInFile() throws Exception {
+        String xml = xmlStringGetObs.replace("</sos:GetObservation>", "<!--"
+                + Strings.repeat("x", AbstractXmlBinding.REQUEST_BUFFER_THRESHOLD) + "--></sos:GetObservation>");
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/service");
+        request.setContent(xml.getBytes(StandardCharsets.UTF_8));
+        FileBackedOutputStream buffer = new FileBackedOutputStream(AbstractXmlBinding.REQUEST_BUFFER_THRESHOLD);
+
+        ByteSource body = binding.xmlToByteSource(request, characterEncoding, buffer);
+        File file = getFile(buffer);
+        assertTrue(file != null && file.exists());
+        assertThat(body.asCharSource(StandardCharsets.UTF_8).read(), is(xml));
+        DecoderKey decoderKey = binding.getDecoderKey(body, StandardCharsets.UTF_8);
+        assertThat(((XmlStringOperationDecoderKey) decoderKey).getOperation(), is("GetObservation"));
+
+        buffer.reset();
+        assertFalse(file.exists());
+    }
+
+    private static File getFile(FileBackedOutputStream buffer) throws Exception {
+        // the file is not exposed, but its existence is what is under test
+        Method method = FileBackedOutputStream.class.getDeclaredMethod("getFile");
+        method.setAccessible(true);
+        return (File) method.invoke(buffer);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.binding;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import org.n52.iceland.cache.ContentCacheDiff;
+import org.n52.iceland.event.events.ContentCacheChangedEvent;
+import org.n52.iceland.event.events.SettingsChangeEvent;
+import org.n52.iceland.ogc.ows.Extensions;
+import org.n52.iceland.ogc.swes.SwesExtension;
+import org.n52.iceland.request.GetCapabilitiesRequest;
+import org.n52.iceland.request.operator.RequestOperatorKey;
+import org.n52.iceland.util.activation.ActivationListeners;
+import org.n52.iceland.util.http.BufferedWritable;
+import org.n52.iceland.util.http.MediaTypes;
+
+public class CapabilitiesResponseCacheTest {
+    private final CapabilitiesResponseCache cache = new CapabilitiesResponseCache();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void shouldCacheBySections() throws Exception {
+        BufferedWritable all = cache.get(key(), this::load);
+        assertThat(cache.get(key(), this::load), is(sameInstance(all)));
+        assertThat(cache.get(key("Contents"), this::load), is(not(sameInstance(all))));
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void shouldInvalidateOnEvents() throws Exception {
+        BufferedWritable response = cache.get(key(), this::load);
+        cache.handle(new SettingsChangeEvent(null, null, null));
+        assertThat(cache.get(key(), this::load), is(not(sameInstance(response))));
+    }
+
+    @Test
+    public void shouldKeepResponsesIfCacheDidNotChange() throws Exception {
+        BufferedWritable response = cache.get(key(), this::load);
+        cache.handle(new ContentCacheChangedEvent(1, Optional.of(ContentCacheDiff.empty())));
+        assertThat(cache.get(key(), this::load), is(sameInstance(response)));
+        cache.handle(new ContentCacheChangedEvent(2, Optional.empty()));
+        assertThat(cache.get(key(), this::load), is(not(sameInstance(response))));
+    }
+
+    @Test
+    public void shouldInvalidateOnActivationChanges() throws Exception {
+        ActivationListeners<RequestOperatorKey> activation = new ActivationListeners<>(true);
+        RequestOperatorKey operator = new RequestOperatorKey("SOS", "2.0.0", "GetObservation");
+        cache.invalidateOnActivation(activation);
+        BufferedWritable response = cache.get(key(), this::load);
+        activation.activate(operator);
+        assertThat(cache.get(key(), this::load), is(sameInstance(response)));
+        activation.deactivate(operator);
+        response = cache.get(key(), this::load);
+        assertThat(loads.get(), is(2));
+        activation.activate(operator);
+        assertThat(cache.get(key(), this::load), is(not(sameInstance(response))));
+    }
+
+    @Test
+    public void shouldNotCacheResponsesLoadedDuringInvalidation() throws Exception {
+        cache.get(key(), () -> {
+            cache.invalidate();
+            return load();
+        });
+        cache.get(key(), this::load);
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void shouldNotCacheRequestsWithExtensions() {
+        GetCapabilitiesRequest request = new GetCapabilitiesRequest("SOS");
+        Extensions extensions = new Extensions();
+        extensions.addExtension(new SwesExtension<>("value").setIdentifier("extension"));
+        request.setExtensions(extensions);
+        assertThat(cache.getKey(request, new MockHttpServletRequest()).isPresent(), is(false));
+    }
+
+    private BufferedWritable load() {
+        loads.incrementAndGet();
+        return new BufferedWritable(new byte[0], MediaTypes.APPLICATION_XML, true);
+    }
+
+    private CapabilitiesResponseCache.Key key(String... sections) {
+        GetCapabilitiesRequest request = new GetCapabilitiesRequest("SOS");
+        request.setSections(Arrays.asList(sections));
+        return cache.getKey(request, new MockHttpServletRequest()).get();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.binding;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import org.n52.iceland.coding.decode.DecoderKey;
+
+/**
+ * Compares the latency and allocation of the StAX based decoder key detection
+ * of {@link AbstractXmlBinding} with the former DOM based detection. This is
+ * not a unit test; run it using
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.n52.iceland.binding.DecoderKeySniffingBenchmark}.
+ */
+public class DecoderKeySniffingBenchmark {
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        TestXmlBinding binding = new TestXmlBinding();
+        for (int observations : new int[] { 10, 1000, 10000 }) {
+            String xml = createInsertObservation(observations);
+            run("DOM ", xml, () -> dom(xml));
+            run("StAX", xml, () -> binding.getDecoderKey(xml, "UTF-8"));
+        }
+    }
+
+    private static void run(String name, String xml, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; ++i) {
+            task.run();
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            task.run();
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        System.out.printf("%s %10d chars: %10.1f us/op %14d bytes/op%n", name, xml.length(),
+                          nanos / 1000.0 / ITERATIONS, bytes / ITERATIONS);
+    }
+
+    private static DecoderKey dom(String xml) throws Exception {
+        try (ByteArrayInputStream stream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))) {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
+            document.getDocumentElement().normalize();
+            return null;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String createInsertObservation(int observations) {
+        StringBuilder builder = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<sos:InsertObservation service=\"SOS\" version=\"2.0.0\"")
+                .append(" xmlns:sos=\"http://www.opengis.net/sos/2.0\"")
+                .append(" xmlns:om=\"http://www.opengis.net/om/2.0\">")
+                .append("<sos:offering>offering</sos:offering>");
+        for (int i = 0; i < observations; ++i) {
+            builder.append("<sos:observation><om:OM_Observation>")
+                    .append("<om:procedure>procedure</om:procedure>")
+                    .append("<om:result>").append(i).append("</om:result>")
+                    .append("</om:OM_Observation></sos:observation>");
+        }
+        return builder.append("</sos:InsertObservation>").toString();
+    }
+
+    private interface Task {
+        Object run() throws Exception;
+    }
+}
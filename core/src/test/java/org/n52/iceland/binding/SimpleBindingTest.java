@@ -20,10 +20,14 @@ import static com.google.common.collect.Lists.newArrayList;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -34,6 +38,7 @@ import org.n52.iceland.coding.encode.EncoderRepository;
 import org.n52.iceland.coding.encode.OperationResponseEncoderKey;
 import org.n52.iceland.exception.HTTPException;
 import org.n52.iceland.response.TestResponse;
+import org.n52.iceland.util.http.HTTPHeaders;
 import org.n52.iceland.util.http.MediaType;
 import org.n52.iceland.util.http.MediaTypes;
 
@@ -122,6 +127,40 @@ public class SimpleBindingTest {
         assertThat(chosenContentTypeWithAccept(ANYTHING), is(MediaTypes.APPLICATION_NETCDF));
     }
 
+    @Test
+    public void should_Prefer_Higher_Quality() throws HTTPException {
+        supportJson();
+        assertThat(chosenContentTypeWithAccept("application/xml;q=0.1, application/json"),
+                   is(MediaTypes.APPLICATION_JSON));
+        assertThat(chosenContentTypeWithAccept("application/json;q=0.5, application/xml"), is(defaultContentType));
+    }
+
+    @Test(expected = HTTPException.class)
+    public void should_Not_Accept_Zero_Quality() throws HTTPException {
+        chosenContentTypeWithAccept("application/xml;q=0");
+    }
+
+    @Test
+    public void should_Cache_Content_Negotiation() throws HTTPException {
+        OperationResponseEncoderKey key = supportJson();
+        assertThat(chosenContentTypeWithAccept("application/json"), is(MediaTypes.APPLICATION_JSON));
+        assertThat(chosenContentTypeWithAccept("application/json"), is(MediaTypes.APPLICATION_JSON));
+        verify(binding.getEncoderRepository(), times(1)).hasEncoder(key);
+    }
+
+    private OperationResponseEncoderKey supportJson() {
+        OperationResponseEncoderKey key =
+                new OperationResponseEncoderKey(response.getOperationKey(), MediaTypes.APPLICATION_JSON);
+        when(binding.getEncoderRepository().hasEncoder(key)).thenReturn(true);
+        return key;
+    }
+
+    private MediaType chosenContentTypeWithAccept(String accept) throws HTTPException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader(HTTPHeaders.ACCEPT)).thenReturn(accept);
+        return binding.chooseResponseContentType(request, response, defaultContentType);
+    }
+
     private MediaType chosenContentTypeWithAccept(List<MediaType> accept) throws HTTPException {
         return binding.chooseResponseContentType(response, accept, defaultContentType);
     }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.n52.iceland.cache.ContentCache;
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.cache.ctrl.persistence.NoOpCachePersistenceStrategy;
+import org.n52.iceland.cache.snapshot.TestContentCache;
+import org.n52.iceland.event.ServiceEventBus;
+import org.n52.iceland.exception.ows.NoApplicableCodeException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+
+public class ContentCacheControllerImplTest {
+    private ContentCacheControllerImpl controller;
+    private volatile CountDownLatch started;
+    private volatile CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        controller = new ContentCacheControllerImpl();
+        controller.setCacheFactory(TestContentCache::new);
+        controller.setPersistenceStrategy(new NoOpCachePersistenceStrategy());
+        controller.setServiceEventBus(mock(ServiceEventBus.class));
+        controller.setCompleteCacheUpdateFactory(() -> new CompleteUpdate("complete"));
+        controller.init();
+    }
+
+    @After
+    public void tearDown() {
+        controller.destroy();
+    }
+
+    @Test
+    public void shouldServePreviousGenerationDuringCompleteUpdate() throws Exception {
+        TestContentCache previous = getCache();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                controller.update(new CompleteUpdate("next"));
+            } catch (OwsExceptionReport e) {
+                throw new AssertionError(e);
+            }
+        });
+        thread.start();
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(controller.isUpdateInProgress(), is(true));
+
+        controller.update(new PartialUpdate("partial"));
+        assertThat(getCache(), is(sameInstance(previous)));
+        assertThat(previous.getOfferings(), containsInAnyOrder("complete", "partial"));
+
+        release.countDown();
+        thread.join(10000);
+        assertThat(controller.isUpdateInProgress(), is(false));
+        assertThat(getCache(), is(not(sameInstance(previous))));
+        assertThat(getCache().getOfferings(), containsInAnyOrder("next", "partial"));
+    }
+
+    @Test
+    public void shouldCancelSupersededUpdate() throws Exception {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        CompleteUpdate superseded = new CompleteUpdate("superseded");
+        Thread first = new Thread(() -> {
+            try {
+                controller.update(superseded);
+            } catch (OwsExceptionReport e) {
+                throw new AssertionError(e);
+            }
+        });
+        first.start();
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        started = null;
+        Thread second = new Thread(() -> {
+            try {
+                controller.update(new CompleteUpdate("superseding"));
+            } catch (OwsExceptionReport e) {
+                throw new AssertionError(e);
+            }
+        });
+        second.start();
+        while (!superseded.isCancelled()) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        first.join(10000);
+        second.join(10000);
+        assertThat(getCache().getOfferings(), contains("superseding"));
+    }
+
+    @Test
+    public void shouldApplyPartialUpdatesToCurrentGeneration() throws OwsExceptionReport {
+        TestContentCache previous = getCache();
+        controller.update(new PartialUpdate("partial"));
+        assertThat(getCache(), is(sameInstance(previous)));
+        controller.update();
+        assertThat(getCache().getOfferings(), contains("complete"));
+    }
+
+    @Test
+    public void shouldPersistRecordedUpdatesIfCompleteUpdateFails() throws Exception {
+        List<ContentCacheUpdate> persisted = new CopyOnWriteArrayList<>();
+        controller.setPersistenceStrategy(new NoOpCachePersistenceStrategy() {
+            @Override
+            public void persistOnPartialUpdate(ContentCache cache, ContentCacheUpdate update) {
+                persisted.add(update);
+            }
+        });
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        CompleteUpdate failing = new CompleteUpdate("failing") {
+            @Override
+            public void execute() {
+                super.execute();
+                fail(new NoApplicableCodeException().withMessage("failed"));
+            }
+        };
+        Thread thread = new Thread(() -> {
+            try {
+                controller.update(failing);
+            } catch (OwsExceptionReport e) {
+                // expected
+            }
+        });
+        thread.start();
+        assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+        PartialUpdate partial = new PartialUpdate("partial");
+        controller.update(partial);
+        assertThat(persisted, is(empty()));
+        release.countDown();
+        thread.join(10000);
+        assertThat(persisted, contains((ContentCacheUpdate) partial));
+        assertThat(getCache().getOfferings(), containsInAnyOrder("complete", "partial"));
+    }
+
+    private TestContentCache getCache() {
+        return (TestContentCache) controller.getCache();
+    }
+
+    private class CompleteUpdate extends ContentCacheUpdate {
+        private final String offering;
+
+        CompleteUpdate(String offering) {
+            this.offering = offering;
+        }
+
+        @Override
+        public boolean isCompleteUpdate() {
+            return true;
+        }
+
+        @Override
+        public void execute() {
+            ((TestContentCache) getCache()).getOfferings().add(offering);
+            if (started != null) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static class PartialUpdate extends ContentCacheUpdate {
+        private final String offering;
+
+        PartialUpdate(String offering) {
+            this.offering = offering;
+        }
+
+        @Override
+        public void execute() {
+            ((TestContentCache) getCache()).getOfferings().add(offering);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import org.n52.iceland.exception.ConfigurationError;
+
+public class ContentCacheUpdateScheduleTest {
+    private static final DateTime NOW = new DateTime(2015, 6, 1, 10, 15);
+
+    private final ContentCacheUpdateSchedule schedule = new ContentCacheUpdateSchedule(new Random() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double nextDouble() {
+            return 0.5;
+        }
+    });
+
+    @Test
+    public void shouldBeDisabledByDefault() {
+        assertThat(schedule.next(NOW, 0, 0), is(nullValue()));
+    }
+
+    @Test
+    public void shouldUseInterval() {
+        schedule.setInterval(10);
+        assertThat(schedule.next(NOW, 0, 0), is(NOW.plusMinutes(10)));
+    }
+
+    @Test
+    public void shouldBackOffExponentially() {
+        schedule.setInterval(10);
+        schedule.setMaxBackoff(60);
+        assertThat(schedule.next(NOW, 1, 0), is(NOW.plusMinutes(10)));
+        assertThat(schedule.next(NOW, 3, 0), is(NOW.plusMinutes(40)));
+        assertThat(schedule.next(NOW, 10, 0), is(NOW.plusMinutes(60)));
+    }
+
+    @Test
+    public void shouldStretchAdaptively() {
+        schedule.setInterval(10);
+        assertThat(schedule.next(NOW, 0, 2), is(NOW.plusMinutes(10)));
+        schedule.setAdaptive(true);
+        schedule.setMaxAdaptiveFactor(8);
+        assertThat(schedule.next(NOW, 0, 2), is(NOW.plusMinutes(40)));
+        assertThat(schedule.next(NOW, 0, 100), is(NOW.plusMinutes(80)));
+    }
+
+    @Test
+    public void shouldUseCronExpression() {
+        schedule.setCronExpression("0 0 * * * *");
+        assertThat(schedule.next(NOW, 0, 0), is(NOW.withTime(11, 0, 0, 0)));
+        schedule.setAdaptive(true);
+        assertThat(schedule.next(NOW, 0, 1), is(NOW.withTime(12, 0, 0, 0)));
+        schedule.setMaxAdaptiveFactor(8);
+        assertThat(schedule.next(NOW, 0, 2), is(NOW.withTime(14, 0, 0, 0)));
+        assertThat(schedule.next(NOW, 0, 100), is(NOW.withTime(18, 0, 0, 0)));
+    }
+
+    @Test
+    public void shouldAddJitter() {
+        schedule.setInterval(10);
+        schedule.setJitter(60);
+        assertThat(schedule.next(NOW, 0, 0), is(NOW.plusMinutes(10).plusSeconds(30)));
+    }
+
+    @Test
+    public void shouldPostponeQuietHours() {
+        schedule.setInterval(10);
+        schedule.setQuietHours("07:00-19:00");
+        assertThat(schedule.next(NOW, 0, 0), is(NOW.withTime(19, 0, 0, 0)));
+        schedule.setQuietHours("22:00-06:00");
+        assertThat(schedule.next(NOW, 0, 0), is(NOW.plusMinutes(10)));
+        DateTime evening = NOW.withTime(23, 0, 0, 0);
+        assertThat(schedule.next(evening, 0, 0), is(NOW.plusDays(1).withTime(6, 0, 0, 0)));
+    }
+
+    @Test(expected = ConfigurationError.class)
+    public void shouldRejectInvalidCronExpression() {
+        schedule.setCronExpression("every hour");
+    }
+}
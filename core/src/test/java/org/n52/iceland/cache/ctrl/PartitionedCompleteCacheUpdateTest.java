@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.cache.snapshot.TestContentCache;
+import org.n52.iceland.exception.ows.NoApplicableCodeException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class PartitionedCompleteCacheUpdateTest {
+    private static final List<String> OFFERINGS = IntStream.range(0, 100).mapToObj(i -> "offering" + i)
+            .collect(Collectors.toList());
+
+    @Test
+    public void shouldMergePartitionsInOrder() {
+        TestUpdate update = new TestUpdate(null);
+        TestContentCache cache = execute(update);
+        assertThat(update.failed(), is(false));
+        assertThat(new ArrayList<>(cache.getOfferings()), is(OFFERINGS));
+        assertThat(update.getTimings(), hasSize(10));
+        update.getTimings().forEach(timing -> assertThat(timing.getNanos(), is(greaterThanOrEqualTo(0L))));
+    }
+
+    @Test
+    public void shouldFailOnFailingPartition() {
+        TestUpdate update = new TestUpdate("offering42");
+        TestContentCache cache = execute(update);
+        assertThat(update.failed(), is(true));
+        assertThat(cache.getOfferings(), is(empty()));
+    }
+
+    @Test
+    public void shouldFailFastOnLateFailingPartition() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            TestUpdate update = new TestUpdate("offering99") {
+                @Override
+                protected void update(List<String> partition, WritableContentCache cache)
+                        throws OwsExceptionReport {
+                    if (partition.contains("offering0")) {
+                        Uninterruptibles.awaitUninterruptibly(release, 10, TimeUnit.SECONDS);
+                    }
+                    super.update(partition, cache);
+                }
+            };
+            update.setExecutor(executor);
+            long start = System.nanoTime();
+            execute(update);
+            assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), is(lessThan(5L)));
+            assertThat(update.failed(), is(true));
+            assertThat(executor.isShutdown(), is(false));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldNotMergeCancelledUpdate() {
+        TestUpdate update = new TestUpdate(null);
+        update.cancel();
+        TestContentCache cache = execute(update);
+        assertThat(update.failed(), is(false));
+        assertThat(cache.getOfferings(), is(empty()));
+    }
+
+    @Test
+    public void shouldSplitIntoBatches() {
+        assertThat(PartitionedCompleteCacheUpdate.batches(OFFERINGS.subList(0, 5), 2),
+                   is(Arrays.asList(OFFERINGS.subList(0, 2), OFFERINGS.subList(2, 4), OFFERINGS.subList(4, 5))));
+    }
+
+    private static TestContentCache execute(TestUpdate update) {
+        TestContentCache cache = new TestContentCache();
+        cache.setOfferings(new LinkedHashSet<>());
+        update.setCache(cache);
+        update.execute();
+        return cache;
+    }
+
+    private static class TestUpdate extends PartitionedCompleteCacheUpdate<List<String>> {
+        private final String failing;
+
+        TestUpdate(String failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        protected List<List<String>> getPartitions() {
+            return batches(OFFERINGS, 10);
+        }
+
+        @Override
+        protected WritableContentCache createPartitionCache() {
+            TestContentCache cache = new TestContentCache();
+            cache.setOfferings(new LinkedHashSet<>());
+            return cache;
+        }
+
+        @Override
+        protected void update(List<String> partition, WritableContentCache cache) throws OwsExceptionReport {
+            if (partition.contains(failing)) {
+                throw new NoApplicableCodeException().withMessage("failing");
+            }
+            ((TestContentCache) cache).getOfferings().addAll(partition);
+        }
+
+        @Override
+        protected void merge(WritableContentCache cache, WritableContentCache partition) {
+            ((TestContentCache) cache).getOfferings().addAll(((TestContentCache) partition).getOfferings());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl.persistence;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.n52.iceland.cache.ContentCacheUpdate;
+import org.n52.iceland.cache.snapshot.TestContentCache;
+
+public class DeltaLogCachePersistenceStrategyTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private DeltaLogCachePersistenceStrategy strategy;
+    private TestContentCache cache;
+
+    @Before
+    public void setUp() {
+        strategy = createStrategy();
+        cache = new TestContentCache();
+        strategy.persistOnCompleteUpdate(cache);
+    }
+
+    @Test
+    public void shouldReplayLoggedUpdates() {
+        apply(new AddOffering("a"));
+        apply(new AddOffering("b"));
+        assertThat(strategy.getCacheFile(1).exists(), is(false));
+        assertThat(load().getOfferings(), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void shouldCompactOnUnserializableUpdates() {
+        apply(new AddOffering("a"));
+        apply(new ContentCacheUpdate() {
+            @Override
+            public void execute() {
+                ((TestContentCache) getCache()).getOfferings().add("b");
+            }
+        });
+        assertThat(strategy.getCacheFile(1).exists(), is(true));
+        assertThat(load().getOfferings(), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void shouldCutOffTornRecords() throws IOException {
+        apply(new AddOffering("a"));
+        Files.write(strategy.getLogFile().toPath(), new byte[] { 0, 0, 1, 0, 1, 2 }, StandardOpenOption.APPEND);
+        DeltaLogCachePersistenceStrategy loading = createStrategy();
+        TestContentCache loaded = (TestContentCache) loading.load().get();
+        assertThat(loaded.getOfferings(), contains("a"));
+        loading.persistOnPartialUpdate(loaded, new AddOffering("b").setCache(loaded));
+        assertThat(load().getOfferings(), containsInAnyOrder("a", "b"));
+    }
+
+    @Test
+    public void shouldDiscardLogOfOtherCacheFile() throws IOException {
+        Path log = strategy.getLogFile().toPath();
+        Path stale = folder.getRoot().toPath().resolve("stale.log");
+        apply(new AddOffering("a"));
+        Files.copy(log, stale);
+        cache.getOfferings().remove("a");
+        cache.getOfferings().add("b");
+        strategy.persistOnCompleteUpdate(cache);
+        strategy.destroy();
+        // simulate a crash between writing the cache file and resetting the log
+        Files.copy(stale, log, StandardCopyOption.REPLACE_EXISTING);
+        assertThat(load().getOfferings(), contains("b"));
+    }
+
+    private void apply(ContentCacheUpdate update) {
+        update.setCache(cache);
+        update.execute();
+        strategy.persistOnPartialUpdate(cache, update);
+    }
+
+    private TestContentCache load() {
+        return (TestContentCache) createStrategy().load().get();
+    }
+
+    private DeltaLogCachePersistenceStrategy createStrategy() {
+        DeltaLogCachePersistenceStrategy s = new DeltaLogCachePersistenceStrategy();
+        s.setConfigLocationProvider(() -> folder.getRoot().getAbsolutePath());
+        s.init();
+        return s;
+    }
+
+    private static class AddOffering extends ContentCacheUpdate implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String offering;
+
+        AddOffering(String offering) {
+            this.offering = offering;
+        }
+
+        @Override
+        public void execute() {
+            ((TestContentCache) getCache()).getOfferings().add(offering);
+        }
+    }
+}
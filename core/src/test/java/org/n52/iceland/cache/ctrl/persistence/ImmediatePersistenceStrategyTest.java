@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.ctrl.persistence;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.n52.iceland.cache.WritableContentCache;
+import org.n52.iceland.cache.snapshot.TestContentCache;
+
+public class ImmediatePersistenceStrategyTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ImmediatePersistenceStrategy strategy;
+    private TestContentCache first;
+    private TestContentCache second;
+
+    @Before
+    public void setUp() {
+        strategy = new ImmediatePersistenceStrategy();
+        strategy.setConfigLocationProvider(() -> folder.getRoot().getAbsolutePath());
+        strategy.init();
+        first = TestContentCache.create(1, 10, 10);
+        second = TestContentCache.create(2, 10, 10);
+    }
+
+    @Test
+    public void shouldLoadCurrentGeneration() {
+        strategy.persistOnCompleteUpdate(first);
+        strategy.persistOnCompleteUpdate(second);
+        assertThat(strategy.load(), is(Optional.<WritableContentCache>of(second)));
+        assertThat(strategy.getCacheFile(1).exists(), is(true));
+    }
+
+    @Test
+    public void shouldFallBackOnChecksumMismatch() throws IOException {
+        strategy.persistOnCompleteUpdate(first);
+        strategy.persistOnCompleteUpdate(second);
+        try (RandomAccessFile file = new RandomAccessFile(strategy.getCacheFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0xff);
+        }
+        assertThat(strategy.load(), is(Optional.<WritableContentCache>of(first)));
+    }
+
+    @Test
+    public void shouldFallBackOnTruncatedFile() throws IOException {
+        strategy.persistOnCompleteUpdate(first);
+        strategy.persistOnCompleteUpdate(second);
+        try (RandomAccessFile file = new RandomAccessFile(strategy.getCacheFile(), "rw")) {
+            file.setLength(file.length() - 100);
+        }
+        assertThat(strategy.load(), is(Optional.<WritableContentCache>of(first)));
+    }
+
+    @Test
+    public void shouldKeepConfiguredGenerations() {
+        strategy.setPreviousGenerations(2);
+        strategy.persistOnCompleteUpdate(first);
+        strategy.persistOnCompleteUpdate(second);
+        strategy.persistOnCompleteUpdate(second);
+        strategy.persistOnCompleteUpdate(second);
+        assertThat(strategy.getCacheFile(2).exists(), is(true));
+        assertThat(strategy.getCacheFile(3).exists(), is(false));
+        strategy.remove();
+        assertThat(strategy.load(), is(Optional.<WritableContentCache>empty()));
+    }
+
+    @Test
+    public void shouldDeleteIncompleteFiles() throws IOException {
+        File temp = folder.newFile(AbstractPersistingCachePersistenceStrategy.CACHE_FILE + ".123.part");
+        strategy.init();
+        assertThat(temp.exists(), is(false));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import org.n52.iceland.cache.ContentCacheDiff;
+
+public class ContentCacheDiffTest {
+    private static final String OFFERING_0 = "http://www.example.org/offering/0";
+    private static final String OFFERING_1 = "http://www.example.org/offering/1";
+    private static final String OFFERING_NEW = "http://www.example.org/offering/new";
+
+    private final TestContentCache.Schema schema = new TestContentCache.Schema();
+
+    @Test
+    public void shouldBeEmptyForEqualCaches() throws Exception {
+        ContentCacheDiff diff = schema.diff(TestContentCache.create(10, 50, 100), TestContentCache.create(10, 50, 100));
+        assertThat(diff.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldReportChangesByKey() throws Exception {
+        TestContentCache previous = TestContentCache.create(10, 50, 100);
+        TestContentCache next = TestContentCache.create(10, 50, 100);
+        next.getOfferings().remove(OFFERING_0);
+        next.getOfferings().add(OFFERING_NEW);
+        next.getProceduresForOffering().get(OFFERING_1).add("http://www.example.org/procedure/new");
+        next.getOfferingNames().put(OFFERING_1, "renamed");
+
+        ContentCacheDiff diff = schema.diff(previous, next);
+
+        assertThat(diff.getCategories().keySet(),
+                   containsInAnyOrder("offerings", "proceduresForOffering", "offeringNames"));
+        ContentCacheDiff.Category offerings = diff.getCategories().get("offerings");
+        assertThat(offerings.getAdded(), contains(OFFERING_NEW));
+        assertThat(offerings.getRemoved(), contains(OFFERING_0));
+        assertThat(offerings.getModified(), is(empty()));
+        assertThat(diff.getCategories().get("proceduresForOffering").getModified(), contains(OFFERING_1));
+        assertThat(diff.getCategories().get("offeringNames").getModified(), contains(OFFERING_1));
+    }
+
+    @Test
+    public void shouldReportChangedScalars() throws Exception {
+        TestContentCache previous = TestContentCache.create(1, 1, 1);
+        TestContentCache next = TestContentCache.create(1, 1, 1);
+        next.setLastUpdateTime(new DateTime(1_500_000_000_000L));
+
+        ContentCacheDiff diff = schema.diff(previous, next);
+
+        assertThat(diff.isChanged("lastUpdateTime"), is(true));
+        assertThat(diff.getCategories().get("lastUpdateTime").isKeyed(), is(false));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedSnapshotTest {
+    private static final String OFFERING = "http://www.example.org/offering/3";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final TestContentCache.Schema schema = new TestContentCache.Schema();
+    private TestContentCache cache;
+    private MappedSnapshot snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = TestContentCache.create(10, 100, 1000);
+        Path file = folder.newFile().toPath();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            MappedSnapshot.write(schema, cache, out);
+        }
+        snapshot = MappedSnapshot.open(file);
+    }
+
+    @Test
+    public void shouldLookupEntries() throws IOException {
+        assertThat(snapshot.getSchemaName(), is(schema.getName()));
+        assertThat(snapshot.size("proceduresForOffering"), is(10));
+        assertThat(snapshot.getValues("proceduresForOffering", OFFERING),
+                   is(cache.getProceduresForOffering().get(OFFERING)));
+        assertThat(snapshot.getValue("offeringNames", OFFERING), is("Offering 3"));
+        assertThat(snapshot.containsKey("offerings", OFFERING), is(true));
+    }
+
+    @Test
+    public void shouldHandleMissingEntries() throws IOException {
+        assertThat(snapshot.containsKey("offerings", "unknown"), is(false));
+        assertThat(snapshot.getValues("proceduresForOffering", "unknown"), is(empty()));
+        assertThat(snapshot.getValue("offeringNames", "unknown"), is(nullValue()));
+        assertThat(snapshot.getValues("unknownField", OFFERING), is(empty()));
+    }
+
+    @Test
+    public void shouldReadKeys() throws IOException {
+        assertThat(snapshot.getKeys("offerings"), is(cache.getOfferings()));
+        assertThat(snapshot.getKeys("offeringNames"),
+                   containsInAnyOrder(cache.getOfferingNames().keySet().toArray()));
+    }
+
+    @Test
+    public void shouldMaterialize() throws IOException {
+        assertThat(snapshot.materialize(schema), is(cache));
+    }
+
+    @Test
+    public void shouldReadSequentialFields() throws IOException {
+        assertThat(snapshot.getInput("lastUpdateTime").readDateTime(), is(cache.getLastUpdateTime()));
+    }
+
+    @Test
+    public void shouldRejectKeyedLookupOfSequentialField() throws IOException {
+        thrown.expect(IOException.class);
+        snapshot.getValues("lastUpdateTime", OFFERING);
+    }
+}
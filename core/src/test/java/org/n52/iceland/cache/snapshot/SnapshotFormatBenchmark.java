@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compares the write and read times and sizes of Java serialization with the
+ * {@link SnapshotFormat} and the {@link MappedSnapshot}. This is not a unit test; run it using
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.n52.iceland.cache.snapshot.SnapshotFormatBenchmark}.
+ */
+public class SnapshotFormatBenchmark {
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        TestContentCache cache = TestContentCache.create(1000, 200000, 500000);
+        TestContentCache.Schema schema = new TestContentCache.Schema();
+        run("serialization       ", () -> serialize(cache), bytes -> deserialize(bytes));
+        SnapshotFormat plain = new SnapshotFormat();
+        run("snapshot            ", () -> write(plain, schema, cache), bytes -> read(plain, schema, bytes));
+        SnapshotFormat compressed = new SnapshotFormat(true);
+        run("snapshot (deflate)  ", () -> write(compressed, schema, cache), bytes -> read(compressed, schema, bytes));
+        run("mapped (materialize)", () -> writeMapped(schema, cache),
+            bytes -> MappedSnapshot.wrap(ByteBuffer.wrap(bytes)).materialize(schema));
+        String offering = cache.getOfferings().iterator().next();
+        run("mapped (lookup)     ", () -> writeMapped(schema, cache),
+            bytes -> MappedSnapshot.wrap(ByteBuffer.wrap(bytes)).getValues("proceduresForOffering", offering));
+    }
+
+    private static byte[] writeMapped(TestContentCache.Schema schema, TestContentCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MappedSnapshot.write(schema, cache, out);
+        return out.toByteArray();
+    }
+
+    private static void run(String name, Writer writer, Reader reader) throws Exception {
+        byte[] bytes = writer.write();
+        reader.read(bytes);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            bytes = writer.write();
+        }
+        long writeNanos = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            reader.read(bytes);
+        }
+        long readNanos = (System.nanoTime() - start) / ITERATIONS;
+        System.out.printf("%s write %8.1f ms, read %8.1f ms, size %10d bytes%n", name,
+                          writeNanos / 1e6, readNanos / 1e6, bytes.length);
+    }
+
+    private static byte[] serialize(TestContentCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(cache);
+        }
+        return out.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        }
+    }
+
+    private static byte[] write(SnapshotFormat format, TestContentCache.Schema schema, TestContentCache cache)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(schema, cache, out);
+        return out.toByteArray();
+    }
+
+    private static Object read(SnapshotFormat format, TestContentCache.Schema schema, byte[] bytes)
+            throws IOException {
+        return format.read(schema, new ByteArrayInputStream(bytes));
+    }
+
+    private interface Writer {
+        byte[] write() throws Exception;
+    }
+
+    private interface Reader {
+        Object read(byte[] bytes) throws Exception;
+    }
+}
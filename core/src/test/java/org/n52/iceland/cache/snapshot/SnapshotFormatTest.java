@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class SnapshotFormatTest {
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private final TestContentCache.Schema schema = new TestContentCache.Schema();
+
+    @Test
+    public void shouldRoundTrip() throws IOException {
+        TestContentCache cache = TestContentCache.create(10, 100, 1000);
+        assertThat(roundTrip(new SnapshotFormat(), schema, schema, cache), is(cache));
+    }
+
+    @Test
+    public void shouldRoundTripCompressed() throws IOException {
+        TestContentCache cache = TestContentCache.create(10, 100, 1000);
+        assertThat(roundTrip(new SnapshotFormat(true), schema, schema, cache), is(cache));
+    }
+
+    @Test
+    public void shouldSkipUnknownFields() throws IOException {
+        TestContentCache cache = TestContentCache.create(10, 100, 1000);
+        TestContentCache.Schema reduced = new TestContentCache.Schema() {
+            @Override
+            public List<SnapshotField<TestContentCache>> getFields() {
+                return super.getFields().subList(0, 2);
+            }
+        };
+        TestContentCache read = roundTrip(new SnapshotFormat(), schema, reduced, cache);
+        assertThat(read.getOfferings(), is(cache.getOfferings()));
+        assertThat(read.getProceduresForOffering().entrySet(), is(empty()));
+    }
+
+    @Test
+    public void shouldRejectOtherSchemas() throws IOException {
+        TestContentCache.Schema other = new TestContentCache.Schema() {
+            @Override
+            public String getName() {
+                return "other";
+            }
+        };
+        thrown.expect(IOException.class);
+        roundTrip(new SnapshotFormat(), schema, other, new TestContentCache());
+    }
+
+    private static TestContentCache roundTrip(SnapshotFormat format, TestContentCache.Schema writeSchema,
+                                              TestContentCache.Schema readSchema, TestContentCache cache)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        format.write(writeSchema, cache, out);
+        return format.read(readSchema, new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.cache.snapshot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+
+import org.n52.iceland.cache.WritableContentCache;
+
+/**
+ * Content cache with typical fields for snapshot tests and benchmarks.
+ */
+public class TestContentCache implements WritableContentCache {
+    private static final long serialVersionUID = 1L;
+
+    private DateTime lastUpdateTime;
+    private Set<String> offerings = new HashSet<>();
+    private Map<String, Set<String>> proceduresForOffering = new HashMap<>();
+    private Map<String, Set<String>> featuresForOffering = new HashMap<>();
+    private Map<String, String> offeringNames = new HashMap<>();
+
+    @Override
+    public void setLastUpdateTime(DateTime lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
+    public DateTime getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    public Set<String> getOfferings() {
+        return offerings;
+    }
+
+    public void setOfferings(Set<String> offerings) {
+        this.offerings = offerings;
+    }
+
+    public Map<String, Set<String>> getProceduresForOffering() {
+        return proceduresForOffering;
+    }
+
+    public void setProceduresForOffering(Map<String, Set<String>> proceduresForOffering) {
+        this.proceduresForOffering = proceduresForOffering;
+    }
+
+    public Map<String, Set<String>> getFeaturesForOffering() {
+        return featuresForOffering;
+    }
+
+    public void setFeaturesForOffering(Map<String, Set<String>> featuresForOffering) {
+        this.featuresForOffering = featuresForOffering;
+    }
+
+    public Map<String, String> getOfferingNames() {
+        return offeringNames;
+    }
+
+    public void setOfferingNames(Map<String, String> offeringNames) {
+        this.offeringNames = offeringNames;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lastUpdateTime, offerings, proceduresForOffering, featuresForOffering, offeringNames);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        TestContentCache other = (TestContentCache) obj;
+        return Objects.equals(lastUpdateTime, other.lastUpdateTime) &&
+               Objects.equals(offerings, other.offerings) &&
+               Objects.equals(proceduresForOffering, other.proceduresForOffering) &&
+               Objects.equals(featuresForOffering, other.featuresForOffering) &&
+               Objects.equals(offeringNames, other.offeringNames);
+    }
+
+    public static TestContentCache create(int offerings, int procedures, int features) {
+        TestContentCache cache = new TestContentCache();
+        cache.setLastUpdateTime(new DateTime(1_400_000_000_000L));
+        for (int o = 0; o < offerings; ++o) {
+            String offering = "http://www.example.org/offering/" + o;
+            cache.getOfferings().add(offering);
+            cache.getOfferingNames().put(offering, "Offering " + o);
+            Set<String> procedureSet = new HashSet<>();
+            for (int p = o; p < procedures; p += offerings) {
+                procedureSet.add("http://www.example.org/procedure/" + p);
+            }
+            cache.getProceduresForOffering().put(offering, procedureSet);
+            Set<String> featureSet = new HashSet<>();
+            for (int f = o; f < features; f += Math.max(1, offerings / 10)) {
+                featureSet.add("http://www.example.org/feature/" + f);
+            }
+            cache.getFeaturesForOffering().put(offering, featureSet);
+        }
+        return cache;
+    }
+
+    public static class Schema implements ContentCacheSchema<TestContentCache> {
+        @Override
+        public String getName() {
+            return TestContentCache.class.getName();
+        }
+
+        @Override
+        public TestContentCache createCache() {
+            return new TestContentCache();
+        }
+
+        @Override
+        public List<SnapshotField<TestContentCache>> getFields() {
+            return Arrays.asList(
+                    SnapshotFields.dateTime("lastUpdateTime", TestContentCache::getLastUpdateTime,
+                                            TestContentCache::setLastUpdateTime),
+                    SnapshotFields.strings("offerings", TestContentCache::getOfferings,
+                                           TestContentCache::setOfferings),
+                    SnapshotFields.stringMultimap("proceduresForOffering",
+                                                  TestContentCache::getProceduresForOffering,
+                                                  TestContentCache::setProceduresForOffering),
+                    SnapshotFields.stringMultimap("featuresForOffering",
+                                                  TestContentCache::getFeaturesForOffering,
+                                                  TestContentCache::setFeaturesForOffering),
+                    SnapshotFields.stringMap("offeringNames", TestContentCache::getOfferingNames,
+                                             TestContentCache::setOfferingNames));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import org.n52.iceland.coding.encode.Encoder;
+import org.n52.iceland.coding.encode.EncoderKey;
+import org.n52.iceland.coding.encode.EncoderRepository;
+import org.n52.iceland.coding.encode.XmlEncoderKey;
+
+import com.google.common.collect.ImmutableSet;
+
+public class AbstractCodingRepositoryTest {
+    private static final String NAMESPACE = "http://www.example.com/ns";
+
+    private EncoderRepository repository;
+
+    @Before
+    public void setUp() {
+        this.repository = new EncoderRepository();
+    }
+
+    @Test
+    public void shouldCacheMisses() {
+        register(encoder(new XmlEncoderKey(NAMESPACE, String.class)));
+        EncoderKey key = new XmlEncoderKey(NAMESPACE, Integer.class);
+        assertThat(repository.getEncoder(key), is(nullValue()));
+        assertThat(repository.getResolutionCacheMisses(), is(1L));
+        assertThat(repository.getResolutionCacheHits(), is(0L));
+        assertThat(repository.getEncoder(key), is(nullValue()));
+        assertThat(repository.getEncoder(key), is(nullValue()));
+        assertThat(repository.getResolutionCacheMisses(), is(1L));
+        assertThat(repository.getResolutionCacheHits(), is(2L));
+    }
+
+    @Test
+    public void shouldClearCachedMissesOnRegistration() {
+        register(encoder(new XmlEncoderKey(NAMESPACE, String.class)));
+        EncoderKey key = new XmlEncoderKey(NAMESPACE, Integer.class);
+        long generation = repository.getGeneration();
+        assertThat(repository.getEncoder(key), is(nullValue()));
+        Encoder<?, ?> integer = encoder(key);
+        register(integer);
+        assertThat(repository.getGeneration(), is(generation + 1));
+        assertThat(repository.getEncoder(key), is(sameInstance((Object) integer)));
+        assertThat(repository.getResolutionCacheMisses(), is(2L));
+    }
+
+    @Test
+    public void shouldBoundResolvedKeys() {
+        register(encoder(new XmlEncoderKey(NAMESPACE, String.class)));
+        AbstractCodingRepository<?, ?, ?> codingRepository = repository;
+        int lookups = AbstractCodingRepository.MAX_RESOLVED_KEYS + 100;
+        for (int i = 0; i < lookups; ++i) {
+            repository.getEncoder(new XmlEncoderKey(NAMESPACE + i, String.class));
+        }
+        assertThat(codingRepository.getResolvedKeyCount(), is(AbstractCodingRepository.MAX_RESOLVED_KEYS));
+        assertThat(repository.getResolutionCacheMisses(), is((long) lookups));
+        // keys beyond the bound are resolved, but not cached
+        repository.getEncoder(new XmlEncoderKey(NAMESPACE + (lookups - 1), String.class));
+        assertThat(repository.getResolutionCacheMisses(), is(lookups + 1L));
+    }
+
+    @Test
+    public void shouldRankAmbiguousMatchesOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        Encoder<?, ?> object = encoder(new XmlEncoderKey(NAMESPACE, Object.class), calls);
+        Encoder<?, ?> number = encoder(new XmlEncoderKey(NAMESPACE, Number.class), calls);
+        register(object, number);
+        EncoderKey key = new XmlEncoderKey(NAMESPACE, Integer.class);
+        assertThat(repository.getEncoder(key), is(sameInstance((Object) number)));
+        int ranked = calls.get();
+        for (int i = 0; i < 10; ++i) {
+            assertThat(repository.getEncoder(key), is(sameInstance((Object) number)));
+        }
+        assertThat(calls.get(), is(ranked));
+    }
+
+    private static Encoder<?, ?> encoder(EncoderKey key, AtomicInteger calls) {
+        Encoder<?, ?> encoder = mock(Encoder.class);
+        when(encoder.getKeys()).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            return ImmutableSet.of(key);
+        });
+        return encoder;
+    }
+
+    private static Encoder<?, ?> encoder(EncoderKey key) {
+        Encoder<?, ?> encoder = mock(Encoder.class);
+        when(encoder.getKeys()).thenReturn(ImmutableSet.of(key));
+        return encoder;
+    }
+
+    private void register(Encoder<?, ?>... encoders) {
+        Collection<Encoder<?, ?>> all = Arrays.asList(encoders);
+        ReflectionTestUtils.setField(repository, "encoders", all);
+        repository.init();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding.decode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+
+import com.google.common.io.ByteSource;
+
+public class StreamingDecoderTest {
+    private static final String CONTENT = "<request>Grüße</request>";
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldDecodeByteSourceThroughAdapter() throws OwsExceptionReport {
+        Decoder<Object, String> decoder = mock(Decoder.class);
+        Object result = new Object();
+        when(decoder.decode(CONTENT)).thenReturn(result);
+        StreamingDecoder<Object> adapter = StreamingDecoder.adapt(decoder);
+        assertThat(adapter, is(not(sameInstance((Object) decoder))));
+        ByteSource source = ByteSource.wrap(CONTENT.getBytes(StandardCharsets.ISO_8859_1));
+        assertThat(adapter.decode(source, StandardCharsets.ISO_8859_1), is(sameInstance(result)));
+        verify(decoder).decode(CONTENT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldNotAdaptStreamingDecoders() {
+        StreamingDecoder<Object> decoder = mock(StreamingDecoder.class);
+        assertThat(StreamingDecoder.adapt(decoder), is(sameInstance(decoder)));
+    }
+}
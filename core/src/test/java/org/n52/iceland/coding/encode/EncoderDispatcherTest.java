@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.coding.encode;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+public class EncoderDispatcherTest {
+    private static final String NAMESPACE = "http://www.example.com/ns";
+
+    private EncoderRepository repository;
+
+    @Before
+    public void setUp() {
+        this.repository = new EncoderRepository();
+    }
+
+    @Test
+    public void shouldResolveEncoderPerClass() {
+        Encoder<?, ?> encoder = register(new XmlEncoderKey(NAMESPACE, String.class));
+        EncoderDispatcher<Object> dispatcher = repository.getDispatcher(NAMESPACE);
+        assertThat(dispatcher.getEncoder(String.class), is(sameInstance(encoder)));
+        assertThat(dispatcher.getEncoder("string"), is(sameInstance(encoder)));
+        assertThat(dispatcher.getEncoder(Integer.class), is(nullValue()));
+        assertThat(repository.getDispatcher(NAMESPACE), is(sameInstance(dispatcher)));
+    }
+
+    @Test
+    public void shouldDiscardResolvedEncodersOnChange() {
+        EncoderDispatcher<Object> dispatcher = repository.getDispatcher(NAMESPACE);
+        register(new XmlEncoderKey(NAMESPACE, String.class));
+        assertThat(dispatcher.getEncoder(Integer.class), is(nullValue()));
+        Encoder<?, ?> encoder = register(new XmlEncoderKey(NAMESPACE, Integer.class));
+        assertThat(dispatcher.getEncoder(Integer.class), is(sameInstance(encoder)));
+    }
+
+    private Encoder<?, ?> register(EncoderKey key) {
+        Encoder<?, ?> encoder = mock(Encoder.class);
+        when(encoder.getKeys()).thenReturn(ImmutableSet.of(key));
+        ReflectionTestUtils.setField(repository, "encoders", Collections.singleton(encoder));
+        repository.init();
+        return encoder;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class ServiceEventBusTest {
+    private final ServiceEventBus bus = new ServiceEventBus();
+
+    @Test
+    public void shouldDispatchToListenersOfSuperTypes() {
+        RecordingListener specific = new RecordingListener(SpecificEvent.class);
+        RecordingListener general = new RecordingListener(ServiceEvent.class);
+        bus.register(specific);
+        bus.register(general);
+        ServiceEvent event = new SpecificEvent();
+        bus.submit(event);
+        bus.submit(new ServiceEvent() { });
+        assertThat(specific.events, contains(event));
+        assertThat(general.events.size(), is(2));
+    }
+
+    @Test
+    public void shouldDispatchOnceToListenersOfMultipleTypes() {
+        RecordingListener listener = new RecordingListener(ImmutableSet.of(SpecificEvent.class, ServiceEvent.class));
+        bus.register(listener);
+        bus.submit(new SpecificEvent());
+        assertThat(listener.events.size(), is(1));
+    }
+
+    @Test
+    public void shouldNotDispatchAfterUnregistration() {
+        RecordingListener listener = new RecordingListener(SpecificEvent.class);
+        bus.register(listener);
+        bus.submit(new SpecificEvent());
+        bus.unregister(listener);
+        bus.submit(new SpecificEvent());
+        assertThat(listener.events.size(), is(1));
+    }
+
+    @Test
+    public void shouldContinueAfterFailingListener() {
+        RecordingListener listener = new RecordingListener(SpecificEvent.class);
+        bus.register(new RecordingListener(SpecificEvent.class) {
+            @Override
+            public void handle(ServiceEvent event) {
+                throw new IllegalStateException();
+            }
+        });
+        bus.register(listener);
+        bus.submit(new SpecificEvent());
+        assertThat(listener.events.size(), is(1));
+    }
+
+    @Test
+    public void shouldIgnoreEventsWithoutListeners() {
+        RecordingListener listener = new RecordingListener(SpecificEvent.class);
+        bus.register(listener);
+        bus.submit(new ServiceEvent() { });
+        assertThat(listener.events, is(empty()));
+    }
+
+    @Test
+    public void shouldDropOldestEventsOfSlowListeners() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener slow = new RecordingListener(SpecificEvent.class) {
+            @Override
+            public void handle(ServiceEvent event) {
+                blocked.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                super.handle(event);
+            }
+        };
+        RecordingListener fast = new RecordingListener(SpecificEvent.class);
+        bus.setAsync(true);
+        bus.setAsyncQueueCapacity(2);
+        bus.register(slow);
+        bus.register(fast);
+        List<ServiceEvent> events = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            events.add(new SpecificEvent());
+            bus.submit(events.get(i));
+            if (i == 0) {
+                blocked.await();
+            }
+        }
+        ListenerQueueStatistics statistics = statistics(slow);
+        assertThat(statistics.getDepth(), is(2));
+        assertThat(statistics.getDropped(), is(2L));
+        // the fast listener is not delayed by the blocked one
+        awaitDelivery(fast, 5 - statistics(fast).getDropped());
+        release.countDown();
+        bus.destroy();
+        awaitDelivery(slow, 3);
+        assertThat(slow.events, contains(events.get(0), events.get(3), events.get(4)));
+    }
+
+    @Test
+    public void shouldDropNewestEventsOfSlowListeners() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener slow = new RecordingListener(SpecificEvent.class) {
+            @Override
+            public void handle(ServiceEvent event) {
+                Uninterruptibles.awaitUninterruptibly(release);
+                super.handle(event);
+            }
+        };
+        bus.setAsync(true);
+        bus.setAsyncQueueCapacity(1);
+        bus.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+        bus.register(slow);
+        ServiceEvent first = new SpecificEvent();
+        bus.submit(first);
+        // the consumer may or may not have taken the first event yet
+        for (int i = 0; i < 3; ++i) {
+            bus.submit(new SpecificEvent());
+        }
+        assertThat(statistics(slow).getDropped(), is(greaterThanOrEqualTo(2L)));
+        release.countDown();
+        bus.destroy();
+        awaitDelivery(slow, 4 - (int) statistics(slow).getDropped());
+        assertThat(slow.events.get(0), is(first));
+    }
+
+    @Test
+    public void shouldDeliverFullBatches() throws Exception {
+        BatchingListener listener = new BatchingListener(3, 10000);
+        bus.register(listener);
+        List<ServiceEvent> events = new ArrayList<>();
+        for (int i = 0; i < 7; ++i) {
+            events.add(new SpecificEvent());
+            bus.submit(events.get(i));
+        }
+        awaitDelivery(listener, 6);
+        bus.destroy();
+        awaitDelivery(listener, 7);
+        assertThat(listener.batches,
+                   is(Arrays.asList(events.subList(0, 3), events.subList(3, 6), events.subList(6, 7))));
+    }
+
+    @Test
+    public void shouldFlushBatchesAfterInterval() throws Exception {
+        BatchingListener listener = new BatchingListener(100, 50);
+        bus.register(listener);
+        ServiceEvent first = new SpecificEvent();
+        ServiceEvent second = new SpecificEvent();
+        bus.submit(first);
+        bus.submit(second);
+        awaitDelivery(listener, 2);
+        assertThat(listener.batches, is(Arrays.asList(Arrays.asList(first, second))));
+    }
+
+    private ListenerQueueStatistics statistics(ServiceEventListener listener) {
+        return bus.getQueueStatistics().stream()
+                .filter(s -> s.getListener() == listener)
+                .findFirst().get();
+    }
+
+    private void awaitDelivery(ServiceEventListener listener, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (statistics(listener).getDelivered() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(statistics(listener).getDelivered(), is(count));
+    }
+
+    private static class BatchingListener implements BatchingServiceEventListener {
+        private final List<List<ServiceEvent>> batches = new CopyOnWriteArrayList<>();
+        private final int batchSize;
+        private final long flushInterval;
+
+        BatchingListener(int batchSize, long flushInterval) {
+            this.batchSize = batchSize;
+            this.flushInterval = flushInterval;
+        }
+
+        @Override
+        public Set<Class<? extends ServiceEvent>> getTypes() {
+            return ImmutableSet.of(SpecificEvent.class);
+        }
+
+        @Override
+        public void handle(List<ServiceEvent> events) {
+            batches.add(events);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+    }
+
+    private static class SpecificEvent implements ServiceEvent {
+    }
+
+    private static class RecordingListener implements ServiceEventListener {
+        private final Set<Class<? extends ServiceEvent>> types;
+        private final List<ServiceEvent> events = new CopyOnWriteArrayList<>();
+
+        RecordingListener(Class<? extends ServiceEvent> type) {
+            this(ImmutableSet.of(type));
+        }
+
+        RecordingListener(Set<Class<? extends ServiceEvent>> types) {
+            this.types = ImmutableSet.copyOf(types);
+        }
+
+        @Override
+        public Set<Class<? extends ServiceEvent>> getTypes() {
+            return types;
+        }
+
+        @Override
+        public void handle(ServiceEvent event) {
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.event.ring;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import org.n52.iceland.util.http.HTTPHeaders;
+
+public class RequestRecordRingBufferTest {
+    private final RequestRecordRingBuffer buffer = new RequestRecordRingBuffer(4);
+    private final List<String> records = new CopyOnWriteArrayList<>();
+
+    @After
+    public void destroy() {
+        buffer.destroy();
+    }
+
+    @Test
+    public void shouldExtractRequestValues() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/service");
+        request.setContent(new byte[42]);
+        request.setRemoteAddr("192.168.1.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(201);
+        response.setHeader(HTTPHeaders.CONTENT_LENGTH, "1024");
+        buffer.addHandler((record, endOfBatch) -> records.add(String.format(
+                "%s %d %d %d %d %d %s %s", record.getType(), record.getRequestNumber(), record.getElapsedTime(),
+                record.getStatus(), record.getRequestBytes(), record.getResponseBytes(), record.getMethod(),
+                record.getRemoteAddress())));
+        buffer.init();
+        buffer.publishIncoming(request, 1);
+        buffer.publishOutgoing(request, response, 1, 12);
+        awaitRecords(2);
+        assertThat(records, contains("INCOMING 1 -1 -1 42 -1 POST 192.168.1.1",
+                                     "OUTGOING 1 12 201 42 1024 POST 192.168.1.1"));
+    }
+
+    @Test
+    public void shouldDropRecordsIfFull() throws Exception {
+        buffer.addHandler((record, endOfBatch) -> records.add(String.valueOf(record.getRequestNumber())));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        for (int i = 0; i < 6; ++i) {
+            assertThat(buffer.publishIncoming(request, i), is(i < 4));
+        }
+        assertThat(buffer.getDropped(), is(2L));
+        assertThat(buffer.getBacklog(), is(4L));
+        buffer.init();
+        awaitRecords(4);
+        // the slots are reused once the consumer caught up
+        for (int i = 4; i < 10; ++i) {
+            buffer.publishIncoming(request, i);
+            awaitRecords(i + 1);
+        }
+        assertThat(records, contains("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"));
+    }
+
+    @Test
+    public void shouldSkipRecordsThatFailToExtract() throws Exception {
+        buffer.addHandler((record, endOfBatch) -> records.add(String.valueOf(record.getRequestNumber())));
+        buffer.init();
+        MockHttpServletRequest failing = new MockHttpServletRequest() {
+            @Override
+            public long getContentLengthLong() {
+                throw new IllegalStateException();
+            }
+        };
+        assertThat(buffer.publishIncoming(failing, 0), is(false));
+        for (int i = 1; i < 10; ++i) {
+            buffer.publishIncoming(new MockHttpServletRequest(), i);
+            awaitRecords(i);
+        }
+        assertThat(records, contains("1", "2", "3", "4", "5", "6", "7", "8", "9"));
+    }
+
+    @Test
+    public void shouldRoundCapacityToPowerOfTwo() {
+        assertThat(new RequestRecordRingBuffer(1000).getCapacity(), is(1024));
+    }
+
+    private void awaitRecords(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (records.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(records.size(), is(count));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BackgroundExecutorsTest {
+    private final ExecutionMode mode = BackgroundExecutors.getMode();
+
+    @After
+    public void resetMode() {
+        BackgroundExecutors.setMode(mode);
+    }
+
+    @Test
+    public void shouldFallBackToPlatformThreads() {
+        BackgroundExecutors.setMode(ExecutionMode.VIRTUAL);
+        ExecutionMode expected = BackgroundExecutors.isVirtualThreadsSupported()
+                                         ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM;
+        assertThat(BackgroundExecutors.getMode(), is(expected));
+    }
+
+    @Test
+    public void shouldNameThreads() throws Exception {
+        for (ExecutionMode executionMode : ExecutionMode.values()) {
+            BackgroundExecutors.setMode(executionMode);
+            Thread thread = BackgroundExecutors.newThreadFactory("test").newThread(() -> { });
+            assertThat(thread.getName(), startsWith("test-"));
+            ExecutorService executor = BackgroundExecutors.newExecutor("test", 1);
+            try {
+                assertThat(executor.submit(() -> Thread.currentThread().getName()).get(), startsWith("test-"));
+            } finally {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ProxySimilarityComparatorTest {
+
+    @Test
+    public void shouldComputeMostSimilarOncePerObject() {
+        Item a = new Item("a", 1, 7);
+        Item b = new Item("b", 4, 9);
+        Item c = new Item("c", 5);
+        Item d = new Item("d", 2, 12);
+        AtomicInteger calls = new AtomicInteger();
+        ProxySimilarityComparator<Item, Level> comparator = new ProxySimilarityComparator<Item, Level>(new Level(5)) {
+            @Override
+            protected Collection<Level> getSimilars(Item item) {
+                calls.incrementAndGet();
+                return item.levels;
+            }
+        };
+        List<Item> items = new ArrayList<>(Arrays.asList(a, b, c, d));
+        for (int i = 0; i < 3; ++i) {
+            items.sort(comparator);
+        }
+        assertThat(items, contains(c, b, a, d));
+        assertThat(calls.get(), is(4));
+    }
+
+    @Test
+    public void shouldComputeClassSimilarities() {
+        assertThat(ClassHelper.getSimiliarity(Object.class, Object.class), is(0));
+        assertThat(ClassHelper.getSimiliarity(CharSequence.class, String.class), is(1));
+        assertThat(ClassHelper.getSimiliarity(Number.class, Integer.class), is(1));
+        assertThat(ClassHelper.getSimiliarity(Object.class, Integer.class), is(2));
+        assertThat(ClassHelper.getSimiliarity(Integer.class, String.class), is(-1));
+        assertThat(ClassHelper.getSimiliarity(Number[].class, Integer[].class), is(1));
+        // answered from the memoized tables
+        assertThat(ClassHelper.getSimiliarity(Object.class, Integer.class), is(2));
+    }
+
+    private static class Item {
+        private final String name;
+        private final List<Level> levels = new ArrayList<>();
+
+        Item(String name, int... levels) {
+            this.name = name;
+            for (int level : levels) {
+                this.levels.add(new Level(level));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class Level implements Similar<Level> {
+        private final int value;
+
+        Level(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int getSimilarity(Level other) {
+            return Math.abs(value - other.value);
+        }
+    }
+}
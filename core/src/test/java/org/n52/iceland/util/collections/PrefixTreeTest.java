@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class PrefixTreeTest {
+
+    private final PrefixTree<String> tree = PrefixTree.<String>builder()
+            .put("/json", "json")
+            .put("/json2", "json2")
+            .put("/kvp", "kvp")
+            .put("/k", "k")
+            .build();
+
+    @Test
+    public void shouldMatchLongestPrefix() {
+        assertThat(tree.getLongestPrefixMatch("/json2/sos"), is("json2"));
+        assertThat(tree.getLongestPrefixMatch("/json/sos"), is("json"));
+        assertThat(tree.getLongestPrefixMatch("/json"), is("json"));
+        assertThat(tree.getLongestPrefixMatch("/kvp?service=SOS"), is("kvp"));
+        assertThat(tree.getLongestPrefixMatch("/kv"), is("k"));
+    }
+
+    @Test
+    public void shouldNotMatchWithoutPrefix() {
+        assertThat(tree.getLongestPrefixMatch("/soap"), is(nullValue()));
+        assertThat(tree.getLongestPrefixMatch("/"), is(nullValue()));
+        assertThat(tree.getLongestPrefixMatch(""), is(nullValue()));
+        assertThat(PrefixTree.<String>empty().getLongestPrefixMatch("/json"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldGetExactMatch() {
+        assertThat(tree.get("/json"), is("json"));
+        assertThat(tree.get("/js"), is(nullValue()));
+        assertThat(tree.get("/json2/sos"), is(nullValue()));
+    }
+
+}
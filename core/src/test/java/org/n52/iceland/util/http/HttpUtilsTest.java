@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import org.n52.iceland.binding.OwsExceptionReportHandler;
+import org.n52.iceland.exception.ows.NoApplicableCodeException;
+import org.n52.iceland.exception.ows.OwsExceptionReport;
+import org.n52.iceland.response.ServiceResponse;
+import org.n52.iceland.response.StreamingServiceResponse;
+import org.n52.iceland.util.http.compression.ContentCodec;
+
+import com.google.common.io.ByteStreams;
+
+public class HttpUtilsTest {
+    private static final String CONTENT = "<root/>";
+
+    @Rule
+    public final ErrorCollector errors = new ErrorCollector();
+
+    private final HttpUtils httpUtils = new HttpUtils();
+
+    @Test
+    public void shouldSetContentLengthOfBufferedResponse() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = write(new ServiceResponse(baos, MediaTypes.APPLICATION_XML));
+        errors.checkThat(response.getContentAsString(), is(CONTENT));
+        errors.checkThat(response.getContentLength(), is(CONTENT.length()));
+    }
+
+    @Test
+    public void shouldStreamResponseWithoutContentLength() throws Exception {
+        MockHttpServletResponse response = write(new StreamingServiceResponse(
+                out -> out.write(CONTENT.getBytes(StandardCharsets.UTF_8)), MediaTypes.APPLICATION_XML));
+        errors.checkThat(response.getContentAsString(), is(CONTENT));
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_LENGTH), is(nullValue()));
+        errors.checkThat(response.getStatus(), is(HTTPStatus.OK.getCode()));
+    }
+
+    @Test
+    public void shouldNotCompressSmallBodies() throws Exception {
+        MockHttpServletResponse response = write(new StreamingServiceResponse(
+                out -> out.write(CONTENT.getBytes(StandardCharsets.UTF_8)), MediaTypes.APPLICATION_XML), "gzip");
+        errors.checkThat(response.getContentAsString(), is(CONTENT));
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_ENCODING), is(nullValue()));
+        errors.checkThat(response.getHeader(HTTPHeaders.VARY), is(HTTPHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    public void shouldCompressStreamedBodies() throws Exception {
+        byte[] content = createContent();
+        MockHttpServletResponse response = write(new StreamingServiceResponse(
+                out -> out.write(content), MediaTypes.APPLICATION_XML), "gzip");
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_ENCODING), is("gzip"));
+        errors.checkThat(ByteStreams.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(response.getContentAsByteArray()))), is(content));
+    }
+
+    @Test
+    public void shouldNegotiateCompressionByQuality() throws Exception {
+        byte[] content = createContent();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(content);
+        MockHttpServletResponse response = write(new ServiceResponse(baos, MediaTypes.APPLICATION_XML),
+                                                 "gzip;q=0.5, deflate");
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_ENCODING), is("deflate"));
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_LENGTH), is(nullValue()));
+        errors.checkThat(ByteStreams.toByteArray(new InflaterInputStream(
+                new ByteArrayInputStream(response.getContentAsByteArray()))), is(content));
+    }
+
+    @Test
+    public void shouldReuseCompressedBufferedContent() throws Exception {
+        byte[] content = createContent();
+        BufferedWritable writable = new BufferedWritable(content, MediaTypes.APPLICATION_XML, true);
+        MockHttpServletResponse first = write(writable, "gzip");
+        MockHttpServletResponse second = write(writable, "gzip");
+        errors.checkThat(second.getHeader(HTTPHeaders.CONTENT_ENCODING), is("gzip"));
+        errors.checkThat(second.getContentLength(), is(first.getContentAsByteArray().length));
+        errors.checkThat(second.getContentAsByteArray(), is(first.getContentAsByteArray()));
+        errors.checkThat(ByteStreams.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(second.getContentAsByteArray()))), is(content));
+        errors.checkThat(write(writable).getContentAsByteArray(), is(content));
+    }
+
+    @Test
+    public void shouldEvaluateConditionalRequests() {
+        String etag = "\"abc\"";
+        long lastModified = 1_000_000_000_000L;
+        errors.checkThat(HttpUtils.isNotModified(conditional(HTTPHeaders.IF_NONE_MATCH, etag), etag, -1), is(true));
+        errors.checkThat(HttpUtils.isNotModified(conditional(HTTPHeaders.IF_NONE_MATCH, "W/\"abc\""), etag, -1),
+                         is(true));
+        errors.checkThat(HttpUtils.isNotModified(conditional(HTTPHeaders.IF_NONE_MATCH, "\"x\", \"abc-gzip\""),
+                                                 etag, -1), is(true));
+        errors.checkThat(HttpUtils.isNotModified(conditional(HTTPHeaders.IF_NONE_MATCH, "\"abcd\""), etag, -1),
+                         is(false));
+        MockHttpServletRequest request = conditional(HTTPHeaders.IF_MODIFIED_SINCE, lastModified);
+        errors.checkThat(HttpUtils.isNotModified(request, etag, lastModified), is(true));
+        errors.checkThat(HttpUtils.isNotModified(request, etag, lastModified + 1000), is(false));
+        request.setMethod(HTTPMethods.POST);
+        errors.checkThat(HttpUtils.isNotModified(request, etag, lastModified), is(false));
+    }
+
+    @Test
+    public void shouldTagCompressedRepresentations() throws Exception {
+        BufferedWritable writable = new BufferedWritable(createContent(), MediaTypes.APPLICATION_XML, true);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HTTPHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpUtils.setValidators(response, writable.getETag(), -1);
+        httpUtils.writeObject(request, response, MediaTypes.APPLICATION_XML, writable,
+                              mock(OwsExceptionReportHandler.class));
+        String etag = writable.getETag();
+        errors.checkThat(response.getHeader(HTTPHeaders.ETAG),
+                         is(etag.substring(0, etag.length() - 1) + "-gzip\""));
+    }
+
+    @Test
+    public void shouldReplacePartialDocumentWithExceptionReport() throws Exception {
+        String report = "<report/>";
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(report.getBytes(StandardCharsets.UTF_8));
+        OwsExceptionReportHandler handler = mock(OwsExceptionReportHandler.class);
+        when(handler.handleOwsExceptionReport(any(), any(), any(OwsExceptionReport.class)))
+                .thenReturn(new ServiceResponse(baos, MediaTypes.APPLICATION_XML));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HTTPHeaders.ACCEPT_ENCODING, "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        httpUtils.writeObject(request, response, MediaTypes.APPLICATION_XML, new StreamingServiceResponse(out -> {
+            out.write(createContent(), 0, HttpUtils.DEFAULT_COMPRESSION_THRESHOLD + 1);
+            throw new NoApplicableCodeException().withMessage("failed");
+        }, MediaTypes.APPLICATION_XML), handler);
+        errors.checkThat(response.getContentAsString(), is(report));
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_ENCODING), is(nullValue()));
+    }
+
+    @Test
+    public void shouldAbortCommittedResponse() throws Exception {
+        OwsExceptionReportHandler handler = mock(OwsExceptionReportHandler.class);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        OwsExceptionReport cause = new NoApplicableCodeException().withMessage("failed");
+        try {
+            httpUtils.writeObject(new MockHttpServletRequest(), response, MediaTypes.APPLICATION_XML,
+                                  new StreamingServiceResponse(out -> {
+                                      out.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+                                      out.flush();
+                                      throw cause;
+                                  }, MediaTypes.APPLICATION_XML), handler);
+            errors.addError(new AssertionError("expected the response to be aborted"));
+        } catch (IOException e) {
+            errors.checkThat(e.getCause(), is((Throwable) cause));
+        }
+        errors.checkThat(response.getContentAsString(), is(CONTENT));
+        errors.checkThat(response.getContentAsString(), not(containsString("failed")));
+        verify(handler, never()).handleOwsExceptionReport(any(), any(), any(OwsExceptionReport.class));
+    }
+
+    @Test
+    public void shouldPreferAdditionalCodecs() throws Exception {
+        httpUtils.setContentCodecs(Collections.singleton(new ContentCodec() {
+            @Override
+            public String getEncoding() {
+                return "br";
+            }
+
+            @Override
+            public OutputStream encode(OutputStream out) {
+                return out;
+            }
+        }));
+        byte[] content = createContent();
+        MockHttpServletResponse response = write(new StreamingServiceResponse(
+                out -> out.write(content), MediaTypes.APPLICATION_XML), "gzip, deflate, br");
+        errors.checkThat(response.getHeader(HTTPHeaders.CONTENT_ENCODING), is("br"));
+        errors.checkThat(response.getContentAsByteArray(), is(content));
+    }
+
+    @Test
+    public void shouldReplayStatusAndHeadersOfBufferedResponses() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(CONTENT.getBytes(StandardCharsets.UTF_8));
+        ServiceResponse serviceResponse = new ServiceResponse(baos, MediaTypes.APPLICATION_XML, HTTPStatus.CREATED);
+        serviceResponse.setHeader("X-Test", "value");
+        BufferedWritable writable = httpUtils.buffer(serviceResponse, MediaTypes.APPLICATION_XML);
+        for (int i = 0; i < 2; ++i) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            httpUtils.writeObject(new MockHttpServletRequest(), response, writable,
+                                  mock(OwsExceptionReportHandler.class));
+            errors.checkThat(response.getStatus(), is(HTTPStatus.CREATED.getCode()));
+            errors.checkThat(response.getHeader("X-Test"), is("value"));
+            errors.checkThat(response.getContentAsString(), is(CONTENT));
+        }
+    }
+
+    private static MockHttpServletRequest conditional(String header, Object value) {
+        MockHttpServletRequest request = new MockHttpServletRequest(HTTPMethods.GET, "/service");
+        request.addHeader(header, value);
+        return request;
+    }
+
+    private MockHttpServletResponse write(HttpUtils.Writable writable, String... acceptEncoding)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        for (String value : acceptEncoding) {
+            request.addHeader(HTTPHeaders.ACCEPT_ENCODING, value);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        httpUtils.writeObject(request, response, MediaTypes.APPLICATION_XML, writable,
+                              mock(OwsExceptionReportHandler.class));
+        return response;
+    }
+
+    private static byte[] createContent() {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 4 * HttpUtils.DEFAULT_COMPRESSION_THRESHOLD) {
+            builder.append(CONTENT);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MockHttpServletResponse write(ServiceResponse serviceResponse, String... acceptEncoding)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        for (String value : acceptEncoding) {
+            request.addHeader(HTTPHeaders.ACCEPT_ENCODING, value);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        httpUtils.writeObject(request, response, serviceResponse, mock(OwsExceptionReportHandler.class));
+        return response;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.http.compression;
+
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+public class ContentCodecRegistryTest {
+    @Rule
+    public final ErrorCollector errors = new ErrorCollector();
+
+    private final DeflaterContentCodec gzip = DeflaterContentCodec.gzip(-1, 512);
+    private final DeflaterContentCodec deflate = DeflaterContentCodec.deflate(-1, 512);
+
+    @Test
+    public void shouldNegotiateByQuality() {
+        ContentCodecRegistry registry = new ContentCodecRegistry();
+        registry.register(gzip);
+        registry.register(deflate);
+        errors.checkThat(negotiate(registry, "gzip, deflate"), is(Optional.<ContentCodec>of(gzip)));
+        errors.checkThat(negotiate(registry, "deflate, gzip"), is(Optional.<ContentCodec>of(gzip)));
+        errors.checkThat(negotiate(registry, "gzip;q=0.5, deflate"), is(Optional.<ContentCodec>of(deflate)));
+        errors.checkThat(negotiate(registry, "x-gzip"), is(Optional.<ContentCodec>of(gzip)));
+        errors.checkThat(negotiate(registry, "*"), is(Optional.<ContentCodec>of(gzip)));
+        errors.checkThat(negotiate(registry, "*;q=0.5, gzip;q=0"), is(Optional.<ContentCodec>of(deflate)));
+        errors.checkThat(negotiate(registry, "gzip;q=0, deflate;q=0"), is(Optional.<ContentCodec>empty()));
+        errors.checkThat(negotiate(registry, "gzip;q=0.5, identity"), is(Optional.<ContentCodec>empty()));
+        errors.checkThat(negotiate(registry, "br"), is(Optional.<ContentCodec>empty()));
+    }
+
+    @Test
+    public void shouldPreferCodecsRegisteredAsPreferred() {
+        ContentCodecRegistry registry = new ContentCodecRegistry();
+        registry.register(gzip);
+        registry.registerPreferred(deflate);
+        errors.checkThat(negotiate(registry, "gzip, deflate"), is(Optional.<ContentCodec>of(deflate)));
+        DeflaterContentCodec replacement = DeflaterContentCodec.gzip(1, 512);
+        registry.register(replacement);
+        errors.checkThat(negotiate(registry, "gzip, deflate"), is(Optional.<ContentCodec>of(deflate)));
+        errors.checkThat(negotiate(registry, "gzip"), is(Optional.<ContentCodec>of(replacement)));
+    }
+
+    @Test
+    public void shouldEndDeflatersReleasedAfterClear() {
+        DeflaterPool pool = new DeflaterPool(-1, true, 2);
+        Deflater idle = pool.acquire();
+        Deflater inUse = pool.acquire();
+        pool.release(idle);
+        pool.clear();
+        errors.checkThat(isEnded(idle), is(true));
+        errors.checkThat(isEnded(inUse), is(false));
+        pool.release(inUse);
+        errors.checkThat(isEnded(inUse), is(true));
+    }
+
+    @Test
+    public void shouldReleaseDeflaterOfDiscardedStream() throws Exception {
+        AtomicInteger released = new AtomicInteger();
+        DeflaterPool pool = new DeflaterPool(-1, true, 2) {
+            @Override
+            public void release(Deflater deflater) {
+                released.incrementAndGet();
+                super.release(deflater);
+            }
+        };
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        ThresholdCompressingOutputStream out = new ThresholdCompressingOutputStream(
+                sink, new GzipCodec(pool), 4, () -> {});
+        out.write(new byte[16]);
+        out.flush();
+        int written = sink.size();
+        out.discard();
+        out.close();
+        errors.checkThat(released.get(), is(1));
+        errors.checkThat(sink.size(), is(written));
+    }
+
+    private static boolean isEnded(Deflater deflater) {
+        try {
+            deflater.getBytesRead();
+            return false;
+        } catch (NullPointerException e) {
+            return true;
+        }
+    }
+
+    private static class GzipCodec implements ContentCodec {
+        private final DeflaterPool pool;
+
+        GzipCodec(DeflaterPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public String getEncoding() {
+            return "gzip";
+        }
+
+        @Override
+        public OutputStream encode(OutputStream out) throws IOException {
+            return new GzipOutputStream(out, pool, 512);
+        }
+    }
+
+    private static Optional<ContentCodec> negotiate(ContentCodecRegistry registry, String header) {
+        return registry.negotiate(Collections.enumeration(Collections.singleton(header)));
+    }
+}
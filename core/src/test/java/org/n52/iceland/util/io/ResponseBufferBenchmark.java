@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Compares the latency and allocation of buffering a response in a
+ * {@link ByteArrayOutputStream} with a pooled {@link SegmentedOutputStream}.
+ * Every iteration encodes a document in chunks, reads its size and writes it
+ * to a sink, like {@link org.n52.iceland.util.http.HttpUtils} does. This is
+ * not a unit test; run it using
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.n52.iceland.util.io.ResponseBufferBenchmark}.
+ */
+public class ResponseBufferBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+    private static final byte[] CHUNK = new byte[512];
+
+    public static void main(String[] args) throws Exception {
+        for (int size : new int[] { 16 * 1024, 1024 * 1024, 16 * 1024 * 1024 }) {
+            int iterations = Math.max(10, ITERATIONS * 1024 / size);
+            run("ByteArrayOutputStream", size, iterations, ByteArrayOutputStream::new);
+            run("SegmentedOutputStream", size, iterations, SegmentedOutputStream::new);
+        }
+        System.out.printf("segments: %d allocated, %d reused%n",
+                          SegmentedOutputStream.getAllocatedSegments(), SegmentedOutputStream.getReusedSegments());
+    }
+
+    private static void run(String name, int size, int iterations, BufferFactory factory) throws IOException {
+        for (int i = 0; i < WARMUP; ++i) {
+            encode(factory.create(), size);
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            encode(factory.create(), size);
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        System.out.printf("%s %10d bytes: %10.1f us/op %14d bytes/op%n", name, size,
+                          nanos / 1000.0 / iterations, bytes / iterations);
+    }
+
+    private static void encode(ByteArrayOutputStream buffer, int size) throws IOException {
+        for (int written = 0; written < size; written += CHUNK.length) {
+            buffer.write(CHUNK, 0, CHUNK.length);
+        }
+        if (buffer.size() > 0) {
+            buffer.writeTo(ByteStreams.nullOutputStream());
+        }
+        if (buffer instanceof SegmentedOutputStream) {
+            ((SegmentedOutputStream) buffer).release();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private interface BufferFactory {
+        ByteArrayOutputStream create();
+    }
+}
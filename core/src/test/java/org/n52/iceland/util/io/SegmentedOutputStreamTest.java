@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.n52.iceland.util.io;
+
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ErrorCollector;
+
+public class SegmentedOutputStreamTest {
+    @Rule
+    public final ErrorCollector errors = new ErrorCollector();
+
+    @Test
+    public void shouldKeepContentAcrossSegments() throws Exception {
+        byte[] content = new byte[3 * SegmentPool.SEGMENT_SIZE + 17];
+        new Random(42).nextBytes(content);
+        SegmentedOutputStream out = new SegmentedOutputStream(new SegmentPool(1, 4));
+        out.write(content[0]);
+        out.write(content, 1, 100);
+        out.write(content, 101, content.length - 101);
+        errors.checkThat(out.size(), is(content.length));
+        errors.checkThat(out.toByteArray(), is(content));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        out.writeTo(copy);
+        errors.checkThat(copy.toByteArray(), is(content));
+    }
+
+    @Test
+    public void shouldReuseReleasedSegments() {
+        SegmentPool pool = new SegmentPool(1, 4);
+        SegmentedOutputStream out = new SegmentedOutputStream(pool);
+        out.write(new byte[2 * SegmentPool.SEGMENT_SIZE], 0, 2 * SegmentPool.SEGMENT_SIZE);
+        out.release();
+        errors.checkThat(out.size(), is(0));
+        out = new SegmentedOutputStream(pool);
+        out.write(new byte[2 * SegmentPool.SEGMENT_SIZE], 0, 2 * SegmentPool.SEGMENT_SIZE);
+        errors.checkThat(pool.getAllocatedSegments(), is(2L));
+        errors.checkThat(pool.getReusedSegments(), is(2L));
+    }
+
+    @Test
+    public void shouldKeepContentWhenClosed() throws Exception {
+        SegmentPool pool = new SegmentPool(1, 4);
+        SegmentedOutputStream out = new SegmentedOutputStream(pool);
+        out.write(new byte[] { 1, 2, 3 }, 0, 3);
+        out.close();
+        errors.checkThat(out.toByteArray(), is(new byte[] { 1, 2, 3 }));
+        new SegmentedOutputStream(pool).write(4);
+        errors.checkThat(pool.getReusedSegments(), is(0L));
+    }
+
+    @Test
+    public void shouldResetContent() {
+        SegmentedOutputStream out = new SegmentedOutputStream(new SegmentPool(1, 4));
+        out.write(new byte[SegmentPool.SEGMENT_SIZE + 1], 0, SegmentPool.SEGMENT_SIZE + 1);
+        out.reset();
+        out.write(7);
+        errors.checkThat(out.toByteArray(), is(new byte[] { 7 }));
+    }
+}